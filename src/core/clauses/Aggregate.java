@@ -0,0 +1,133 @@
+package core.clauses;
+
+import java.util.Optional;
+
+/**
+ * Represents an aggregate projection of a SELECT query, such as {@code COUNT(*)} or {@code SUM(amount) AS total},
+ * computed by the database over each group of rows.
+ */
+public class Aggregate implements Clause {
+
+    /**
+     * Enumeration of the supported aggregate functions.
+     */
+    public enum Function {
+        COUNT, COUNT_DISTINCT, SUM, AVG, MIN, MAX
+    }
+
+    private final Function function;
+    private final String column;
+    private final Optional<String> alias;
+
+    private Aggregate(Function function, String column, Optional<String> alias) {
+        this.function = function;
+        this.column = column;
+        this.alias = alias;
+    }
+
+    /**
+     * Creates a COUNT(*) aggregate counting the rows of each group.
+     *
+     * @return a new Aggregate instance
+     */
+    public static Aggregate count() {
+        return new Aggregate(Function.COUNT, "*", Optional.empty());
+    }
+
+    /**
+     * Creates a COUNT aggregate counting the non-null values of a column.
+     *
+     * @param column the column or expression to count
+     * @return a new Aggregate instance
+     */
+    public static Aggregate count(String column) {
+        return new Aggregate(Function.COUNT, column, Optional.empty());
+    }
+
+    /**
+     * Creates a COUNT(DISTINCT ...) aggregate counting the distinct non-null values of a column.
+     *
+     * @param column the column or expression to count
+     * @return a new Aggregate instance
+     */
+    public static Aggregate countDistinct(String column) {
+        return new Aggregate(Function.COUNT_DISTINCT, column, Optional.empty());
+    }
+
+    /**
+     * Creates a SUM aggregate.
+     *
+     * @param column the column or expression to sum
+     * @return a new Aggregate instance
+     */
+    public static Aggregate sum(String column) {
+        return new Aggregate(Function.SUM, column, Optional.empty());
+    }
+
+    /**
+     * Creates an AVG aggregate.
+     *
+     * @param column the column or expression to average
+     * @return a new Aggregate instance
+     */
+    public static Aggregate avg(String column) {
+        return new Aggregate(Function.AVG, column, Optional.empty());
+    }
+
+    /**
+     * Creates a MIN aggregate.
+     *
+     * @param column the column or expression to find the minimum of
+     * @return a new Aggregate instance
+     */
+    public static Aggregate min(String column) {
+        return new Aggregate(Function.MIN, column, Optional.empty());
+    }
+
+    /**
+     * Creates a MAX aggregate.
+     *
+     * @param column the column or expression to find the maximum of
+     * @return a new Aggregate instance
+     */
+    public static Aggregate max(String column) {
+        return new Aggregate(Function.MAX, column, Optional.empty());
+    }
+
+    /**
+     * Returns a copy of this aggregate labelled with the given alias.
+     *
+     * @param alias the column label of the aggregate in the result
+     * @return a new Aggregate instance
+     */
+    public Aggregate as(String alias) {
+        return new Aggregate(function, column, Optional.of(alias));
+    }
+
+    /**
+     * Returns the aggregate function.
+     *
+     * @return the function
+     */
+    public Function getFunction() {
+        return function;
+    }
+
+    /**
+     * Returns the aggregated column or expression.
+     *
+     * @return the column
+     */
+    public String getColumn() {
+        return column;
+    }
+
+    /**
+     * Returns an {@link Optional} containing the alias of the aggregate, if set.
+     *
+     * @return an Optional of the alias
+     */
+    public Optional<String> getAlias() {
+        return alias;
+    }
+}
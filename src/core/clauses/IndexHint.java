@@ -0,0 +1,84 @@
+package core.clauses;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Represents an index hint ("USE INDEX", "FORCE INDEX" or "IGNORE INDEX") attached to a table of the FROM clause,
+ * steering the optimizer towards or away from the given indexes.
+ */
+public class IndexHint implements Clause {
+
+    /**
+     * Enumeration of the index hint kinds.
+     */
+    public enum Type {
+        USE("USE INDEX"),
+        FORCE("FORCE INDEX"),
+        IGNORE("IGNORE INDEX");
+
+        private final String value;
+
+        /**
+         * Constructs a new Type enum with the given SQL keyword value.
+         *
+         * @param value the SQL keywords of the hint (e.g., "USE INDEX")
+         */
+        Type(String value) {
+            this.value = value;
+        }
+
+        /**
+         * Returns the SQL keywords associated with this hint kind.
+         *
+         * @return the hint keywords
+         */
+        public String getValue() {
+            return value;
+        }
+    }
+
+    private final Type type;
+    private final String table;
+    private final List<String> indexes;
+
+    /**
+     * Constructs an index hint for the given table.
+     *
+     * @param type    the kind of hint
+     * @param table   the table of the FROM clause the hint applies to
+     * @param indexes the names of the hinted indexes
+     */
+    public IndexHint(Type type, String table, String... indexes) {
+        this.type = type;
+        this.table = table;
+        this.indexes = Arrays.asList(indexes);
+    }
+
+    /**
+     * Returns the kind of hint.
+     *
+     * @return the hint type
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Returns the table the hint applies to.
+     *
+     * @return the table name
+     */
+    public String getTable() {
+        return table;
+    }
+
+    /**
+     * Returns the names of the hinted indexes.
+     *
+     * @return the index names
+     */
+    public List<String> getIndexes() {
+        return indexes;
+    }
+}
@@ -0,0 +1,93 @@
+package core.clauses;
+
+import java.util.Optional;
+
+/**
+ * Represents an SQL JOIN clause attaching a table to the FROM clause through an ON condition.
+ */
+public class Join implements Clause {
+
+    /**
+     * Enumeration of the supported join kinds.
+     */
+    public enum Type {
+        INNER("INNER JOIN"),
+        LEFT("LEFT JOIN");
+
+        private final String value;
+
+        /**
+         * Constructs a new Type enum with the given SQL keyword value.
+         *
+         * @param value the SQL keywords of the join (e.g., "LEFT JOIN")
+         */
+        Type(String value) {
+            this.value = value;
+        }
+
+        /**
+         * Returns the SQL keywords associated with this join kind.
+         *
+         * @return the join keywords
+         */
+        public String getValue() {
+            return value;
+        }
+    }
+
+    private final Type type;
+    private final String table;
+    private final Optional<String> alias;
+    private final Where on;
+
+    /**
+     * Constructs a join clause.
+     *
+     * @param type  the kind of join
+     * @param table the joined table
+     * @param alias the alias of the joined table, or {@code null} for none
+     * @param on    the condition matching the rows of the joined table
+     */
+    public Join(Type type, String table, String alias, Where on) {
+        this.type = type;
+        this.table = table;
+        this.alias = Optional.ofNullable(alias);
+        this.on = on;
+    }
+
+    /**
+     * Returns the kind of join.
+     *
+     * @return the join type
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Returns the joined table.
+     *
+     * @return the table name
+     */
+    public String getTable() {
+        return table;
+    }
+
+    /**
+     * Returns an {@link Optional} containing the alias of the joined table, if set.
+     *
+     * @return an Optional of the alias
+     */
+    public Optional<String> getAlias() {
+        return alias;
+    }
+
+    /**
+     * Returns the condition matching the rows of the joined table.
+     *
+     * @return the ON condition
+     */
+    public Where getOn() {
+        return on;
+    }
+}
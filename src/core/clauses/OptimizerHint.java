@@ -0,0 +1,74 @@
+package core.clauses;
+
+/**
+ * Represents an optimizer hint rendered within the {@code /*+ ... *}{@code /} comment following the SELECT keyword,
+ * such as {@code MAX_EXECUTION_TIME(1000)} or {@code JOIN_ORDER(a, b)}.
+ * <p>
+ * Databases ignore the hints they do not support, so hints never change the result of a query, only its plan.
+ */
+public class OptimizerHint implements Clause {
+    private final String expression;
+
+    private OptimizerHint(String expression) {
+        this.expression = expression;
+    }
+
+    /**
+     * Creates a hint bounding the execution time of the query.
+     *
+     * @param millis the maximum execution time, in milliseconds
+     * @return a new OptimizerHint instance
+     */
+    public static OptimizerHint maxExecutionTime(long millis) {
+        return new OptimizerHint("MAX_EXECUTION_TIME(" + millis + ")");
+    }
+
+    /**
+     * Creates a hint forcing the optimizer to join the given tables in the given order.
+     *
+     * @param tables the tables (or aliases) in join order
+     * @return a new OptimizerHint instance
+     */
+    public static OptimizerHint joinOrder(String... tables) {
+        return new OptimizerHint("JOIN_ORDER(" + String.join(", ", tables) + ")");
+    }
+
+    /**
+     * Creates a hint enabling the given semi-join strategies, or all of them if none is given.
+     *
+     * @param strategies the strategies to enable (e.g., "FIRSTMATCH", "MATERIALIZATION")
+     * @return a new OptimizerHint instance
+     */
+    public static OptimizerHint semiJoin(String... strategies) {
+        return new OptimizerHint("SEMIJOIN(" + String.join(", ", strategies) + ")");
+    }
+
+    /**
+     * Creates a hint disabling the given semi-join strategies, or all of them if none is given.
+     *
+     * @param strategies the strategies to disable
+     * @return a new OptimizerHint instance
+     */
+    public static OptimizerHint noSemiJoin(String... strategies) {
+        return new OptimizerHint("NO_SEMIJOIN(" + String.join(", ", strategies) + ")");
+    }
+
+    /**
+     * Creates a hint from a raw expression.
+     *
+     * @param expression the raw hint to include in the hint comment
+     * @return a new OptimizerHint instance
+     */
+    public static OptimizerHint raw(String expression) {
+        return new OptimizerHint(expression);
+    }
+
+    /**
+     * Returns the hint expression.
+     *
+     * @return the expression
+     */
+    public String getExpression() {
+        return expression;
+    }
+}
@@ -1,5 +1,7 @@
 package core.clauses;
 
+import core.queries.AbstractSelectQuery;
+
 import java.util.List;
 
 /**
@@ -15,7 +17,7 @@ public class Where implements Clause {
     public enum Operator {
         EQUAL, NOT_EQUAL, GREATER_THAN, GREATER_THAN_OR_EQUAL,
         LESS_THAN, LESS_THAN_OR_EQUAL, IS_NULL, IS_NOT_NULL,
-        IN, NOT_IN, BETWEEN, LIKE, NOT_LIKE, RAW
+        IN, NOT_IN, BETWEEN, LIKE, NOT_LIKE, RAW, COLUMN_EQUAL, EXISTS, NOT_EXISTS
     }
 
     /**
@@ -37,6 +39,8 @@ public class Where implements Clause {
 
     private String rawExpression;
 
+    private AbstractSelectQuery<?> subquery;
+
     // Private constructors used internally by factory methods
 
     private Where(String field, Operator operator, Object value) {
@@ -69,6 +73,12 @@ public class Where implements Clause {
         this.rawExpression = rawExpression;
     }
 
+    private Where(AbstractSelectQuery<?> subquery, String field, Operator operator) {
+        this.field = field;
+        this.operator = operator;
+        this.subquery = subquery;
+    }
+
     // Static factory methods for constructing WHERE clauses
 
     /**
@@ -179,6 +189,48 @@ public class Where implements Clause {
         return new Where(field, Operator.NOT_IN, values);
     }
 
+    /**
+     * Creates a WHERE clause with IN condition matching the rows returned by a subquery.
+     *
+     * @param field    the field to compare
+     * @param subquery the SELECT query returning the values to match
+     * @return a new Where instance
+     */
+    public static Where in(String field, AbstractSelectQuery<?> subquery) {
+        return new Where(subquery, field, Operator.IN);
+    }
+
+    /**
+     * Creates a WHERE clause with NOT IN condition excluding the rows returned by a subquery.
+     *
+     * @param field    the field to compare
+     * @param subquery the SELECT query returning the values to exclude
+     * @return a new Where instance
+     */
+    public static Where notIn(String field, AbstractSelectQuery<?> subquery) {
+        return new Where(subquery, field, Operator.NOT_IN);
+    }
+
+    /**
+     * Creates a WHERE clause with EXISTS condition, true when the subquery returns at least one row.
+     *
+     * @param subquery the SELECT query, usually correlated with the outer query
+     * @return a new Where instance
+     */
+    public static Where exists(AbstractSelectQuery<?> subquery) {
+        return new Where(subquery, null, Operator.EXISTS);
+    }
+
+    /**
+     * Creates a WHERE clause with NOT EXISTS condition, true when the subquery returns no row.
+     *
+     * @param subquery the SELECT query, usually correlated with the outer query
+     * @return a new Where instance
+     */
+    public static Where notExists(AbstractSelectQuery<?> subquery) {
+        return new Where(subquery, null, Operator.NOT_EXISTS);
+    }
+
     /**
      * Creates a WHERE clause with BETWEEN condition.
      *
@@ -213,6 +265,17 @@ public class Where implements Clause {
         return new Where(field, Operator.NOT_LIKE, pattern);
     }
 
+    /**
+     * Creates a WHERE clause comparing two columns for equality, typically the ON condition of a join.
+     *
+     * @param field      the field to compare
+     * @param otherField the field to compare to
+     * @return a new Where instance
+     */
+    public static Where columnEqual(String field, String otherField) {
+        return new Where(field, Operator.COLUMN_EQUAL, otherField);
+    }
+
     /**
      * Creates a WHERE clause using a raw SQL expression.
      *
@@ -325,4 +388,13 @@ public class Where implements Clause {
     public String getRawExpression() {
         return rawExpression;
     }
+
+    /**
+     * Returns the subquery used in IN/NOT IN and EXISTS/NOT EXISTS conditions.
+     *
+     * @return the subquery, or null if the condition has none
+     */
+    public AbstractSelectQuery<?> getSubquery() {
+        return subquery;
+    }
 }
@@ -0,0 +1,7 @@
+package core.exceptions;
+
+public class AdmissionRejectedException extends RuntimeException {
+    public AdmissionRejectedException(String message) {
+        super(message);
+    }
+}
\ No newline at end of file
@@ -1,9 +1,12 @@
 package core.queries;
 
+import core.clauses.Limit;
+import core.clauses.OrderBy;
 import core.clauses.Where;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * AbstractDeleteQuery provides the base implementation for DELETE queries.
@@ -12,11 +15,31 @@ import java.util.List;
  */
 public abstract class AbstractDeleteQuery<Q extends Query> extends Query<AbstractDeleteQuery<Q>> {
 
+    /**
+     * The name of the table to delete from.
+     */
+    protected Optional<String> target = Optional.empty();
+
+    /**
+     * The optional alias of the table to delete from.
+     */
+    protected Optional<String> alias = Optional.empty();
+
     /**
      * List of WHERE clauses applied to the DELETE query.
      */
     protected List<Where> wheres = new ArrayList<>();
 
+    /**
+     * List of ORDER BY clauses deciding which rows are deleted first.
+     */
+    protected List<OrderBy> orderBy = new ArrayList<>();
+
+    /**
+     * Optional LIMIT clause bounding the number of deleted rows.
+     */
+    protected Optional<Limit> limit = Optional.empty();
+
     /**
      * Sets the target table to delete from.
      *
@@ -24,7 +47,9 @@ public abstract class AbstractDeleteQuery<Q extends Query> extends Query<Abstrac
      * @return The current query instance.
      */
     public final Q from(String table) {
-        return null;
+        this.target = Optional.of(table);
+        this.alias = Optional.empty();
+        return (Q) this;
     }
 
     /**
@@ -35,7 +60,18 @@ public abstract class AbstractDeleteQuery<Q extends Query> extends Query<Abstrac
      * @return The current query instance.
      */
     public final Q from(final String table,final String alias) {
-        return null;
+        this.target = Optional.of(table);
+        this.alias = Optional.ofNullable(alias);
+        return (Q) this;
+    }
+
+    /**
+     * Returns the name of the table to delete from.
+     *
+     * @return an Optional of the target table, empty if not set yet.
+     */
+    public final Optional<String> getTarget() {
+        return target;
     }
 
     /**
@@ -48,4 +84,61 @@ public abstract class AbstractDeleteQuery<Q extends Query> extends Query<Abstrac
         this.wheres.add(where);
         return (Q) this;
     }
+
+    /**
+     * Adds an ORDER BY clause using the default (ascending) direction.
+     *
+     * @param orderBy The column to order by.
+     * @return The current query instance.
+     */
+    public final Q orderBy(String orderBy) {
+        this.orderBy.add(new OrderBy(orderBy));
+        return (Q) this;
+    }
+
+    /**
+     * Adds an ORDER BY clause with a specific direction.
+     *
+     * @param orderBy   The column to order by.
+     * @param direction The order direction (ASC or DESC).
+     * @return The current query instance.
+     */
+    public final Q orderBy(String orderBy, OrderBy.OrderDirection direction) {
+        this.orderBy.add(new OrderBy(orderBy, direction));
+        return (Q) this;
+    }
+
+    /**
+     * Adds a LIMIT clause bounding the number of rows deleted by a single execution.
+     *
+     * @param amount The maximum number of rows to delete.
+     * @return The current query instance.
+     */
+    public final Q limit(final int amount) {
+        if (!this.limit.isPresent() || this.limit.get().getAmount() != Math.max(amount, 0)) {
+            this.limit = Optional.of(new Limit(amount));
+        }
+        return (Q) this;
+    }
+
+    /**
+     * Clears every clause of the query along with its built native query, so the same instance can be rebuilt
+     * without allocating new collections and render buffer.
+     *
+     * @return The current query instance.
+     */
+    public final Q reset() {
+        clear();
+        return (Q) this;
+    }
+
+    @Override
+    protected void clear() {
+        super.clear();
+        this.target = Optional.empty();
+        this.alias = Optional.empty();
+        this.wheres.clear();
+        this.orderBy.clear();
+        this.limit = Optional.empty();
+    }
 }
@@ -4,7 +4,7 @@ import java.util.*;
 
 /**
  * AbstractInsertQuery provides a base structure for building SQL INSERT queries.
- * It supports setting the target table and inserting single or multiple column-value pairs.
+ * It supports setting the target table and inserting single or multiple column-value pairs, on one or many rows.
  *
  * @param <Q> The concrete query type extending this class.
  */
@@ -13,7 +13,12 @@ public abstract class AbstractInsertQuery<Q extends Query> extends Query<Abstrac
     /**
      * A map holding the column-value pairs to be inserted.
      */
-    protected Map<String, Object> values = new HashMap<>();
+    protected Map<String, Object> values = new LinkedHashMap<>();
+
+    /**
+     * The rows inserted after the first one, each mapping column names to values.
+     */
+    protected List<Map<String, Object>> rows = new ArrayList<>();
 
     /**
      * The name of the target table into which data will be inserted.
@@ -27,7 +32,9 @@ public abstract class AbstractInsertQuery<Q extends Query> extends Query<Abstrac
      * @return The current query instance.
      */
     public final Q into(String target) {
-        this.target = Optional.of(target);
+        if (!this.target.isPresent() || !this.target.get().equals(target)) {
+            this.target = Optional.of(target);
+        }
         return (Q) this;
     }
 
@@ -53,4 +60,65 @@ public abstract class AbstractInsertQuery<Q extends Query> extends Query<Abstrac
         this.values.putAll(values);
         return (Q) this;
     }
+
+    /**
+     * Adds another row to the INSERT query, turning it into a multi-row insert.
+     * <p>
+     * The first row is the one set through {@link #value(String, Object)} and {@link #values(Map)}. Columns missing
+     * from a row are inserted with their default value.
+     * </p>
+     *
+     * @param row A map of column names to the values of the row.
+     * @return The current query instance.
+     */
+    public final Q row(Map<String, Object> row) {
+        if (this.values.isEmpty()) {
+            this.values.putAll(row);
+        } else {
+            this.rows.add(new LinkedHashMap<>(row));
+        }
+        return (Q) this;
+    }
+
+    /**
+     * Returns the name of the target table.
+     *
+     * @return an Optional of the target table, empty if not set yet.
+     */
+    public final Optional<String> getTarget() {
+        return target;
+    }
+
+    /**
+     * Returns every row of the INSERT query, in order.
+     *
+     * @return the column-value pairs of each row, empty if no value was set.
+     */
+    public final List<Map<String, Object>> getRows() {
+        List<Map<String, Object>> all = new ArrayList<>(rows.size() + 1);
+        if (!values.isEmpty()) {
+            all.add(values);
+        }
+        all.addAll(rows);
+        return all;
+    }
+
+    /**
+     * Clears every clause of the query along with its built native query, so the same instance can be rebuilt
+     * without allocating new collections and render buffer.
+     *
+     * @return The current query instance.
+     */
+    public final Q reset() {
+        clear();
+        return (Q) this;
+    }
+
+    @Override
+    protected void clear() {
+        super.clear();
+        this.values.clear();
+        this.rows.clear();
+        this.target = Optional.empty();
+    }
 }
@@ -1,6 +1,10 @@
 package core.queries;
 
+import core.clauses.Aggregate;
+import core.clauses.IndexHint;
+import core.clauses.Join;
 import core.clauses.Limit;
+import core.clauses.OptimizerHint;
 import core.clauses.OrderBy;
 import core.clauses.Where;
 
@@ -20,15 +24,35 @@ public abstract class AbstractSelectQuery<Q extends Query> extends Query<Abstrac
     protected List<String> args = new ArrayList<>();
 
     /**
-     * Map of tables and their optional aliases used in the FROM clause.
+     * List of aggregate projections selected after the columns.
      */
-    protected Map<String, String> targets = new HashMap<>();
+    protected List<Aggregate> aggregates = new ArrayList<>();
+
+    /**
+     * Map of tables and their optional aliases used in the FROM clause, in the order they were added.
+     */
+    protected Map<String, String> targets = new LinkedHashMap<>();
+
+    /**
+     * List of JOIN clauses, in the order they were added.
+     */
+    protected List<Join> joins = new ArrayList<>();
 
     /**
      * List of WHERE clause conditions.
      */
     protected List<Where> wheres = new ArrayList<>();
 
+    /**
+     * List of GROUP BY columns or expressions.
+     */
+    protected List<String> groupBy = new ArrayList<>();
+
+    /**
+     * List of HAVING conditions, filtering the groups.
+     */
+    protected List<Where> having = new ArrayList<>();
+
     /**
      * List of ORDER BY clauses.
      */
@@ -39,6 +63,26 @@ public abstract class AbstractSelectQuery<Q extends Query> extends Query<Abstrac
      */
     protected Optional<Limit> limit = Optional.empty();
 
+    /**
+     * List of index hints attached to the tables of the FROM clause.
+     */
+    protected List<IndexHint> indexHints = new ArrayList<>();
+
+    /**
+     * List of optimizer hints.
+     */
+    protected List<OptimizerHint> optimizerHints = new ArrayList<>();
+
+    /**
+     * Whether the tables must be joined in the order they are listed in.
+     */
+    protected boolean straightJoin = false;
+
+    /**
+     * Whether the query result must bypass the query cache.
+     */
+    protected boolean sqlNoCache = false;
+
     /**
      * Constructs the query with the specified columns to select.
      *
@@ -71,6 +115,56 @@ public abstract class AbstractSelectQuery<Q extends Query> extends Query<Abstrac
         return (Q) this;
     }
 
+    /**
+     * Adds an INNER JOIN of the given table.
+     *
+     * @param table The name of the joined table.
+     * @param on    The condition matching the rows of the joined table.
+     * @return The current query instance.
+     */
+    public final Q join(String table, Where on) {
+        this.joins.add(new Join(Join.Type.INNER, table, null, on));
+        return (Q) this;
+    }
+
+    /**
+     * Adds an INNER JOIN of the given table with an alias.
+     *
+     * @param table The name of the joined table.
+     * @param alias The alias for the joined table.
+     * @param on    The condition matching the rows of the joined table.
+     * @return The current query instance.
+     */
+    public final Q join(String table, String alias, Where on) {
+        this.joins.add(new Join(Join.Type.INNER, table, alias, on));
+        return (Q) this;
+    }
+
+    /**
+     * Adds a LEFT JOIN of the given table.
+     *
+     * @param table The name of the joined table.
+     * @param on    The condition matching the rows of the joined table.
+     * @return The current query instance.
+     */
+    public final Q leftJoin(String table, Where on) {
+        this.joins.add(new Join(Join.Type.LEFT, table, null, on));
+        return (Q) this;
+    }
+
+    /**
+     * Adds a LEFT JOIN of the given table with an alias.
+     *
+     * @param table The name of the joined table.
+     * @param alias The alias for the joined table.
+     * @param on    The condition matching the rows of the joined table.
+     * @return The current query instance.
+     */
+    public final Q leftJoin(String table, String alias, Where on) {
+        this.joins.add(new Join(Join.Type.LEFT, table, alias, on));
+        return (Q) this;
+    }
+
     /**
      * Adds a WHERE condition to the query.
      *
@@ -82,6 +176,39 @@ public abstract class AbstractSelectQuery<Q extends Query> extends Query<Abstrac
         return (Q) this;
     }
 
+    /**
+     * Adds aggregate projections to the SELECT clause.
+     *
+     * @param aggregates The aggregates to compute.
+     * @return The current query instance.
+     */
+    public final Q aggregate(Aggregate... aggregates) {
+        this.aggregates.addAll(Arrays.asList(aggregates));
+        return (Q) this;
+    }
+
+    /**
+     * Adds columns or expressions to the GROUP BY clause.
+     *
+     * @param columns The columns to group rows by.
+     * @return The current query instance.
+     */
+    public final Q groupBy(String... columns) {
+        this.groupBy.addAll(Arrays.asList(columns));
+        return (Q) this;
+    }
+
+    /**
+     * Adds a HAVING condition filtering the groups, typically on an aggregate such as {@code COUNT(*)}.
+     *
+     * @param having The HAVING condition.
+     * @return The current query instance.
+     */
+    public final Q having(final Where having) {
+        this.having.add(having);
+        return (Q) this;
+    }
+
     /**
      * Adds an ORDER BY clause using the default (ascending) direction.
      *
@@ -112,8 +239,104 @@ public abstract class AbstractSelectQuery<Q extends Query> extends Query<Abstrac
      * @return The current query instance.
      */
     public final Q limit(final int amount) {
-        this.limit = Optional.of(new Limit(amount));
+        if (!this.limit.isPresent() || this.limit.get().getAmount() != Math.max(amount, 0)) {
+            this.limit = Optional.of(new Limit(amount));
+        }
         return (Q) this;
     }
 
+    /**
+     * Hints the optimizer to only consider the given indexes for a table of the FROM clause.
+     *
+     * @param table   The table the hint applies to.
+     * @param indexes The names of the indexes to consider.
+     * @return The current query instance.
+     */
+    public final Q useIndex(String table, String... indexes) {
+        this.indexHints.add(new IndexHint(IndexHint.Type.USE, table, indexes));
+        return (Q) this;
+    }
+
+    /**
+     * Forces the optimizer to use one of the given indexes for a table of the FROM clause.
+     *
+     * @param table   The table the hint applies to.
+     * @param indexes The names of the indexes to use.
+     * @return The current query instance.
+     */
+    public final Q forceIndex(String table, String... indexes) {
+        this.indexHints.add(new IndexHint(IndexHint.Type.FORCE, table, indexes));
+        return (Q) this;
+    }
+
+    /**
+     * Hints the optimizer to ignore the given indexes for a table of the FROM clause.
+     *
+     * @param table   The table the hint applies to.
+     * @param indexes The names of the indexes to ignore.
+     * @return The current query instance.
+     */
+    public final Q ignoreIndex(String table, String... indexes) {
+        this.indexHints.add(new IndexHint(IndexHint.Type.IGNORE, table, indexes));
+        return (Q) this;
+    }
+
+    /**
+     * Adds an optimizer hint to the query.
+     *
+     * @param hint The optimizer hint.
+     * @return The current query instance.
+     */
+    public final Q hint(OptimizerHint hint) {
+        this.optimizerHints.add(hint);
+        return (Q) this;
+    }
+
+    /**
+     * Forces the tables to be joined in the order they are listed in the FROM clause.
+     *
+     * @return The current query instance.
+     */
+    public final Q straightJoin() {
+        this.straightJoin = true;
+        return (Q) this;
+    }
+
+    /**
+     * Prevents the query result from being served from or stored in the query cache.
+     *
+     * @return The current query instance.
+     */
+    public final Q sqlNoCache() {
+        this.sqlNoCache = true;
+        return (Q) this;
+    }
+
+    /**
+     * Clears every clause of the query along with its built native query, so the same instance can be rebuilt
+     * without allocating new collections and render buffer. The selected columns are kept.
+     *
+     * @return The current query instance.
+     */
+    public final Q reset() {
+        clear();
+        return (Q) this;
+    }
+
+    @Override
+    protected void clear() {
+        super.clear();
+        this.aggregates.clear();
+        this.targets.clear();
+        this.joins.clear();
+        this.wheres.clear();
+        this.groupBy.clear();
+        this.having.clear();
+        this.orderBy.clear();
+        this.limit = Optional.empty();
+        this.indexHints.clear();
+        this.optimizerHints.clear();
+        this.straightJoin = false;
+        this.sqlNoCache = false;
+    }
 }
@@ -2,10 +2,7 @@ package core.queries;
 
 import core.clauses.Where;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 /**
  * AbstractUpdateQuery provides the foundational logic for building SQL UPDATE queries.
@@ -28,7 +25,17 @@ public abstract class AbstractUpdateQuery<Q extends Query> extends Query<Abstrac
     /**
      * A map of column names to their new values, used in the SET clause.
      */
-    protected Map<String, Object> setters = new HashMap<>();
+    protected Map<String, Object> setters = new LinkedHashMap<>();
+
+    /**
+     * The key column identifying the rows updated by {@link #setByKey(String, Object, Map)}.
+     */
+    protected Optional<String> keyColumn = Optional.empty();
+
+    /**
+     * A map of key values to the column-value pairs to set on the row holding that key.
+     */
+    protected Map<Object, Map<String, Object>> keyedSetters = new LinkedHashMap<>();
 
     /**
      * Specifies the table to update without an alias.
@@ -75,4 +82,58 @@ public abstract class AbstractUpdateQuery<Q extends Query> extends Query<Abstrac
         this.setters.put(column, value);
         return (Q) this;
     }
+
+    /**
+     * Adds column-value pairs to be updated on the row identified by the given key.
+     * <p>
+     * Rows of different keys may receive different values: the query updates all of them at once, picking the
+     * value of each row by its key.
+     * </p>
+     *
+     * @param keyColumn The column identifying the rows, the same for every call on this query.
+     * @param key       The value of the key column of the row to update.
+     * @param values    The columns to update on that row and their new values.
+     * @return The current query instance.
+     */
+    public final Q setByKey(String keyColumn, Object key, Map<String, Object> values) {
+        if (this.keyColumn.isPresent() && !this.keyColumn.get().equals(keyColumn)) {
+            throw new IllegalArgumentException("The query is already keyed by " + this.keyColumn.get() + ".");
+        }
+        this.keyColumn = Optional.of(keyColumn);
+        this.keyedSetters.computeIfAbsent(key, k -> new LinkedHashMap<>()).putAll(values);
+        return (Q) this;
+    }
+
+    /**
+     * Returns the columns set by the query, through {@link #set(String, Object)} or
+     * {@link #setByKey(String, Object, Map)}.
+     *
+     * @return the names of the updated columns, in order.
+     */
+    public final Set<String> getUpdatedColumns() {
+        Set<String> columns = new LinkedHashSet<>(setters.keySet());
+        keyedSetters.values().forEach(values -> columns.addAll(values.keySet()));
+        return columns;
+    }
+
+    /**
+     * Clears every clause of the query along with its built native query, so the same instance can be rebuilt
+     * without allocating new collections and render buffer. The updated table, including the targets set through
+     * {@link #from(String, String)}, is kept.
+     *
+     * @return The current query instance.
+     */
+    public final Q reset() {
+        clear();
+        return (Q) this;
+    }
+
+    @Override
+    protected void clear() {
+        super.clear();
+        this.wheres.clear();
+        this.setters.clear();
+        this.keyColumn = Optional.empty();
+        this.keyedSetters.clear();
+    }
 }
@@ -1,5 +1,8 @@
 package core.queries;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 
@@ -16,7 +19,27 @@ public abstract class Query<Q extends Query<Q>> {
     /**
      * The internal representation of the final native SQL query.
      */
-    protected Optional<StringBuilder> nativeQuery;
+    protected Optional<StringBuilder> nativeQuery = Optional.empty();
+
+    /**
+     * The values bound to the placeholders of the native query, in order of appearance.
+     */
+    protected List<Object> parameters = new ArrayList<>();
+
+    /**
+     * The optional maximum time the query may take to execute.
+     */
+    protected Optional<Duration> timeout = Optional.empty();
+
+    /**
+     * The buffer the native query is rendered into, reused across builds.
+     */
+    private StringBuilder renderBuffer;
+
+    /**
+     * The native query wrapping the render buffer, allocated once along with it.
+     */
+    private Optional<StringBuilder> renderedQuery = Optional.empty();
 
     /**
      * Builds and finalizes the query. Implementations should construct the native SQL string.
@@ -43,5 +66,69 @@ public abstract class Query<Q extends Query<Q>> {
         return this.nativeQuery.isPresent() ? nativeQuery.get().toString() : null;
     }
 
+    /**
+     * Returns the values to bind to the placeholders of the native query, in order of appearance.
+     *
+     * @return the query parameters, empty if every value is inlined in the native query.
+     */
+    public final List<Object> getParameters() {
+        return parameters;
+    }
 
+    /**
+     * Sets the maximum time the query may take to execute, overriding the default timeout of the adapter.
+     *
+     * @param timeout The maximum execution time.
+     * @return The current query instance.
+     */
+    public final Q timeout(Duration timeout) {
+        this.timeout = Optional.of(timeout);
+        return (Q) this;
+    }
+
+    /**
+     * Returns the maximum time the query may take to execute, if set.
+     *
+     * @return an Optional of the query timeout
+     */
+    public final Optional<Duration> getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Returns the emptied buffer to render the native query into, allocating it on the first build only.
+     * <p>
+     * The buffer is shared by every build of the query: rendering into it discards the previously built native query.
+     * </p>
+     *
+     * @return the render buffer of the query
+     */
+    protected final StringBuilder renderBuffer() {
+        if (renderBuffer == null) {
+            renderBuffer = new StringBuilder(128);
+            renderedQuery = Optional.of(renderBuffer);
+        } else {
+            renderBuffer.setLength(0);
+        }
+        return renderBuffer;
+    }
+
+    /**
+     * Sets the built native query.
+     *
+     * @param sql The rendered native query, usually the {@link #renderBuffer() render buffer}.
+     */
+    protected final void setNativeQuery(StringBuilder sql) {
+        this.nativeQuery = sql == renderBuffer ? renderedQuery : Optional.of(sql);
+    }
+
+    /**
+     * Discards the built native query, its parameters and its timeout, keeping the allocated buffers so the query
+     * can be recycled. Concrete query types extend it to clear their own clauses.
+     */
+    protected void clear() {
+        this.nativeQuery = Optional.empty();
+        this.parameters.clear();
+        this.timeout = Optional.empty();
+    }
 }
@@ -0,0 +1,333 @@
+package sql;
+
+import core.exceptions.AdmissionRejectedException;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounds the number of statements executed concurrently through one or more adapters, queueing the excess and
+ * rejecting it fast once the queue is full.
+ * <p>
+ * A statement is admitted while fewer statements than the limit are in flight. Beyond it, callers wait in a bounded
+ * first-in first-out queue, for up to the queue timeout. A caller finding the queue full, or still waiting once its
+ * timeout elapses, is rejected with an {@link AdmissionRejectedException}, so a slow database sheds load instead of
+ * piling up request threads.
+ * </p>
+ * <p>
+ * The limit is fixed unless it is made adaptive, in which case it follows the observed latency, the way AIMD
+ * congestion control does. Latencies are gathered in rounds of a limit's worth of statements, and the median of each
+ * round is compared with the lowest round median observed so far: a median within
+ * {@link #DEFAULT_LATENCY_TOLERANCE} times that baseline raises the limit by one, a higher one cuts it by
+ * {@link #DEFAULT_BACKOFF}, as does any timed out statement. The median ignores the long tail of mixed traffic, e.g.
+ * scans next to point selects, so only a queueing database lowers the limit. A database still too slow at the lowest
+ * limit has slowed down for good, and its round median becomes the new baseline. The adapters report the execution time
+ * of their statements, without the time spent reading their results.
+ * </p>
+ *
+ * <pre>{@code
+ * AdmissionController controller = new AdmissionController(32)
+ *         .adaptive(4, 64)
+ *         .queueCapacity(200)
+ *         .queueTimeout(Duration.ofMillis(250));
+ * adapters.forEach(adapter -> adapter.setAdmissionController(controller));
+ * }</pre>
+ */
+public class AdmissionController {
+
+    /**
+     * The ratio to the baseline latency beyond which the median latency of a round signals an overloaded database.
+     */
+    public static final double DEFAULT_LATENCY_TOLERANCE = 2.0;
+
+    /**
+     * The factor the adaptive limit is multiplied by when the database shows overload.
+     */
+    public static final double DEFAULT_BACKOFF = 0.9;
+
+    /**
+     * The minimum number of statements per round, so the median of a small limit's round is still meaningful.
+     */
+    static final int MIN_ROUND = 10;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final Deque<Thread> waiters = new ArrayDeque<>();
+    private double limit;
+    private int minLimit;
+    private int maxLimit;
+    private boolean adaptive;
+    private int queueCapacity = Integer.MAX_VALUE;
+    private Duration queueTimeout = Duration.ofSeconds(1);
+    private int inFlight;
+    private long baselineNanos = Long.MAX_VALUE;
+    private long[] round = new long[0];
+    private int roundSize;
+    private long admitted;
+    private long rejected;
+    private long timedOut;
+
+    /**
+     * Constructs a controller admitting up to the given number of concurrent statements.
+     *
+     * @param limit The maximum number of statements in flight.
+     */
+    public AdmissionController(int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("The limit must be greater than 0.");
+        }
+        this.limit = limit;
+        this.minLimit = limit;
+        this.maxLimit = limit;
+    }
+
+    /**
+     * Makes the limit follow the observed latency, between the given bounds.
+     *
+     * @param minLimit The lowest limit, however slow the database.
+     * @param maxLimit The highest limit, however fast the database.
+     * @return The current controller.
+     */
+    public AdmissionController adaptive(int minLimit, int maxLimit) {
+        if (minLimit <= 0 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("The limits must be greater than 0 and ordered.");
+        }
+        lock.lock();
+        try {
+            this.minLimit = minLimit;
+            this.maxLimit = maxLimit;
+            this.limit = Math.max(minLimit, Math.min(maxLimit, limit));
+            this.round = new long[Math.max(MIN_ROUND, maxLimit)];
+            this.roundSize = 0;
+            this.adaptive = true;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        return this;
+    }
+
+    /**
+     * Sets the number of callers that may wait for admission, unbounded by default.
+     *
+     * @param queueCapacity The maximum number of waiting callers, 0 to reject as soon as the limit is reached.
+     * @return The current controller.
+     */
+    public AdmissionController queueCapacity(int queueCapacity) {
+        if (queueCapacity < 0) {
+            throw new IllegalArgumentException("The queue capacity must not be negative.");
+        }
+        this.queueCapacity = queueCapacity;
+        return this;
+    }
+
+    /**
+     * Sets the longest time a caller waits for admission, 1 second by default. The wait is also bounded by the
+     * current {@link Deadline}, if any.
+     *
+     * @param queueTimeout The maximum wait.
+     * @return The current controller.
+     */
+    public AdmissionController queueTimeout(Duration queueTimeout) {
+        this.queueTimeout = queueTimeout;
+        return this;
+    }
+
+    /**
+     * Admits a statement, waiting in the queue if the limit is reached.
+     *
+     * @throws AdmissionRejectedException If the queue is full, or the statement was not admitted in time.
+     * @throws InterruptedException       If the calling thread is interrupted while waiting.
+     */
+    void acquire() throws InterruptedException {
+        long waitNanos = queueTimeout.toNanos();
+        Optional<Deadline> deadline = Deadline.current();
+        if (deadline.isPresent()) {
+            waitNanos = Math.min(waitNanos, deadline.get().remaining().toNanos());
+        }
+
+        long maxWaitNanos = waitNanos;
+        Thread current = Thread.currentThread();
+        lock.lock();
+        try {
+            if (waiters.isEmpty() && inFlight < (int) limit) {
+                inFlight++;
+                admitted++;
+                return;
+            }
+            if (waiters.size() >= queueCapacity) {
+                rejected++;
+                throw new AdmissionRejectedException("The admission queue is full: " + inFlight + " statements in flight, "
+                        + waiters.size() + " waiting.");
+            }
+
+            waiters.addLast(current);
+            try {
+                while (waiters.peekFirst() != current || inFlight >= (int) limit) {
+                    if (waitNanos <= 0) {
+                        rejected++;
+                        timedOut++;
+                        throw new AdmissionRejectedException("The statement was not admitted within "
+                                + TimeUnit.NANOSECONDS.toMillis(Math.max(0, maxWaitNanos)) + "ms: " + inFlight + " statements in flight.");
+                    }
+                    waitNanos = changed.awaitNanos(waitNanos);
+                }
+                inFlight++;
+                admitted++;
+            } finally {
+                waiters.remove(current);
+                // The next waiter may now be at the head of the queue
+                changed.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Releases the slot of a completed statement, adapting the limit to its outcome.
+     *
+     * @param latencyNanos The execution time of the statement, without the reading of its result.
+     * @param overloaded   Whether the statement failed in a way showing overload, e.g. a timeout.
+     */
+    void release(long latencyNanos, boolean overloaded) {
+        lock.lock();
+        try {
+            inFlight--;
+            if (adaptive) {
+                adapt(latencyNanos, overloaded);
+            }
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void adapt(long latencyNanos, boolean overloaded) {
+        if (overloaded) {
+            limit = Math.max(minLimit, limit * DEFAULT_BACKOFF);
+            return;
+        }
+        round[roundSize++] = latencyNanos;
+        if (roundSize < Math.max(MIN_ROUND, (int) limit)) {
+            return;
+        }
+
+        Arrays.sort(round, 0, roundSize);
+        long median = round[roundSize / 2];
+        roundSize = 0;
+        baselineNanos = Math.min(baselineNanos, median);
+
+        if (median > baselineNanos * DEFAULT_LATENCY_TOLERANCE) {
+            if ((int) limit <= minLimit) {
+                // Slow even at the lowest limit: the database itself got slower, not more loaded
+                baselineNanos = median;
+            }
+            limit = Math.max(minLimit, limit * DEFAULT_BACKOFF);
+        } else if (inFlight + 1 >= (int) limit / 2) {
+            // Only grows a limit that is actually used
+            limit = Math.min(maxLimit, limit + 1);
+        }
+    }
+
+    /**
+     * Returns a snapshot of the controller metrics.
+     *
+     * @return the current metrics
+     */
+    public Metrics getMetrics() {
+        lock.lock();
+        try {
+            return new Metrics((int) limit, inFlight, waiters.size(), admitted, rejected, timedOut);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * A snapshot of the admission controller metrics.
+     */
+    public static final class Metrics {
+        private final int limit;
+        private final int inFlight;
+        private final int queueDepth;
+        private final long admitted;
+        private final long rejected;
+        private final long timedOut;
+
+        Metrics(int limit, int inFlight, int queueDepth, long admitted, long rejected, long timedOut) {
+            this.limit = limit;
+            this.inFlight = inFlight;
+            this.queueDepth = queueDepth;
+            this.admitted = admitted;
+            this.rejected = rejected;
+            this.timedOut = timedOut;
+        }
+
+        /**
+         * Returns the current limit of statements in flight.
+         *
+         * @return the limit
+         */
+        public int getLimit() {
+            return limit;
+        }
+
+        /**
+         * Returns the number of statements being executed.
+         *
+         * @return the in-flight count
+         */
+        public int getInFlight() {
+            return inFlight;
+        }
+
+        /**
+         * Returns the number of callers waiting for admission.
+         *
+         * @return the queue depth
+         */
+        public int getQueueDepth() {
+            return queueDepth;
+        }
+
+        /**
+         * Returns the number of statements admitted so far.
+         *
+         * @return the admitted count
+         */
+        public long getAdmitted() {
+            return admitted;
+        }
+
+        /**
+         * Returns the number of statements rejected so far, because the queue was full or their wait timed out.
+         *
+         * @return the rejected count
+         */
+        public long getRejected() {
+            return rejected;
+        }
+
+        /**
+         * Returns the number of statements rejected because their wait timed out.
+         *
+         * @return the timed out count
+         */
+        public long getTimedOut() {
+            return timedOut;
+        }
+
+        @Override
+        public String toString() {
+            return "limit=" + limit + ", inFlight=" + inFlight + ", queueDepth=" + queueDepth + ", admitted=" + admitted
+                    + ", rejected=" + rejected + ", timedOut=" + timedOut;
+        }
+    }
+}
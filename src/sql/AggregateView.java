@@ -0,0 +1,802 @@
+package sql;
+
+import core.clauses.Aggregate;
+import core.clauses.Where;
+import sql.queries.SQLDeleteQuery;
+import sql.queries.SQLInsertQuery;
+import sql.queries.SQLSelectQuery;
+import sql.queries.SQLUpdateQuery;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * An in-memory {@code SELECT group, COUNT(*), SUM(x) ... FROM table WHERE ... GROUP BY group} view, kept up to date
+ * from the writes of an adapter instead of being queried again on every read.
+ * <p>
+ * The view is seeded by a single GROUP BY query, then listens to the statements executed by its adapter:
+ * <ul>
+ *     <li>the rows of an INSERT into the table are matched against the filter in memory and added to their group,
+ *     so inserts are reflected as soon as they are executed;</li>
+ *     <li>an UPDATE of the table setting none of the columns the view reads is ignored;</li>
+ *     <li>an UPDATE setting such a column, or a DELETE from the table, cannot be applied without the rows it
+ *     changed, so it marks the view stale and schedules its reconciliation after the refresh delay.</li>
+ * </ul>
+ * Reads are served from a concurrent map. The view is also reconciled periodically against the database, which
+ * corrects the drift left by writes it cannot observe: those of other adapters or processes, inserts setting a
+ * column to its default, rolled back transactions, and inserts overlapping a reconciliation query, which its result
+ * may or may not include.
+ * </p>
+ * <p>
+ * Every measure but {@code COUNT(DISTINCT ...)} is supported. The filter is evaluated in memory, comparing values
+ * the way Java does rather than with the collation of the database, so raw expressions and subqueries are not
+ * supported. The reconciliation queries run on a dedicated thread: unless another adapter is given through
+ * {@link #reconcileWith(SQLAdapter)}, the observed adapter is used from that thread too.
+ * </p>
+ *
+ * <pre>{@code
+ * try (AggregateView view = adapter.aggregateView("orders")
+ *         .groupBy("region")
+ *         .measure(Aggregate.count().as("orders"), Aggregate.sum("amount").as("total"))
+ *         .where(Where.equal("status", "paid"))
+ *         .reconcileEvery(Duration.ofMinutes(1))
+ *         .open()) {
+ *     Optional<Map<String, Object>> europe = view.get("eu");
+ * }
+ * }</pre>
+ */
+public class AggregateView implements AutoCloseable {
+
+    /**
+     * The default interval between two reconciliations against the database.
+     */
+    public static final Duration DEFAULT_RECONCILE_INTERVAL = Duration.ofMinutes(5);
+
+    /**
+     * The default delay between a write marking the view stale and its reconciliation.
+     */
+    public static final Duration DEFAULT_REFRESH_DELAY = Duration.ofSeconds(1);
+
+    private final SQLAdapter adapter;
+    private final String table;
+    private final List<String> groupColumns = new ArrayList<>();
+    private final List<Aggregate> measures = new ArrayList<>();
+    private final List<Where> filters = new ArrayList<>();
+    private final Set<String> readColumns = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+    private final QueryListener listener = this::onExecuted;
+    private final Object reconciliation = new Object();
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean();
+
+    private SQLAdapter reconcileAdapter;
+    private Duration reconcileInterval = DEFAULT_RECONCILE_INTERVAL;
+    private Duration refreshDelay = DEFAULT_REFRESH_DELAY;
+    private Consumer<Exception> failureHandler = e -> {
+    };
+    private volatile ScheduledExecutorService scheduler;
+    private volatile ConcurrentMap<List<Object>, Group> groups = new ConcurrentHashMap<>();
+    private volatile boolean stale = true;
+
+    // Guarded by this
+    private List<Object[]> rowsDuringReconciliation;
+    private List<long[]> rowTimesDuringReconciliation;
+    private long snapshotStartNanos;
+    private long snapshotNanos;
+    private long appliedRows;
+    private long overlappedRows;
+    private long reconciliations;
+    private long driftedGroups;
+
+    /**
+     * Constructs a view over a table, to be defined then opened.
+     *
+     * @param adapter The adapter whose writes keep the view up to date, also running its queries by default.
+     * @param table   The table the view aggregates.
+     */
+    public AggregateView(SQLAdapter adapter, String table) {
+        this.adapter = adapter;
+        this.table = table;
+        this.reconcileAdapter = adapter;
+    }
+
+    /**
+     * Adds columns the rows are grouped by. A view without group columns holds a single group.
+     *
+     * @param columns The group columns.
+     * @return The current view.
+     */
+    public AggregateView groupBy(String... columns) {
+        this.groupColumns.addAll(Arrays.asList(columns));
+        return this;
+    }
+
+    /**
+     * Adds measures computed over each group. Measures are labelled with their alias if any.
+     *
+     * @param measures The aggregates to maintain.
+     * @return The current view.
+     */
+    public AggregateView measure(Aggregate... measures) {
+        for (Aggregate measure : measures) {
+            if (measure.getFunction() == Aggregate.Function.COUNT_DISTINCT) {
+                throw new IllegalArgumentException("COUNT(DISTINCT " + measure.getColumn() + ") cannot be maintained incrementally.");
+            }
+            this.measures.add(measure);
+        }
+        return this;
+    }
+
+    /**
+     * Adds a condition the aggregated rows must match.
+     *
+     * @param where The filter, evaluated by the database when reconciling and in memory for inserted rows.
+     * @return The current view.
+     */
+    public AggregateView where(Where where) {
+        checkEvaluable(where);
+        this.filters.add(where);
+        return this;
+    }
+
+    /**
+     * Sets the interval between two reconciliations, {@link #DEFAULT_RECONCILE_INTERVAL} by default.
+     *
+     * @param reconcileInterval The interval, or {@link Duration#ZERO} to only reconcile stale views.
+     * @return The current view.
+     */
+    public AggregateView reconcileEvery(Duration reconcileInterval) {
+        this.reconcileInterval = reconcileInterval;
+        return this;
+    }
+
+    /**
+     * Sets the delay between a write marking the view stale and its reconciliation, {@link #DEFAULT_REFRESH_DELAY}
+     * by default, so a burst of deletes is reconciled once.
+     *
+     * @param refreshDelay The delay.
+     * @return The current view.
+     */
+    public AggregateView refreshDelay(Duration refreshDelay) {
+        this.refreshDelay = refreshDelay;
+        return this;
+    }
+
+    /**
+     * Sets the adapter running the reconciliation queries, the observed adapter by default.
+     *
+     * @param reconcileAdapter An adapter connected to the same database.
+     * @return The current view.
+     */
+    public AggregateView reconcileWith(SQLAdapter reconcileAdapter) {
+        this.reconcileAdapter = reconcileAdapter;
+        return this;
+    }
+
+    /**
+     * Sets the handler of the failures of the background reconciliations; the view stays stale until one succeeds.
+     *
+     * @param failureHandler The handler, called from the reconciliation thread.
+     * @return The current view.
+     */
+    public AggregateView onFailure(Consumer<Exception> failureHandler) {
+        this.failureHandler = failureHandler;
+        return this;
+    }
+
+    /**
+     * Seeds the view from the database, then starts following the writes of the adapter and reconciling.
+     *
+     * @return The current view.
+     * @throws SQLException If the seeding query fails.
+     */
+    public AggregateView open() throws SQLException {
+        if (measures.isEmpty()) {
+            throw new IllegalArgumentException("An aggregate view needs at least one measure.");
+        }
+        if (scheduler != null) {
+            throw new IllegalStateException("The view is already open.");
+        }
+        readColumns.addAll(groupColumns);
+        for (Aggregate measure : measures) {
+            if (!measure.getColumn().equals("*")) {
+                readColumns.add(measure.getColumn());
+            }
+        }
+        filters.forEach(this::collectColumns);
+
+        // Listens first, so the writes executed while seeding are kept for the new snapshot
+        adapter.addListener(listener);
+        try {
+            reconcile();
+        } catch (SQLException | RuntimeException e) {
+            adapter.removeListener(listener);
+            throw e;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "aggregate-view-" + table);
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (!reconcileInterval.isZero() && !reconcileInterval.isNegative()) {
+            long millis = Math.max(1, reconcileInterval.toMillis());
+            scheduler.scheduleWithFixedDelay(this::reconcileQuietly, millis, millis, TimeUnit.MILLISECONDS);
+        }
+        if (stale) {
+            // A write marked the view stale while it was being seeded
+            markStale();
+        }
+        return this;
+    }
+
+    /**
+     * Returns the measures of a group.
+     *
+     * @param groupValues The values of the group columns, in order.
+     * @return The row of the group, mapping the group columns and measure labels to their values, or empty if no
+     * aggregated row belongs to the group.
+     */
+    public Optional<Map<String, Object>> get(Object... groupValues) {
+        if (groupValues.length != groupColumns.size()) {
+            throw new IllegalArgumentException("The view is grouped by " + groupColumns.size() + " columns.");
+        }
+        Group group = groups.get(key(groupValues));
+        return group == null ? Optional.empty() : Optional.of(group.toRow());
+    }
+
+    /**
+     * Returns the rows of every group, as the GROUP BY query of the view would.
+     *
+     * @return The rows, in no particular order.
+     */
+    public List<Map<String, Object>> getRows() {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (Group group : groups.values()) {
+            rows.add(group.toRow());
+        }
+        return rows;
+    }
+
+    /**
+     * Checks if the view missed writes it could not apply and awaits its reconciliation.
+     *
+     * @return true if the view may differ from the database otherwise false .
+     */
+    public boolean isStale() {
+        return stale;
+    }
+
+    /**
+     * Replaces the groups of the view with those computed by the database. The rows inserted through the adapter
+     * once the query returned are applied again to its result, which cannot include them. Whether the result includes
+     * the rows of inserts overlapping the query is unknown: they are left out and counted as
+     * {@link Metrics#getOverlappedRows() overlapped}, to be corrected by the next reconciliation, as reconciling again
+     * right away would overlap other inserts under steady traffic.
+     *
+     * @throws SQLException If the query fails; the view is then left as it was.
+     */
+    public void reconcile() throws SQLException {
+        synchronized (reconciliation) {
+            synchronized (this) {
+                rowsDuringReconciliation = new ArrayList<>();
+                rowTimesDuringReconciliation = new ArrayList<>();
+                stale = false;
+            }
+
+            List<Map<String, Object>> rows;
+            long fetching = System.nanoTime();
+            long fetched;
+            try {
+                rows = reconcileAdapter.fetch(seedQuery());
+                fetched = System.nanoTime();
+            } catch (SQLException | RuntimeException e) {
+                synchronized (this) {
+                    rowsDuringReconciliation = null;
+                    rowTimesDuringReconciliation = null;
+                    stale = true;
+                }
+                throw e;
+            }
+
+            ConcurrentMap<List<Object>, Group> fresh = new ConcurrentHashMap<>((int) (rows.size() / 0.75f) + 1);
+            for (Map<String, Object> row : rows) {
+                Map<String, Object> labelled = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+                labelled.putAll(row);
+                Group group = new Group(labelled);
+                fresh.put(key(group.groupValues), group);
+            }
+
+            synchronized (this) {
+                for (int i = 0; i < rowsDuringReconciliation.size(); i++) {
+                    long[] times = rowTimesDuringReconciliation.get(i);
+                    if (times[0] >= fetched) {
+                        apply(fresh, rowsDuringReconciliation.get(i));
+                    } else if (times[1] >= fetching) {
+                        overlappedRows++;
+                    }
+                }
+                if (reconciliations++ > 0) {
+                    driftedGroups += drift(groups, fresh);
+                }
+                groups = fresh;
+                snapshotStartNanos = fetching;
+                snapshotNanos = fetched;
+                rowsDuringReconciliation = null;
+                rowTimesDuringReconciliation = null;
+            }
+        }
+    }
+
+    /**
+     * Returns a snapshot of the view metrics.
+     *
+     * @return the current metrics
+     */
+    public synchronized Metrics getMetrics() {
+        return new Metrics(groups.size(), appliedRows, overlappedRows, reconciliations, driftedGroups, stale);
+    }
+
+    /**
+     * Stops following the writes of the adapter and reconciling. The adapters are left open.
+     */
+    @Override
+    public void close() {
+        adapter.removeListener(listener);
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private void onExecuted(QueryExecution execution) {
+        if (execution.getFailure().isPresent()) {
+            return;
+        }
+        Object query = execution.getQuery();
+        if (query instanceof SQLInsertQuery) {
+            SQLInsertQuery insert = (SQLInsertQuery) query;
+            if (insert.getTarget().isPresent() && insert.getTarget().get().equalsIgnoreCase(table)) {
+                for (Map<String, Object> row : insert.getRows()) {
+                    onInserted(row, execution.getStartNanos(), execution.getStartNanos() + execution.getElapsed().toNanos());
+                }
+            }
+        } else if (query instanceof SQLUpdateQuery) {
+            SQLUpdateQuery update = (SQLUpdateQuery) query;
+            if (update.getTable().isPresent() && update.getTable().get().equalsIgnoreCase(table)
+                    && update.getUpdatedColumns().stream().anyMatch(readColumns::contains)) {
+                markStale();
+            }
+        } else if (query instanceof SQLDeleteQuery) {
+            SQLDeleteQuery delete = (SQLDeleteQuery) query;
+            if (delete.getTarget().isPresent() && delete.getTarget().get().equalsIgnoreCase(table)) {
+                markStale();
+            }
+        }
+    }
+
+    private void onInserted(Map<String, Object> row, long startNanos, long endNanos) {
+        Map<String, Object> values = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        values.putAll(row);
+        if (!values.keySet().containsAll(readColumns)) {
+            // Columns left to their default value are only known to the database
+            markStale();
+            return;
+        }
+        for (Where filter : filters) {
+            if (!matches(filter, values)) {
+                return;
+            }
+        }
+
+        Object[] projected = new Object[groupColumns.size() + measures.size()];
+        for (int i = 0; i < groupColumns.size(); i++) {
+            projected[i] = values.get(groupColumns.get(i));
+        }
+        for (int i = 0; i < measures.size(); i++) {
+            Aggregate measure = measures.get(i);
+            Object value = measure.getColumn().equals("*") ? Boolean.TRUE : values.get(measure.getColumn());
+            boolean summed = measure.getFunction() == Aggregate.Function.SUM || measure.getFunction() == Aggregate.Function.AVG;
+            if (value != null && summed && !(value instanceof Number)) {
+                markStale();
+                return;
+            }
+            projected[groupColumns.size() + i] = value;
+        }
+
+        synchronized (this) {
+            if (rowsDuringReconciliation == null && startNanos < snapshotNanos) {
+                // An insert started before the current snapshot was fetched may already be counted in it
+                if (endNanos >= snapshotStartNanos) {
+                    overlappedRows++;
+                }
+                return;
+            }
+            apply(groups, projected);
+            appliedRows++;
+            if (rowsDuringReconciliation != null) {
+                rowsDuringReconciliation.add(projected);
+                rowTimesDuringReconciliation.add(new long[]{startNanos, endNanos});
+            }
+        }
+    }
+
+    private void apply(ConcurrentMap<List<Object>, Group> target, Object[] projected) {
+        Object[] groupValues = Arrays.copyOf(projected, groupColumns.size());
+        target.computeIfAbsent(key(groupValues), k -> new Group(groupValues)).add(projected);
+    }
+
+    private void markStale() {
+        stale = true;
+        ScheduledExecutorService scheduler = this.scheduler;
+        if (scheduler != null && refreshScheduled.compareAndSet(false, true)) {
+            try {
+                scheduler.schedule(() -> {
+                    refreshScheduled.set(false);
+                    reconcileQuietly();
+                }, Math.max(0, refreshDelay.toMillis()), TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // The view is closed
+            }
+        }
+    }
+
+    private void reconcileQuietly() {
+        try {
+            reconcile();
+        } catch (Exception e) {
+            failureHandler.accept(e);
+        }
+    }
+
+    private SQLSelectQuery seedQuery() {
+        SQLSelectQuery query = adapter.getBuilder().select(groupColumns.toArray(new String[0]));
+        for (int i = 0; i < measures.size(); i++) {
+            Aggregate measure = measures.get(i);
+            switch (measure.getFunction()) {
+                case SUM:
+                case AVG:
+                    query.aggregate(Aggregate.count(measure.getColumn()).as("m" + i + "_count"),
+                            Aggregate.sum(measure.getColumn()).as("m" + i));
+                    break;
+                case MIN:
+                    query.aggregate(Aggregate.min(measure.getColumn()).as("m" + i));
+                    break;
+                case MAX:
+                    query.aggregate(Aggregate.max(measure.getColumn()).as("m" + i));
+                    break;
+                default:
+                    query.aggregate(Aggregate.count(measure.getColumn()).as("m" + i));
+            }
+        }
+        query.from(table);
+        filters.forEach(query::where);
+        if (!groupColumns.isEmpty()) {
+            query.groupBy(groupColumns.toArray(new String[0]));
+        }
+        return (SQLSelectQuery) query.build();
+    }
+
+    /**
+     * Counts the groups that differ between two snapshots of the view.
+     */
+    private int drift(Map<List<Object>, Group> before, Map<List<Object>, Group> after) {
+        int drifted = 0;
+        Set<List<Object>> keys = new HashSet<>(before.keySet());
+        keys.addAll(after.keySet());
+        for (List<Object> key : keys) {
+            Group previous = before.get(key);
+            Group current = after.get(key);
+            if (previous == null || current == null || !key(previous.toRow().values().toArray()).equals(key(current.toRow().values().toArray()))) {
+                drifted++;
+            }
+        }
+        return drifted;
+    }
+
+    private String label(Aggregate measure) {
+        if (measure.getAlias().isPresent()) {
+            return measure.getAlias().get();
+        }
+        return measure.getFunction().name() + "(" + measure.getColumn() + ")";
+    }
+
+    private void collectColumns(Where where) {
+        if (where.getLogicalOperator() != null) {
+            collectColumns(where.getLeft());
+            collectColumns(where.getRight());
+            return;
+        }
+        readColumns.add(where.getField());
+        if (where.getOperator() == Where.Operator.COLUMN_EQUAL) {
+            readColumns.add((String) where.getValue());
+        }
+    }
+
+    private static void checkEvaluable(Where where) {
+        if (where.getLogicalOperator() != null) {
+            checkEvaluable(where.getLeft());
+            checkEvaluable(where.getRight());
+            return;
+        }
+        if (where.getOperator() == Where.Operator.RAW || where.getSubquery() != null) {
+            throw new IllegalArgumentException("Raw expressions and subqueries cannot be evaluated in memory.");
+        }
+    }
+
+    /**
+     * Evaluates a condition against the values of an inserted row. Comparisons with NULL are false, as in SQL.
+     */
+    private static boolean matches(Where where, Map<String, Object> row) {
+        if (where.getLogicalOperator() != null) {
+            boolean left = matches(where.getLeft(), row);
+            return where.getLogicalOperator() == Where.LogicalOperator.AND
+                    ? left && matches(where.getRight(), row)
+                    : left || matches(where.getRight(), row);
+        }
+        Object value = row.get(where.getField());
+        switch (where.getOperator()) {
+            case IS_NULL:
+                return value == null;
+            case IS_NOT_NULL:
+                return value != null;
+            case COLUMN_EQUAL:
+                Object other = row.get((String) where.getValue());
+                return value != null && other != null && compare(value, other) == 0;
+            default:
+                break;
+        }
+        if (value == null) {
+            return false;
+        }
+        switch (where.getOperator()) {
+            case EQUAL:
+                return where.getValue() != null && compare(value, where.getValue()) == 0;
+            case NOT_EQUAL:
+                return where.getValue() != null && compare(value, where.getValue()) != 0;
+            case GREATER_THAN:
+                return where.getValue() != null && compare(value, where.getValue()) > 0;
+            case GREATER_THAN_OR_EQUAL:
+                return where.getValue() != null && compare(value, where.getValue()) >= 0;
+            case LESS_THAN:
+                return where.getValue() != null && compare(value, where.getValue()) < 0;
+            case LESS_THAN_OR_EQUAL:
+                return where.getValue() != null && compare(value, where.getValue()) <= 0;
+            case BETWEEN:
+                return compare(value, where.getValue()) >= 0 && compare(value, where.getSecondValue()) <= 0;
+            case IN:
+            case NOT_IN:
+                boolean found = false;
+                for (Object candidate : where.getValues()) {
+                    if (candidate != null && compare(value, candidate) == 0) {
+                        found = true;
+                        break;
+                    }
+                }
+                return found == (where.getOperator() == Where.Operator.IN);
+            case LIKE:
+            case NOT_LIKE:
+                boolean like = likePattern(String.valueOf(where.getValue())).matcher(value.toString()).matches();
+                return like == (where.getOperator() == Where.Operator.LIKE);
+            default:
+                throw new IllegalArgumentException("The operator " + where.getOperator() + " cannot be evaluated in memory.");
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compare(Object a, Object b) {
+        if (a instanceof Number && b instanceof Number) {
+            return toBigDecimal((Number) a).compareTo(toBigDecimal((Number) b));
+        }
+        if (a instanceof Comparable && a.getClass().isInstance(b)) {
+            return ((Comparable) a).compareTo(b);
+        }
+        return a.toString().compareTo(b.toString());
+    }
+
+    private static Pattern likePattern(String like) {
+        StringBuilder regex = new StringBuilder();
+        for (char c : like.toCharArray()) {
+            if (c == '%') {
+                regex.append(".*");
+            } else if (c == '_') {
+                regex.append('.');
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+
+    private static BigDecimal toBigDecimal(Number number) {
+        if (number instanceof BigDecimal) {
+            return (BigDecimal) number;
+        }
+        if (number instanceof Double || number instanceof Float) {
+            return BigDecimal.valueOf(number.doubleValue());
+        }
+        return new BigDecimal(number.toString());
+    }
+
+    /**
+     * Normalizes the values of a group so numbers of different types but equal values, e.g. the {@link Integer} of
+     * an insert and the {@link Long} returned by the driver, identify the same group.
+     */
+    private static List<Object> key(Object[] values) {
+        List<Object> key = new ArrayList<>(values.length);
+        for (Object value : values) {
+            key.add(value instanceof Number ? toBigDecimal((Number) value).stripTrailingZeros() : value);
+        }
+        return key;
+    }
+
+    /**
+     * The measures of a group, updated under its monitor.
+     */
+    private final class Group {
+        private final Object[] groupValues;
+        private final long[] counts = new long[measures.size()];
+        private final BigDecimal[] sums = new BigDecimal[measures.size()];
+        private final Object[] extremes = new Object[measures.size()];
+
+        Group(Object[] groupValues) {
+            this.groupValues = groupValues;
+        }
+
+        Group(Map<String, Object> row) {
+            this.groupValues = new Object[groupColumns.size()];
+            for (int i = 0; i < groupValues.length; i++) {
+                groupValues[i] = row.get(groupColumns.get(i));
+            }
+            for (int i = 0; i < measures.size(); i++) {
+                Object value = row.get("m" + i);
+                switch (measures.get(i).getFunction()) {
+                    case SUM:
+                    case AVG:
+                        counts[i] = ((Number) row.get("m" + i + "_count")).longValue();
+                        sums[i] = value == null ? BigDecimal.ZERO : toBigDecimal((Number) value);
+                        break;
+                    case MIN:
+                    case MAX:
+                        extremes[i] = value;
+                        break;
+                    default:
+                        counts[i] = value == null ? 0 : ((Number) value).longValue();
+                }
+            }
+        }
+
+        synchronized void add(Object[] projected) {
+            for (int i = 0; i < measures.size(); i++) {
+                Object value = projected[groupColumns.size() + i];
+                if (value == null) {
+                    continue;
+                }
+                switch (measures.get(i).getFunction()) {
+                    case SUM:
+                    case AVG:
+                        counts[i]++;
+                        sums[i] = sums[i] == null ? toBigDecimal((Number) value) : sums[i].add(toBigDecimal((Number) value));
+                        break;
+                    case MIN:
+                        if (extremes[i] == null || compare(value, extremes[i]) < 0) {
+                            extremes[i] = value;
+                        }
+                        break;
+                    case MAX:
+                        if (extremes[i] == null || compare(value, extremes[i]) > 0) {
+                            extremes[i] = value;
+                        }
+                        break;
+                    default:
+                        counts[i]++;
+                }
+            }
+        }
+
+        synchronized Map<String, Object> toRow() {
+            Map<String, Object> row = new LinkedHashMap<>();
+            for (int i = 0; i < groupValues.length; i++) {
+                row.put(groupColumns.get(i), groupValues[i]);
+            }
+            for (int i = 0; i < measures.size(); i++) {
+                Object value;
+                switch (measures.get(i).getFunction()) {
+                    case SUM:
+                        value = counts[i] == 0 ? null : sums[i];
+                        break;
+                    case AVG:
+                        value = counts[i] == 0 ? null : sums[i].divide(BigDecimal.valueOf(counts[i]), MathContext.DECIMAL64);
+                        break;
+                    case MIN:
+                    case MAX:
+                        value = extremes[i];
+                        break;
+                    default:
+                        value = counts[i];
+                }
+                row.put(label(measures.get(i)), value);
+            }
+            return row;
+        }
+    }
+
+    /**
+     * A snapshot of the aggregate view metrics.
+     */
+    public static final class Metrics {
+        private final int groups;
+        private final long appliedRows;
+        private final long overlappedRows;
+        private final long reconciliations;
+        private final long driftedGroups;
+        private final boolean stale;
+
+        Metrics(int groups, long appliedRows, long overlappedRows, long reconciliations, long driftedGroups, boolean stale) {
+            this.groups = groups;
+            this.appliedRows = appliedRows;
+            this.overlappedRows = overlappedRows;
+            this.reconciliations = reconciliations;
+            this.driftedGroups = driftedGroups;
+            this.stale = stale;
+        }
+
+        /**
+         * Returns the number of groups of the view.
+         *
+         * @return the group count
+         */
+        public int getGroups() {
+            return groups;
+        }
+
+        /**
+         * Returns the number of inserted rows applied to the view so far.
+         *
+         * @return the applied row count
+         */
+        public long getAppliedRows() {
+            return appliedRows;
+        }
+
+        /**
+         * Returns the number of inserted rows overlapping a reconciliation query, left to the next reconciliation
+         * since its result may or may not include them.
+         *
+         * @return the overlapped row count
+         */
+        public long getOverlappedRows() {
+            return overlappedRows;
+        }
+
+        /**
+         * Returns the number of times the view was computed by the database, including its seeding.
+         *
+         * @return the reconciliation count
+         */
+        public long getReconciliations() {
+            return reconciliations;
+        }
+
+        /**
+         * Returns the number of groups the reconciliations found different from the view, over all of them.
+         *
+         * @return the drifted group count
+         */
+        public long getDriftedGroups() {
+            return driftedGroups;
+        }
+
+        /**
+         * Checks if the view awaited its reconciliation when the snapshot was taken.
+         *
+         * @return true if the view was stale otherwise false .
+         */
+        public boolean isStale() {
+            return stale;
+        }
+    }
+}
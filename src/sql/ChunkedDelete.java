@@ -0,0 +1,246 @@
+package sql;
+
+import sql.queries.SQLDeleteQuery;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Purges the rows matched by a DELETE query in small chunks instead of a single unbounded statement.
+ * <p>
+ * The query is repeatedly executed as {@code DELETE ... WHERE ... ORDER BY key LIMIT n}, each chunk being committed on
+ * its own, until a chunk deletes fewer rows than its limit. Pausing between chunks lets replication and concurrent
+ * writers catch up. When a target chunk latency is set, the chunk size adapts to the observed latency: it is halved
+ * when a chunk overruns the target and grows by a tenth while chunks complete in less than half of it.
+ * </p>
+ *
+ * <pre>{@code
+ * long deleted = new ChunkedDelete(adapter, builder.delete("events").where(Where.lessThan("created_at", cutoff)), "id")
+ *         .chunkSize(5000)
+ *         .pause(Duration.ofMillis(50))
+ *         .targetChunkLatency(Duration.ofMillis(200))
+ *         .onProgress(progress -> log(progress.getDeletedRows()))
+ *         .run();
+ * }</pre>
+ */
+public class ChunkedDelete {
+
+    /**
+     * The default number of rows deleted by a chunk.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
+
+    private final SQLAdapter adapter;
+    private final SQLDeleteQuery query;
+
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+    private int minChunkSize = 1;
+    private int maxChunkSize = DEFAULT_CHUNK_SIZE;
+    private Duration pause = Duration.ZERO;
+    private Duration targetChunkLatency;
+    private Consumer<Progress> progressListener = progress -> {
+    };
+
+    /**
+     * Constructs a chunked delete of the rows matched by the given query.
+     *
+     * @param adapter   The adapter executing the chunks.
+     * @param query     The unbuilt DELETE query selecting the rows to purge.
+     * @param keyColumn The column the rows are deleted in order of, usually the primary key, or {@code null}
+     *                  to delete them in no particular order.
+     */
+    public ChunkedDelete(SQLAdapter adapter, SQLDeleteQuery query, String keyColumn) {
+        this.adapter = adapter;
+        this.query = query;
+        if (keyColumn != null) {
+            this.query.orderBy(keyColumn);
+        }
+    }
+
+    /**
+     * Sets the number of rows deleted by each chunk, also used as the upper bound of the adaptive chunk size.
+     *
+     * @param chunkSize The number of rows per chunk.
+     * @return The current chunked delete.
+     */
+    public ChunkedDelete chunkSize(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("The chunk size must be greater than 0.");
+        }
+        this.chunkSize = chunkSize;
+        this.maxChunkSize = chunkSize;
+        this.minChunkSize = Math.min(this.minChunkSize, chunkSize);
+        return this;
+    }
+
+    /**
+     * Sets the lower bound of the adaptive chunk size.
+     *
+     * @param minChunkSize The minimum number of rows per chunk.
+     * @return The current chunked delete.
+     */
+    public ChunkedDelete minChunkSize(int minChunkSize) {
+        this.minChunkSize = Math.max(1, Math.min(minChunkSize, this.maxChunkSize));
+        return this;
+    }
+
+    /**
+     * Sets the pause between two chunks.
+     *
+     * @param pause The time to wait after each chunk.
+     * @return The current chunked delete.
+     */
+    public ChunkedDelete pause(Duration pause) {
+        this.pause = pause;
+        return this;
+    }
+
+    /**
+     * Enables adaptive throttling, resizing chunks so each of them takes about the given time.
+     *
+     * @param targetChunkLatency The expected execution time of a chunk.
+     * @return The current chunked delete.
+     */
+    public ChunkedDelete targetChunkLatency(Duration targetChunkLatency) {
+        this.targetChunkLatency = targetChunkLatency;
+        return this;
+    }
+
+    /**
+     * Sets the callback notified after each chunk.
+     *
+     * @param progressListener The callback receiving the progress of the purge.
+     * @return The current chunked delete.
+     */
+    public ChunkedDelete onProgress(Consumer<Progress> progressListener) {
+        this.progressListener = progressListener;
+        return this;
+    }
+
+    /**
+     * Deletes the matched rows chunk by chunk until none is left.
+     * <p>
+     * If the calling thread is interrupted while pausing, the purge stops after the current chunk and the interrupt
+     * flag is restored.
+     * </p>
+     *
+     * @return The total number of deleted rows.
+     * @throws SQLException If a chunk fails; the chunks executed before it stay committed.
+     */
+    public long run() throws SQLException {
+        long deletedRows = 0;
+        int chunks = 0;
+        int size = chunkSize;
+
+        while (true) {
+            long start = System.nanoTime();
+            Map<String, Object> result = adapter.execute(query.limit(size).build());
+            Duration latency = Duration.ofNanos(System.nanoTime() - start);
+
+            int chunkRows = ((Number) result.get("affectedRows")).intValue();
+            deletedRows += chunkRows;
+            chunks++;
+            progressListener.accept(new Progress(chunks, chunkRows, deletedRows, size, latency));
+
+            if (chunkRows < size) {
+                return deletedRows;
+            }
+
+            size = adapt(size, latency);
+            if (!pause.isZero() && !pause.isNegative()) {
+                try {
+                    Thread.sleep(pause.toMillis(), pause.getNano() % 1_000_000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return deletedRows;
+                }
+            }
+        }
+    }
+
+    /**
+     * Resizes the next chunk according to the latency of the previous one.
+     *
+     * @param size    The size of the previous chunk.
+     * @param latency The execution time of the previous chunk.
+     * @return The size of the next chunk.
+     */
+    private int adapt(int size, Duration latency) {
+        if (targetChunkLatency == null) {
+            return size;
+        }
+        if (latency.compareTo(targetChunkLatency) > 0) {
+            return Math.max(minChunkSize, size / 2);
+        }
+        if (latency.compareTo(targetChunkLatency.dividedBy(2)) < 0) {
+            return Math.min(maxChunkSize, size + Math.max(1, size / 10));
+        }
+        return size;
+    }
+
+    /**
+     * The progress of a chunked delete, reported after each chunk.
+     */
+    public static final class Progress {
+        private final int chunks;
+        private final int chunkRows;
+        private final long deletedRows;
+        private final int chunkSize;
+        private final Duration chunkLatency;
+
+        Progress(int chunks, int chunkRows, long deletedRows, int chunkSize, Duration chunkLatency) {
+            this.chunks = chunks;
+            this.chunkRows = chunkRows;
+            this.deletedRows = deletedRows;
+            this.chunkSize = chunkSize;
+            this.chunkLatency = chunkLatency;
+        }
+
+        /**
+         * Returns the number of chunks executed so far.
+         *
+         * @return the chunk count
+         */
+        public int getChunks() {
+            return chunks;
+        }
+
+        /**
+         * Returns the number of rows deleted by the last chunk.
+         *
+         * @return the last chunk row count
+         */
+        public int getChunkRows() {
+            return chunkRows;
+        }
+
+        /**
+         * Returns the number of rows deleted so far.
+         *
+         * @return the total row count
+         */
+        public long getDeletedRows() {
+            return deletedRows;
+        }
+
+        /**
+         * Returns the limit of the last chunk.
+         *
+         * @return the last chunk size
+         */
+        public int getChunkSize() {
+            return chunkSize;
+        }
+
+        /**
+         * Returns the execution time of the last chunk.
+         *
+         * @return the last chunk latency
+         */
+        public Duration getChunkLatency() {
+            return chunkLatency;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package sql;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+
+/**
+ * A request-scoped deadline bounding the time every query executed within its scope may take.
+ * <p>
+ * A deadline is installed on the current thread by {@link #after(Duration)} and removed when closed, so it is meant
+ * to be used with try-with-resources around the handling of a request. While installed, {@link SQLAdapter} applies
+ * the remaining budget as the timeout of each statement it executes, and fails fast once the budget is exhausted.
+ * Nested deadlines can only shorten the enclosing one.
+ * </p>
+ *
+ * <pre>{@code
+ * try (Deadline deadline = Deadline.after(Duration.ofMillis(250))) {
+ *     adapter.execute(firstQuery);
+ *     adapter.execute(secondQuery); // only gets what is left of the 250ms
+ * }
+ * }</pre>
+ */
+public final class Deadline implements AutoCloseable {
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+    private final long expiresAtNanos;
+    private final Deadline previous;
+
+    private Deadline(long expiresAtNanos, Deadline previous) {
+        this.expiresAtNanos = expiresAtNanos;
+        this.previous = previous;
+    }
+
+    /**
+     * Installs a deadline expiring after the given budget on the current thread.
+     * <p>
+     * If a deadline is already installed and expires sooner, the new one keeps its expiry.
+     * </p>
+     *
+     * @param budget The time left to the requests queries.
+     * @return The installed deadline, to be closed once the request is handled.
+     */
+    public static Deadline after(Duration budget) {
+        return install(System.nanoTime() + budget.toNanos());
+    }
+
+    /**
+     * Returns the deadline installed on the current thread, if any.
+     *
+     * @return an Optional of the current {@link Deadline}
+     */
+    public static Optional<Deadline> current() {
+        return Optional.ofNullable(CURRENT.get());
+    }
+
+    private static Deadline install(long expiresAtNanos) {
+        Deadline previous = CURRENT.get();
+        if (previous != null && previous.expiresAtNanos - expiresAtNanos < 0) {
+            expiresAtNanos = previous.expiresAtNanos;
+        }
+        Deadline deadline = new Deadline(expiresAtNanos, previous);
+        CURRENT.set(deadline);
+        return deadline;
+    }
+
+    /**
+     * Returns the time left before the deadline expires.
+     *
+     * @return the remaining budget, zero or negative once expired
+     */
+    public Duration remaining() {
+        return Duration.ofNanos(expiresAtNanos - System.nanoTime());
+    }
+
+    /**
+     * Checks if the deadline has expired.
+     *
+     * @return true if no budget is left otherwise false .
+     */
+    public boolean isExpired() {
+        return expiresAtNanos - System.nanoTime() <= 0;
+    }
+
+    /**
+     * Wraps a task so it runs under this deadline on whatever thread executes it.
+     *
+     * @param task The task to propagate the deadline to.
+     * @param <T>  The result type of the task.
+     * @return A task installing this deadline for the duration of its execution.
+     */
+    public <T> Callable<T> propagate(Callable<T> task) {
+        return () -> {
+            Deadline previous = CURRENT.get();
+            install(expiresAtNanos);
+            try {
+                return task.call();
+            } finally {
+                if (previous == null) {
+                    CURRENT.remove();
+                } else {
+                    CURRENT.set(previous);
+                }
+            }
+        };
+    }
+
+    /**
+     * Removes this deadline from the current thread, restoring the enclosing one if any.
+     */
+    @Override
+    public void close() {
+        if (CURRENT.get() == this) {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+}
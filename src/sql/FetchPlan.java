@@ -0,0 +1,271 @@
+package sql;
+
+import core.clauses.Where;
+import sql.queries.SQLSelectQuery;
+
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * Loads parent rows together with their child collections without issuing one query per parent.
+ * <p>
+ * Each one-to-many association is fetched with one of two strategies:
+ * <ul>
+ *     <li>{@link Strategy#JOIN}: the children are LEFT JOINed to the parent query, so parents and children come back
+ *     in a single round trip. Child columns are selected as {@code association__column} to keep them apart from the
+ *     parent columns. Only one association per plan may use it, as joining several collections multiplies rows.</li>
+ *     <li>{@link Strategy#BATCH}: once the parents are loaded, the children of every parent are loaded by one
+ *     {@code WHERE foreign_key IN (...)} query per chunk of {@link #batchSize(int)} parents.</li>
+ * </ul>
+ * Each returned parent row holds its children, as a list of rows, under the name of the association.
+ * </p>
+ *
+ * <pre>{@code
+ * List<Map<String, Object>> users = new FetchPlan(adapter, "users", "id", "id", "name")
+ *         .where(Where.equal("users.country_iso", "TN"))
+ *         .hasMany("orders", "orders", "user_id", FetchPlan.Strategy.JOIN, "id", "total")
+ *         .hasMany("addresses", "addresses", "user_id", FetchPlan.Strategy.BATCH)
+ *         .fetch();
+ * }</pre>
+ */
+public class FetchPlan {
+
+    /**
+     * Enumeration of the strategies fetching an association.
+     */
+    public enum Strategy {
+        JOIN, BATCH
+    }
+
+    /**
+     * The default number of parents whose children are loaded by a single batched query.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    private static final String SEPARATOR = "__";
+
+    private final SQLAdapter adapter;
+    private final String table;
+    private final String keyColumn;
+    private final List<String> columns;
+    private final List<Where> wheres = new ArrayList<>();
+    private final List<Association> associations = new ArrayList<>();
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    /**
+     * Constructs a fetch plan loading rows of the given parent table.
+     *
+     * @param adapter   The adapter executing the queries.
+     * @param table     The parent table.
+     * @param keyColumn The key column of the parent table, referenced by the children foreign keys.
+     * @param columns   The parent columns to select, or none to select every column.
+     */
+    public FetchPlan(SQLAdapter adapter, String table, String keyColumn, String... columns) {
+        this.adapter = adapter;
+        this.table = table;
+        this.keyColumn = keyColumn;
+        this.columns = new ArrayList<>(Arrays.asList(columns));
+        if (!this.columns.isEmpty() && !this.columns.contains(keyColumn)) {
+            this.columns.add(keyColumn);
+        }
+    }
+
+    /**
+     * Adds a condition on the parent rows to load.
+     *
+     * @param where The WHERE condition, with columns qualified by the parent table name.
+     * @return The current fetch plan.
+     */
+    public FetchPlan where(Where where) {
+        this.wheres.add(where);
+        return this;
+    }
+
+    /**
+     * Adds a one-to-many association to load along with the parents.
+     *
+     * @param name       The name the children are stored under in their parent row.
+     * @param table      The child table.
+     * @param foreignKey The column of the child table referencing the parent key.
+     * @param strategy   The strategy fetching the children.
+     * @param columns    The child columns to select; required by {@link Strategy#JOIN}, or none to select every
+     *                   column with {@link Strategy#BATCH}.
+     * @return The current fetch plan.
+     */
+    public FetchPlan hasMany(String name, String table, String foreignKey, Strategy strategy, String... columns) {
+        if (strategy == Strategy.JOIN) {
+            if (columns.length == 0) {
+                throw new IllegalArgumentException("Joined associations must list the columns they select.");
+            }
+            if (associations.stream().anyMatch(association -> association.strategy == Strategy.JOIN)) {
+                throw new IllegalStateException("Only one association per fetch plan can be joined.");
+            }
+        }
+        this.associations.add(new Association(name, table, foreignKey, strategy, columns));
+        return this;
+    }
+
+    /**
+     * Sets the number of parents whose children are loaded by a single batched query.
+     *
+     * @param batchSize The number of parent keys per IN query.
+     * @return The current fetch plan.
+     */
+    public FetchPlan batchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("The batch size must be greater than 0.");
+        }
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Loads the parents and their associations.
+     *
+     * @return The parent rows, in the order the database returned them, each holding its children.
+     * @throws SQLException If an SQL exception occurs during execution.
+     */
+    public List<Map<String, Object>> fetch() throws SQLException {
+        Optional<Association> joined = associations.stream()
+                .filter(association -> association.strategy == Strategy.JOIN)
+                .findFirst();
+
+        Map<Object, Map<String, Object>> parents = joined.isPresent()
+                ? fetchJoined(joined.get())
+                : fetchParents();
+
+        for (Association association : associations) {
+            if (association.strategy == Strategy.BATCH) {
+                fetchBatched(association, parents);
+            }
+        }
+        return new ArrayList<>(parents.values());
+    }
+
+    /**
+     * Loads the parents alone.
+     *
+     * @return The parent rows by normalized key.
+     * @throws SQLException If an SQL exception occurs during execution.
+     */
+    private Map<Object, Map<String, Object>> fetchParents() throws SQLException {
+        SQLSelectQuery query = adapter.getBuilder().select(columns.toArray(new String[0])).from(table);
+        wheres.forEach(query::where);
+
+        Map<Object, Map<String, Object>> parents = new LinkedHashMap<>();
+        for (Map<String, Object> row : adapter.fetch(query.build())) {
+            parents.putIfAbsent(SQLBatchLoader.normalize(row.get(label(keyColumn))), row);
+        }
+        return parents;
+    }
+
+    /**
+     * Loads the parents along with the children of the joined association in a single query.
+     *
+     * @param association The joined association.
+     * @return The parent rows by normalized key.
+     * @throws SQLException If an SQL exception occurs during execution.
+     */
+    private Map<Object, Map<String, Object>> fetchJoined(Association association) throws SQLException {
+        List<String> projection = new ArrayList<>();
+        if (columns.isEmpty()) {
+            projection.add(table + ".*");
+        } else {
+            columns.forEach(column -> projection.add(table + "." + column));
+        }
+        String prefix = association.name + SEPARATOR;
+        for (String column : association.columns) {
+            projection.add(association.name + "." + column + " AS " + prefix + column);
+        }
+
+        SQLSelectQuery query = adapter.getBuilder()
+                .select(projection.toArray(new String[0]))
+                .from(table)
+                .leftJoin(association.table, association.name,
+                        Where.columnEqual(association.name + "." + association.foreignKey, table + "." + keyColumn));
+        wheres.forEach(query::where);
+
+        Map<Object, Map<String, Object>> parents = new LinkedHashMap<>();
+        for (Map<String, Object> row : adapter.fetch(query.build())) {
+            Map<String, Object> parentColumns = new HashMap<>();
+            Map<String, Object> childColumns = new HashMap<>();
+            for (Map.Entry<String, Object> column : row.entrySet()) {
+                if (column.getKey().startsWith(prefix)) {
+                    childColumns.put(column.getKey().substring(prefix.length()), column.getValue());
+                } else {
+                    parentColumns.put(column.getKey(), column.getValue());
+                }
+            }
+
+            Map<String, Object> parent = parents.computeIfAbsent(SQLBatchLoader.normalize(parentColumns.get(label(keyColumn))), key -> {
+                parentColumns.put(association.name, new ArrayList<Map<String, Object>>());
+                return parentColumns;
+            });
+            // LEFT JOIN rows without any child come back with a null foreign key
+            if (childColumns.get(label(association.foreignKey)) != null) {
+                children(parent, association.name).add(childColumns);
+            }
+        }
+        return parents;
+    }
+
+    /**
+     * Loads the children of a batched association with one IN query per chunk of parents.
+     *
+     * @param association The batched association.
+     * @param parents     The parent rows by normalized key.
+     * @throws SQLException If an SQL exception occurs during execution.
+     */
+    private void fetchBatched(Association association, Map<Object, Map<String, Object>> parents) throws SQLException {
+        parents.values().forEach(parent -> parent.put(association.name, new ArrayList<Map<String, Object>>()));
+
+        List<Object> keys = new ArrayList<>(parents.keySet());
+        for (int from = 0; from < keys.size(); from += batchSize) {
+            List<Object> chunk = keys.subList(from, Math.min(keys.size(), from + batchSize));
+            SQLSelectQuery query = adapter.getBuilder()
+                    .select(association.columns)
+                    .from(association.table)
+                    .where(Where.in(association.foreignKey, new ArrayList<>(chunk)));
+
+            for (Map<String, Object> child : adapter.fetch(query.build())) {
+                Map<String, Object> parent = parents.get(SQLBatchLoader.normalize(child.get(label(association.foreignKey))));
+                if (parent != null) {
+                    children(parent, association.name).add(child);
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> children(Map<String, Object> parent, String association) {
+        return (List<Map<String, Object>>) parent.get(association);
+    }
+
+    private static String label(String column) {
+        return column.substring(column.lastIndexOf('.') + 1).replace("`", "");
+    }
+
+    /**
+     * A one-to-many association of the parent table.
+     */
+    private static final class Association {
+        private final String name;
+        private final String table;
+        private final String foreignKey;
+        private final Strategy strategy;
+        private final String[] columns;
+
+        Association(String name, String table, String foreignKey, Strategy strategy, String[] columns) {
+            this.name = name;
+            this.table = table;
+            this.foreignKey = foreignKey;
+            this.strategy = strategy;
+            if (columns.length > 0 && !Arrays.asList(columns).contains(foreignKey)) {
+                this.columns = Arrays.copyOf(columns, columns.length + 1);
+                this.columns[columns.length] = foreignKey;
+            } else {
+                this.columns = columns;
+            }
+        }
+    }
+}
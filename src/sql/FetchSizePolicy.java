@@ -0,0 +1,334 @@
+package sql;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Collection;
+
+/**
+ * Sizes the JDBC fetches of a query so the rows of a round trip fit in a memory budget.
+ * <p>
+ * Small fetches waste round trips on narrow rows while large ones put wide rows on the heap all at once, so no
+ * fixed fetch size suits every query. This policy derives the fetch size from the average width of a row:
+ * <ul>
+ *     <li>before the first execution of a query shape, the width is estimated from the declared column types and
+ *     sizes of its {@link ResultSetMetaData};</li>
+ *     <li>as the cursor advances, the width is measured on the decoded rows and the fetch size adjusted after
+ *     every fetch; the large objects of streamed rows, which are not decoded, keep their declared estimate;</li>
+ *     <li>the measured width is kept with the shape of the result, so later executions start with a fitting
+ *     fetch size.</li>
+ * </ul>
+ * </p>
+ * <p>
+ * Note that some drivers ignore the fetch size unless explicitly configured for it, e.g. MySQL requires
+ * {@code useCursorFetch=true} on the connection URL.
+ * </p>
+ *
+ * <pre>{@code
+ * adapter.setFetchSizePolicy(new FetchSizePolicy(8 * 1024 * 1024).maxFetchSize(5000));
+ * }</pre>
+ */
+public final class FetchSizePolicy {
+
+    /**
+     * The default smallest fetch size.
+     */
+    public static final int DEFAULT_MIN_FETCH_SIZE = 10;
+
+    /**
+     * The default largest fetch size.
+     */
+    public static final int DEFAULT_MAX_FETCH_SIZE = 10_000;
+
+    /**
+     * The fetch size of the first round trip of a query shape executed for the first time.
+     */
+    static final int INITIAL_FETCH_SIZE = 100;
+
+    /**
+     * The weight of a new measure in the average row width kept with a result shape.
+     */
+    private static final double SMOOTHING = 0.5;
+
+    private static final int ROW_OVERHEAD = 64;
+    private static final int COLUMN_OVERHEAD = 32;
+    private static final int MAX_DECLARED_WIDTH = 4096;
+
+    private final long memoryBudget;
+    private int minFetchSize = DEFAULT_MIN_FETCH_SIZE;
+    private int maxFetchSize = DEFAULT_MAX_FETCH_SIZE;
+
+    /**
+     * Constructs a policy sizing fetches to the given memory budget.
+     *
+     * @param memoryBudget The heap the rows of a single fetch may take, in bytes.
+     */
+    public FetchSizePolicy(long memoryBudget) {
+        if (memoryBudget <= 0) {
+            throw new IllegalArgumentException("The memory budget must be greater than 0.");
+        }
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Sets the smallest fetch size, however wide the rows, {@value #DEFAULT_MIN_FETCH_SIZE} by default.
+     *
+     * @param minFetchSize The smallest number of rows per fetch.
+     * @return The current policy.
+     */
+    public FetchSizePolicy minFetchSize(int minFetchSize) {
+        if (minFetchSize <= 0 || minFetchSize > maxFetchSize) {
+            throw new IllegalArgumentException("The smallest fetch size must be between 1 and the largest fetch size.");
+        }
+        this.minFetchSize = minFetchSize;
+        return this;
+    }
+
+    /**
+     * Sets the largest fetch size, however narrow the rows, {@value #DEFAULT_MAX_FETCH_SIZE} by default.
+     *
+     * @param maxFetchSize The largest number of rows per fetch.
+     * @return The current policy.
+     */
+    public FetchSizePolicy maxFetchSize(int maxFetchSize) {
+        if (maxFetchSize < minFetchSize) {
+            throw new IllegalArgumentException("The largest fetch size must not be smaller than the smallest one.");
+        }
+        this.maxFetchSize = maxFetchSize;
+        return this;
+    }
+
+    /**
+     * Returns the memory budget of a fetch.
+     *
+     * @return the budget, in bytes
+     */
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Computes the fetch size fitting rows of the given width in the memory budget.
+     *
+     * @param rowBytes The average width of a row, in bytes.
+     * @return The number of rows per fetch, between the smallest and the largest fetch size.
+     */
+    public int fetchSizeFor(double rowBytes) {
+        double rows = memoryBudget / Math.max(1, rowBytes);
+        return (int) Math.max(minFetchSize, Math.min(maxFetchSize, rows));
+    }
+
+    /**
+     * Returns the fetch size to execute a query with, before its result is known.
+     *
+     * @param shape The shape of the last result of the query, or {@code null} if it has never been executed.
+     * @return The number of rows of the first fetch.
+     */
+    int initialFetchSize(ResultShape shape) {
+        if (shape == null || shape.getAverageRowBytes() <= 0) {
+            return Math.max(minFetchSize, Math.min(maxFetchSize, INITIAL_FETCH_SIZE));
+        }
+        return fetchSizeFor(shape.getAverageRowBytes());
+    }
+
+    /**
+     * Starts tuning the fetches of an open cursor.
+     *
+     * @param resultSet The cursor, positioned before its first row.
+     * @param shape     The shape of its result, keeping the measured row width across executions.
+     * @return The tuner to hand each decoded row to.
+     * @throws SQLException If the metadata of the result cannot be read.
+     */
+    Cursor open(ResultSet resultSet, ResultShape shape) throws SQLException {
+        if (shape.getAverageRowBytes() <= 0) {
+            shape.setAverageRowBytes(estimateRowBytes(resultSet.getMetaData()));
+        }
+        return new Cursor(resultSet, shape);
+    }
+
+    /**
+     * Estimates the width of a row from the declared types and sizes of its columns.
+     *
+     * @param metaData The metadata of the result.
+     * @return The estimated heap taken by a decoded row, in bytes.
+     * @throws SQLException If the metadata cannot be read.
+     */
+    static long estimateRowBytes(ResultSetMetaData metaData) throws SQLException {
+        int columnCount = metaData.getColumnCount();
+        long bytes = ROW_OVERHEAD;
+        for (int i = 1; i <= columnCount; i++) {
+            int precision = metaData.getPrecision(i);
+            int declared = precision <= 0 ? 64 : Math.min(precision, MAX_DECLARED_WIDTH);
+            bytes += COLUMN_OVERHEAD;
+            switch (metaData.getColumnType(i)) {
+                case Types.BIT:
+                case Types.BOOLEAN:
+                case Types.TINYINT:
+                case Types.SMALLINT:
+                case Types.INTEGER:
+                case Types.REAL:
+                    bytes += 16;
+                    break;
+                case Types.BIGINT:
+                case Types.FLOAT:
+                case Types.DOUBLE:
+                    bytes += 24;
+                    break;
+                case Types.DATE:
+                case Types.TIME:
+                case Types.TIMESTAMP:
+                    bytes += 32;
+                    break;
+                case Types.DECIMAL:
+                case Types.NUMERIC:
+                    bytes += 48;
+                    break;
+                case Types.CHAR:
+                case Types.VARCHAR:
+                case Types.NCHAR:
+                case Types.NVARCHAR:
+                    bytes += 40 + 2L * declared;
+                    break;
+                case Types.BINARY:
+                case Types.VARBINARY:
+                    bytes += 16 + declared;
+                    break;
+                default:
+                    // Large objects and unknown types, whose declared size says little about their content
+                    bytes += MAX_DECLARED_WIDTH;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Estimates the heap taken by a decoded row.
+     *
+     * @param values The column values of the row.
+     * @return The estimated width of the row, in bytes.
+     */
+    static long estimateRowBytes(Collection<?> values) {
+        long bytes = ROW_OVERHEAD;
+        for (Object value : values) {
+            bytes += COLUMN_OVERHEAD;
+            if (value == null) {
+                continue;
+            }
+            if (value instanceof String) {
+                bytes += 40 + 2L * ((String) value).length();
+            } else if (value instanceof byte[]) {
+                bytes += 16 + ((byte[]) value).length;
+            } else if (value instanceof BigDecimal) {
+                bytes += 48;
+            } else if (value instanceof Number || value instanceof Boolean) {
+                bytes += 16;
+            } else {
+                bytes += 32;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Estimates the heap taken by the large objects of a row, from their declared types.
+     * <p>
+     * Streamed rows leave their large objects out of the decoded values, but other reads of the same shape decode
+     * them, and drivers often buffer them with the fetched rows, so they keep counting towards the width of a row.
+     * </p>
+     *
+     * @param shape The shape of the result.
+     * @return The estimated width of the large object columns of a row, in bytes.
+     */
+    static long estimateLobBytes(ResultShape shape) {
+        long bytes = 0;
+        for (int i = 0; i < shape.getTypes().length; i++) {
+            if (shape.isLob(i)) {
+                bytes += COLUMN_OVERHEAD + MAX_DECLARED_WIDTH;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Tunes the fetch size of an open cursor from the width of the rows read so far.
+     * <p>
+     * The width is measured over each fetch, then the fetch size of the next round trip is set to fit the memory
+     * budget.
+     * </p>
+     */
+    final class Cursor {
+        private final ResultSet resultSet;
+        private final ResultShape shape;
+        private final long lobBytes;
+        private int fetchSize;
+        private int remaining;
+        private long sampledRows;
+        private long sampledBytes;
+
+        private Cursor(ResultSet resultSet, ResultShape shape) throws SQLException {
+            this.resultSet = resultSet;
+            this.shape = shape;
+            this.lobBytes = estimateLobBytes(shape);
+            // The first fetch was already made with the fetch size the statement was executed with
+            int initialFetchSize = resultSet.getFetchSize();
+            this.remaining = Math.max(1, initialFetchSize);
+            this.fetchSize = fetchSizeFor(shape.getAverageRowBytes());
+            if (fetchSize != initialFetchSize) {
+                resultSet.setFetchSize(fetchSize);
+            }
+        }
+
+        /**
+         * Measures a decoded row, adjusting the fetch size once the rows of the current fetch are all read.
+         *
+         * @param row The column values of the decoded row.
+         * @throws SQLException If the fetch size cannot be set.
+         */
+        void onRow(Collection<?> row) throws SQLException {
+            onRow(estimateRowBytes(row));
+        }
+
+        /**
+         * Measures a streamed row, whose large objects were left out of the decoded values and are counted with their
+         * declared estimate instead.
+         *
+         * @param values The values of the regular columns of the row.
+         * @throws SQLException If the fetch size cannot be set.
+         */
+        void onStreamedRow(Collection<?> values) throws SQLException {
+            onRow(estimateRowBytes(values) + lobBytes);
+        }
+
+        private void onRow(long rowBytes) throws SQLException {
+            sampledBytes += rowBytes;
+            sampledRows++;
+            if (--remaining > 0) {
+                return;
+            }
+            double measured = (double) sampledBytes / sampledRows;
+            double average = shape.getAverageRowBytes() * (1 - SMOOTHING) + measured * SMOOTHING;
+            shape.setAverageRowBytes(average);
+
+            int next = fetchSizeFor(average);
+            if (next != fetchSize) {
+                fetchSize = next;
+                resultSet.setFetchSize(next);
+            }
+            remaining = fetchSize;
+            sampledRows = 0;
+            sampledBytes = 0;
+        }
+
+        /**
+         * Keeps the width measured on the rows of an incomplete fetch, once the cursor is exhausted.
+         */
+        void close() {
+            if (sampledRows > 0) {
+                double measured = (double) sampledBytes / sampledRows;
+                shape.setAverageRowBytes(shape.getAverageRowBytes() * (1 - SMOOTHING) + measured * SMOOTHING);
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package sql;
+
+import java.util.regex.Pattern;
+
+/**
+ * Computes the fingerprint of a native SQL query: its text with every literal replaced by a placeholder.
+ * <p>
+ * Queries differing only by their inlined values share the same fingerprint, which makes it a suitable key for
+ * anything depending on the shape of a query rather than on its values, such as caches and statistics. Whitespace
+ * runs are collapsed, and lists of placeholders (e.g. the values of an {@code IN} condition) are folded into
+ * {@code (?+)} so lists of different lengths share the same fingerprint as well.
+ * </p>
+ * <p>
+ * Quoted identifiers are kept, as they name columns rather than values: backquoted and double-quoted ones, and
+ * single-quoted aliases following {@code AS}. Queries labelling their columns differently thus never share a
+ * fingerprint, though MySQL double-quoted strings are not replaced either.
+ * </p>
+ */
+public final class Fingerprint {
+    private static final Pattern PLACEHOLDER_LIST = Pattern.compile("\\(\\?(?:\\s*,\\s*\\?)+\\)");
+
+    private Fingerprint() {
+    }
+
+    /**
+     * Computes the fingerprint of the given native query.
+     *
+     * @param sql The native SQL query.
+     * @return The query text with its literals replaced by placeholders.
+     */
+    public static String of(String sql) {
+        StringBuilder fingerprint = new StringBuilder(sql.length());
+        int length = sql.length();
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (c == '\'' && !followsAs(fingerprint)) {
+                i = skipQuoted(sql, i, c);
+                fingerprint.append('?');
+            } else if (c == '\'' || c == '"') {
+                int end = skipQuoted(sql, i, c);
+                fingerprint.append(sql, i, end);
+                i = end;
+            } else if (c == '`') {
+                int end = sql.indexOf('`', i + 1);
+                end = end < 0 ? length : end + 1;
+                fingerprint.append(sql, i, end);
+                i = end;
+            } else if (Character.isDigit(c) && (i == 0 || !isIdentifierPart(sql.charAt(i - 1)))) {
+                while (i < length && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+                    i++;
+                }
+                fingerprint.append('?');
+            } else if (Character.isWhitespace(c)) {
+                while (i < length && Character.isWhitespace(sql.charAt(i))) {
+                    i++;
+                }
+                fingerprint.append(' ');
+            } else {
+                fingerprint.append(c);
+                i++;
+            }
+        }
+        return PLACEHOLDER_LIST.matcher(fingerprint).replaceAll("(?+)").trim();
+    }
+
+    /**
+     * Skips a quoted literal, honoring doubled quotes and backslash escapes.
+     *
+     * @param sql   The native SQL query.
+     * @param start The index of the opening quote.
+     * @param quote The quote character.
+     * @return The index following the closing quote.
+     */
+    private static int skipQuoted(String sql, int start, char quote) {
+        int i = start + 1;
+        while (i < sql.length()) {
+            char c = sql.charAt(i);
+            if (c == '\\') {
+                i += 2;
+            } else if (c == quote) {
+                if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                } else {
+                    return i + 1;
+                }
+            } else {
+                i++;
+            }
+        }
+        return sql.length();
+    }
+
+    /**
+     * Checks if the fingerprint so far ends with the {@code AS} keyword, so the next quoted token is an alias.
+     *
+     * @param fingerprint The fingerprint so far.
+     * @return true if the last token is {@code AS} otherwise false .
+     */
+    private static boolean followsAs(StringBuilder fingerprint) {
+        int end = fingerprint.length();
+        while (end > 0 && fingerprint.charAt(end - 1) == ' ') {
+            end--;
+        }
+        return end >= 2 && Character.toUpperCase(fingerprint.charAt(end - 2)) == 'A'
+                && Character.toUpperCase(fingerprint.charAt(end - 1)) == 'S'
+                && (end == 2 || !isIdentifierPart(fingerprint.charAt(end - 3)));
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+}
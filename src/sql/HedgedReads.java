@@ -0,0 +1,358 @@
+package sql;
+
+import sql.queries.SQLSelectQuery;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Executes SELECT queries against a set of replicas, hedging the ones that are slow to answer.
+ * <p>
+ * A query is first sent to an idle replica. If it has not answered once the hedge delay elapses, the same query is
+ * sent to a second idle replica, and the first answer wins: the statement of the other replica is cancelled through
+ * {@link SQLAdapter#cancel()}. The hedge delay follows a percentile of the recent latencies, the 95th by default, so
+ * only the slowest reads are hedged. A budget caps the hedges to a fraction of the reads, 10% by default, so a
+ * replica slowing down for everyone does not double the load on the others.
+ * </p>
+ * <p>
+ * Each adapter is leased to a single read at a time, so a statement is never cancelled on an adapter used by
+ * another read; give as many adapters per replica as concurrent reads are expected. Only SELECT queries are accepted,
+ * since a hedged query may run twice.
+ * </p>
+ *
+ * <pre>{@code
+ * try (HedgedReads reads = new HedgedReads(replicas).hedgePercentile(99).budget(0.05)) {
+ *     List<Map<String, Object>> rows = reads.fetch(query);
+ * }
+ * }</pre>
+ */
+public class HedgedReads implements AutoCloseable {
+
+    /**
+     * The number of recent latencies the hedge delay is computed from.
+     */
+    static final int LATENCY_WINDOW = 1024;
+
+    /**
+     * The number of latencies to observe before the hedge delay follows the percentile rather than the initial
+     * delay.
+     */
+    static final int MIN_SAMPLES = 20;
+
+    /**
+     * The most hedges the budget may accumulate while the replicas are healthy.
+     */
+    static final double MAX_BUDGET_TOKENS = 10;
+
+    private final BlockingQueue<SQLAdapter> idle;
+    private final ExecutorService executor;
+    private final long[] latencies = new long[LATENCY_WINDOW];
+    private int latencyCount;
+    private int nextLatency;
+    private long delayNanos;
+    private boolean delayStale = true;
+    private double hedgePercentile = 95;
+    private long initialDelayNanos = TimeUnit.MILLISECONDS.toNanos(50);
+    private double budget = 0.1;
+    private double budgetTokens = 1;
+    private long reads;
+    private long hedges;
+    private long hedgeWins;
+
+    /**
+     * Constructs hedged reads over the given replicas.
+     *
+     * @param replicas The adapters connected to the replicas, at least two.
+     */
+    public HedgedReads(List<SQLAdapter> replicas) {
+        if (replicas.size() < 2) {
+            throw new IllegalArgumentException("Hedged reads need at least two replicas.");
+        }
+        this.idle = new LinkedBlockingQueue<>(replicas);
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "sql-hedged-reads");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Sets the percentile of the recent latencies after which a read is hedged, 95 by default.
+     *
+     * @param hedgePercentile The percentile, between 0 and 100.
+     * @return The current hedged reads.
+     */
+    public synchronized HedgedReads hedgePercentile(double hedgePercentile) {
+        if (hedgePercentile <= 0 || hedgePercentile > 100) {
+            throw new IllegalArgumentException("The hedge percentile must be between 0 and 100.");
+        }
+        this.hedgePercentile = hedgePercentile;
+        this.delayStale = true;
+        return this;
+    }
+
+    /**
+     * Sets the hedge delay used until enough latencies have been observed, 50ms by default.
+     *
+     * @param initialDelay The initial hedge delay.
+     * @return The current hedged reads.
+     */
+    public synchronized HedgedReads initialDelay(Duration initialDelay) {
+        this.initialDelayNanos = initialDelay.toNanos();
+        this.delayStale = true;
+        return this;
+    }
+
+    /**
+     * Sets the fraction of the reads that may be hedged, 0.1 by default.
+     *
+     * @param budget The hedge budget, between 0 (never hedge) and 1 (hedge every slow read).
+     * @return The current hedged reads.
+     */
+    public synchronized HedgedReads budget(double budget) {
+        if (budget < 0 || budget > 1) {
+            throw new IllegalArgumentException("The hedge budget must be between 0 and 1.");
+        }
+        this.budget = budget;
+        return this;
+    }
+
+    /**
+     * Executes a SELECT query on a replica, hedging it on a second one if it is slow to answer.
+     *
+     * @param query The SELECT query to execute, built first if it is not yet.
+     * @return The rows returned by the first replica to answer.
+     * @throws SQLException If the query failed on every replica it was sent to; the first failure is thrown.
+     */
+    public List<Map<String, Object>> fetch(SQLSelectQuery query) throws SQLException {
+        if (!query.isBuilt()) {
+            query.build();
+        }
+        long delay;
+        synchronized (this) {
+            reads++;
+            budgetTokens = Math.min(MAX_BUDGET_TOKENS, budgetTokens + budget);
+            delay = hedgeDelayNanos();
+        }
+
+        // The attempts run on the executor threads, which do not see the caller's deadline otherwise
+        Optional<Deadline> deadline = Deadline.current();
+        CompletionService<List<Map<String, Object>>> completion = new ExecutorCompletionService<>(executor);
+        Map<Future<List<Map<String, Object>>>, Attempt> attempts = new HashMap<>();
+        try {
+            Attempt primary = new Attempt(idle.take());
+            attempts.put(completion.submit(underDeadline(deadline, () -> primary.run(query))), primary);
+
+            Future<List<Map<String, Object>>> done = completion.poll(delay, TimeUnit.NANOSECONDS);
+            if (done == null && tryHedge()) {
+                SQLAdapter adapter = idle.poll();
+                if (adapter == null) {
+                    // Every replica is busy: hedging would only queue behind other reads
+                    refundHedge();
+                } else {
+                    Attempt hedge = new Attempt(adapter);
+                    attempts.put(completion.submit(underDeadline(deadline, () -> hedge.run(query))), hedge);
+                }
+            }
+
+            SQLException failure = null;
+            for (int pending = attempts.size(); pending > 0; pending--) {
+                if (done == null) {
+                    done = completion.take();
+                }
+                Attempt attempt = attempts.get(done);
+                try {
+                    List<Map<String, Object>> rows = done.get();
+                    synchronized (this) {
+                        record(attempt.elapsedNanos());
+                        if (attempt != primary) {
+                            hedgeWins++;
+                        }
+                    }
+                    return rows;
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause() instanceof SQLException
+                                ? (SQLException) e.getCause()
+                                : new SQLException("The hedged read failed.", e.getCause());
+                    }
+                }
+                done = null;
+            }
+            throw failure;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("The hedged read was interrupted.", e);
+        } finally {
+            // Cancels the losers, recording how long they had been running as a lower bound of their latency
+            for (Attempt attempt : attempts.values()) {
+                if (attempt.cancel()) {
+                    synchronized (this) {
+                        record(attempt.elapsedNanos());
+                    }
+                }
+            }
+        }
+    }
+
+    private static <T> Callable<T> underDeadline(Optional<Deadline> deadline, Callable<T> task) {
+        return deadline.map(d -> d.propagate(task)).orElse(task);
+    }
+
+    /**
+     * Returns a snapshot of the hedged reads metrics.
+     *
+     * @return the current metrics
+     */
+    public synchronized Metrics getMetrics() {
+        return new Metrics(reads, hedges, hedgeWins, Duration.ofNanos(hedgeDelayNanos()));
+    }
+
+    /**
+     * Stops the threads executing the reads. The replica adapters are left open.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private synchronized boolean tryHedge() {
+        if (budgetTokens < 1) {
+            return false;
+        }
+        budgetTokens--;
+        hedges++;
+        return true;
+    }
+
+    private synchronized void refundHedge() {
+        budgetTokens++;
+        hedges--;
+    }
+
+    private void record(long latencyNanos) {
+        latencies[nextLatency] = latencyNanos;
+        nextLatency = (nextLatency + 1) % latencies.length;
+        latencyCount = Math.min(latencies.length, latencyCount + 1);
+        delayStale = true;
+    }
+
+    /**
+     * Returns the hedge delay, recomputing the latency percentile at most once per {@link #MIN_SAMPLES} reads.
+     *
+     * @return the delay before hedging a read, in nanoseconds
+     */
+    private long hedgeDelayNanos() {
+        if (latencyCount < MIN_SAMPLES) {
+            return initialDelayNanos;
+        }
+        if (delayStale && (reads % MIN_SAMPLES == 0 || delayNanos == 0)) {
+            long[] sorted = Arrays.copyOf(latencies, latencyCount);
+            Arrays.sort(sorted);
+            int rank = (int) Math.ceil(hedgePercentile / 100 * sorted.length);
+            delayNanos = sorted[Math.min(sorted.length - 1, Math.max(0, rank - 1))];
+            delayStale = false;
+        }
+        return delayNanos;
+    }
+
+    /**
+     * The execution of a read on a leased replica.
+     */
+    private final class Attempt {
+        private final SQLAdapter adapter;
+        private final long startNanos = System.nanoTime();
+        private long endNanos;
+        private boolean done;
+
+        Attempt(SQLAdapter adapter) {
+            this.adapter = adapter;
+        }
+
+        List<Map<String, Object>> run(SQLSelectQuery query) throws SQLException {
+            try {
+                return adapter.fetch(query);
+            } finally {
+                synchronized (this) {
+                    done = true;
+                    endNanos = System.nanoTime();
+                }
+                idle.add(adapter);
+            }
+        }
+
+        /**
+         * Cancels the read if it is still running. The adapter cannot be leased by another read meanwhile, since it
+         * is only returned once the read completes.
+         *
+         * @return true if the read was still running otherwise false .
+         */
+        synchronized boolean cancel() {
+            if (done) {
+                return false;
+            }
+            endNanos = System.nanoTime();
+            adapter.cancel();
+            return true;
+        }
+
+        synchronized long elapsedNanos() {
+            return (endNanos != 0 ? endNanos : System.nanoTime()) - startNanos;
+        }
+    }
+
+    /**
+     * A snapshot of the hedged reads metrics.
+     */
+    public static final class Metrics {
+        private final long reads;
+        private final long hedges;
+        private final long hedgeWins;
+        private final Duration hedgeDelay;
+
+        Metrics(long reads, long hedges, long hedgeWins, Duration hedgeDelay) {
+            this.reads = reads;
+            this.hedges = hedges;
+            this.hedgeWins = hedgeWins;
+            this.hedgeDelay = hedgeDelay;
+        }
+
+        /**
+         * Returns the number of reads executed so far.
+         *
+         * @return the read count
+         */
+        public long getReads() {
+            return reads;
+        }
+
+        /**
+         * Returns the number of reads sent to a second replica.
+         *
+         * @return the hedge count
+         */
+        public long getHedges() {
+            return hedges;
+        }
+
+        /**
+         * Returns the number of hedged reads answered first by the second replica.
+         *
+         * @return the count of hedges that won
+         */
+        public long getHedgeWins() {
+            return hedgeWins;
+        }
+
+        /**
+         * Returns the current delay before a read is hedged.
+         *
+         * @return the hedge delay
+         */
+        public Duration getHedgeDelay() {
+            return hedgeDelay;
+        }
+    }
+}
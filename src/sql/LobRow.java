@@ -0,0 +1,161 @@
+package sql;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * A row streamed by {@link SQLAdapter#stream(core.queries.Query, Handler)}, whose large object columns are read lazily.
+ * <p>
+ * Regular columns are decoded eagerly, as {@link SQLAdapter#fetch(core.queries.Query)} would, and exposed by
+ * {@link #getValues()}. BLOB, CLOB and long binary or character columns are left out of the values: they are read on
+ * demand through {@link #getBinaryStream(String)} or {@link #getCharacterStream(String)}, or copied straight to a
+ * channel or a file with a fixed-size buffer, so their content never has to fit on the heap.
+ * </p>
+ * <p>
+ * A row is only valid while the handler it was given to runs: the underlying cursor moves on to the next row once
+ * the handler returns, closing the streams of the previous one.
+ * </p>
+ */
+public final class LobRow {
+
+    /**
+     * The size of the buffer large objects are copied with.
+     */
+    public static final int TRANSFER_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Handles the rows of a streamed query, one at a time.
+     */
+    @FunctionalInterface
+    public interface Handler {
+        void handle(LobRow row) throws SQLException, IOException;
+    }
+
+    private final ResultSet resultSet;
+    private final ResultShape shape;
+    private final Map<String, Object> values;
+
+    LobRow(ResultSet resultSet, ResultShape shape) throws SQLException {
+        this.resultSet = resultSet;
+        this.shape = shape;
+        this.values = shape.readValues(resultSet);
+    }
+
+    /**
+     * Returns the values of the regular columns of the row.
+     *
+     * @return a map of column labels to column values, without the large object columns
+     */
+    public Map<String, Object> getValues() {
+        return values;
+    }
+
+    /**
+     * Checks if a column holds a large object, read through streams rather than {@link #getValues()}.
+     *
+     * @param label The column label.
+     * @return true if the column is a large object otherwise false .
+     */
+    public boolean isLob(String label) {
+        return shape.isLob(column(label) - 1);
+    }
+
+    /**
+     * Returns the content of a column as a stream of bytes, read from the database as the stream is consumed.
+     *
+     * @param label The column label.
+     * @return The stream of the column content, or {@code null} if the column is NULL.
+     * @throws SQLException If the column cannot be read.
+     */
+    public InputStream getBinaryStream(String label) throws SQLException {
+        return resultSet.getBinaryStream(column(label));
+    }
+
+    /**
+     * Returns the content of a column as a stream of characters, read from the database as the stream is consumed.
+     *
+     * @param label The column label.
+     * @return The stream of the column content, or {@code null} if the column is NULL.
+     * @throws SQLException If the column cannot be read.
+     */
+    public Reader getCharacterStream(String label) throws SQLException {
+        return resultSet.getCharacterStream(column(label));
+    }
+
+    /**
+     * Copies the binary content of a column to a channel.
+     *
+     * @param label  The column label.
+     * @param target The channel to write the content to, left open.
+     * @return The number of bytes copied, 0 if the column is NULL.
+     * @throws SQLException If the column cannot be read.
+     * @throws IOException  If the content cannot be written.
+     */
+    public long transferTo(String label, WritableByteChannel target) throws SQLException, IOException {
+        try (InputStream in = getBinaryStream(label)) {
+            if (in == null) {
+                return 0;
+            }
+            ReadableByteChannel source = Channels.newChannel(in);
+            ByteBuffer buffer = ByteBuffer.allocate(TRANSFER_BUFFER_SIZE);
+            long transferred = 0;
+            while (source.read(buffer) != -1) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    transferred += target.write(buffer);
+                }
+                buffer.clear();
+            }
+            return transferred;
+        }
+    }
+
+    /**
+     * Copies the binary content of a column to a file, replacing it if it exists.
+     *
+     * @param label The column label.
+     * @param file  The file to write the content to.
+     * @return The number of bytes copied, 0 if the column is NULL.
+     * @throws SQLException If the column cannot be read.
+     * @throws IOException  If the file cannot be written.
+     */
+    public long transferTo(String label, Path file) throws SQLException, IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            return transferTo(label, channel);
+        }
+    }
+
+    /**
+     * Copies the binary content of a column to a stream.
+     *
+     * @param label  The column label.
+     * @param target The stream to write the content to, left open.
+     * @return The number of bytes copied, 0 if the column is NULL.
+     * @throws SQLException If the column cannot be read.
+     * @throws IOException  If the content cannot be written.
+     */
+    public long transferTo(String label, OutputStream target) throws SQLException, IOException {
+        return transferTo(label, Channels.newChannel(target));
+    }
+
+    private int column(String label) {
+        int column = shape.indexOf(label);
+        if (column < 0) {
+            throw new IllegalArgumentException("The row has no column " + label + ".");
+        }
+        return column + 1;
+    }
+}
@@ -0,0 +1,364 @@
+package sql;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Types;
+import java.util.*;
+
+/**
+ * The rows of a query result, held in memory up to a budget and spilled to a temporary file beyond it.
+ * <p>
+ * Rows are kept on the heap while their estimated size fits the memory budget. Once it is exceeded, every row is
+ * written to a temporary file in the compact binary encoding of a {@link WorkloadLog}, and only the offset of each
+ * row remains on the heap. The file is memory-mapped once the result is complete, so spilled rows stay randomly
+ * accessible and iterable, at the speed of the disk and the page cache rather than the heap.
+ * </p>
+ * <p>
+ * Rows are decoded into a new map on each access. Spilled values are read back with the type of their column:
+ * integral columns as {@link Integer} or {@link Long} as {@link java.sql.ResultSet#getObject(int)} would return them,
+ * and values of types the encoding does not support, such as large object handles, as their string form. A result
+ * can be read from several threads; closing it deletes the temporary file.
+ * </p>
+ *
+ * <pre>{@code
+ * try (MaterializedResult result = adapter.materialize(query, 64 * 1024 * 1024)) {
+ *     for (Map<String, Object> row : result) {
+ *         // ...
+ *     }
+ * }
+ * }</pre>
+ */
+public final class MaterializedResult implements Iterable<Map<String, Object>>, AutoCloseable {
+
+    /**
+     * The largest span of the file mapped by a single buffer.
+     */
+    static final long SEGMENT_SIZE = 1L << 30;
+
+    private final String[] labels;
+    private final int[] types;
+    private final long memoryBudget;
+    private final Path directory;
+    private List<Object[]> rows = new ArrayList<>();
+    private long memoryBytes;
+    private long size;
+
+    private Path file;
+    private CountingOutputStream counter;
+    private DataOutputStream out;
+    private long[] offsets;
+    private long[] segmentStarts;
+    private int[] segmentFirstRows;
+    private MappedByteBuffer[] segments;
+    private volatile boolean closed;
+
+    /**
+     * Constructs an empty result, to be filled through {@link #add(Object[])} then completed by {@link #finish()}.
+     *
+     * @param labels       The column labels of the result.
+     * @param types        The JDBC types of its columns.
+     * @param memoryBudget The estimated heap the rows may take before they are spilled, in bytes.
+     * @param directory    The directory of the temporary file, or {@code null} for the default temporary directory.
+     */
+    MaterializedResult(String[] labels, int[] types, long memoryBudget, Path directory) {
+        this.labels = labels;
+        this.types = types;
+        this.memoryBudget = memoryBudget;
+        this.directory = directory;
+    }
+
+    /**
+     * Appends a row, spilling the result to disk if it no longer fits the memory budget.
+     *
+     * @param row The column values of the row, in column order.
+     * @throws IOException If the row cannot be spilled.
+     */
+    void add(Object[] row) throws IOException {
+        if (out == null) {
+            rows.add(row);
+            memoryBytes += FetchSizePolicy.estimateRowBytes(Arrays.asList(row));
+            if (memoryBytes > memoryBudget) {
+                spill();
+            }
+        } else {
+            write(row);
+        }
+        size++;
+    }
+
+    /**
+     * Completes the result once every row has been added, mapping the file of a spilled result.
+     *
+     * @throws IOException If the file cannot be mapped.
+     */
+    void finish() throws IOException {
+        if (out == null) {
+            return;
+        }
+        out.close();
+        out = null;
+        long length = counter.count;
+
+        // Segments start on row boundaries, so a row never straddles two buffers
+        List<Long> starts = new ArrayList<>();
+        List<Integer> firstRows = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            if (starts.isEmpty() || offsets[i] - starts.get(starts.size() - 1) >= SEGMENT_SIZE) {
+                starts.add(offsets[i]);
+                firstRows.add(i);
+            }
+        }
+        segmentStarts = new long[starts.size()];
+        segmentFirstRows = new int[starts.size()];
+        segments = new MappedByteBuffer[starts.size()];
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (int i = 0; i < segments.length; i++) {
+                segmentStarts[i] = starts.get(i);
+                segmentFirstRows[i] = firstRows.get(i);
+                long end = i + 1 < segments.length ? starts.get(i + 1) : length;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, segmentStarts[i], end - segmentStarts[i]);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of rows of the result.
+     *
+     * @return the row count
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Returns the column labels of the result.
+     *
+     * @return the labels, in column order
+     */
+    public List<String> getLabels() {
+        return Collections.unmodifiableList(Arrays.asList(labels));
+    }
+
+    /**
+     * Checks if the rows of the result exceeded the memory budget and were spilled to disk.
+     *
+     * @return true if the rows are read from a temporary file otherwise false .
+     */
+    public boolean isSpilled() {
+        return file != null;
+    }
+
+    /**
+     * Returns the size of the temporary file holding the spilled rows.
+     *
+     * @return the file size, in bytes, or 0 if the result was not spilled
+     */
+    public long getSpilledBytes() {
+        return counter == null ? 0 : counter.count;
+    }
+
+    /**
+     * Returns a row of the result.
+     *
+     * @param index The index of the row, from 0.
+     * @return A map of column labels to column values.
+     * @throws IndexOutOfBoundsException If the result has no such row.
+     * @throws IllegalStateException     If the result is closed.
+     */
+    public Map<String, Object> get(long index) {
+        if (closed) {
+            throw new IllegalStateException("The result is closed.");
+        }
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Row " + index + " out of " + size + ".");
+        }
+        if (segments == null) {
+            return toMap(rows.get((int) index));
+        }
+
+        int segment = Arrays.binarySearch(segmentFirstRows, (int) index);
+        if (segment < 0) {
+            segment = -segment - 2;
+        }
+        ByteBuffer buffer = segments[segment].duplicate();
+        buffer.position((int) (offsets[(int) index] - segmentStarts[segment]));
+        try {
+            return toMap(read(new DataInputStream(new BufferInputStream(buffer))));
+        } catch (IOException e) {
+            throw new UncheckedIOException("The spilled row " + index + " cannot be read.", e);
+        }
+    }
+
+    @Override
+    public Iterator<Map<String, Object>> iterator() {
+        return new Iterator<Map<String, Object>>() {
+            private long next;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public Map<String, Object> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return get(next++);
+            }
+        };
+    }
+
+    /**
+     * Releases the rows of the result and deletes its temporary file, if any.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        rows = null;
+        segments = null;
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException ignored) {
+                // The file is deleted below
+            }
+        }
+        if (file != null) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ignored) {
+                // Mapped files cannot be deleted on some platforms; the file is then left to deleteOnExit
+                file.toFile().deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * Moves the rows held in memory to a new temporary file, where the next rows are written too.
+     *
+     * @throws IOException If the file cannot be written.
+     */
+    private void spill() throws IOException {
+        file = directory == null ? Files.createTempFile("sql-result-", ".bin") : Files.createTempFile(directory, "sql-result-", ".bin");
+        counter = new CountingOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024));
+        out = new DataOutputStream(counter);
+        offsets = new long[Math.max(16, rows.size() * 2)];
+
+        List<Object[]> held = rows;
+        rows = null;
+        int index = 0;
+        for (Object[] row : held) {
+            // The size is only incremented once the current row is added
+            offsets[index++] = counter.count;
+            writeValues(row);
+        }
+    }
+
+    private void write(Object[] row) throws IOException {
+        if (size == offsets.length) {
+            if (offsets.length == Integer.MAX_VALUE - 8) {
+                throw new IOException("A materialized result cannot hold more than " + offsets.length + " rows.");
+            }
+            offsets = Arrays.copyOf(offsets, (int) Math.min(Integer.MAX_VALUE - 8L, offsets.length * 2L));
+        }
+        offsets[(int) size] = counter.count;
+        writeValues(row);
+    }
+
+    private void writeValues(Object[] row) throws IOException {
+        for (Object value : row) {
+            WorkloadLog.writeValue(out, value);
+        }
+    }
+
+    private Object[] read(DataInput in) throws IOException {
+        Object[] row = new Object[labels.length];
+        for (int i = 0; i < row.length; i++) {
+            Object value = WorkloadLog.readValue(in);
+            if (value instanceof Long) {
+                switch (types[i]) {
+                    case Types.TINYINT:
+                    case Types.SMALLINT:
+                    case Types.INTEGER:
+                        value = ((Long) value).intValue();
+                        break;
+                    default:
+                        break;
+                }
+            } else if (value instanceof Double && types[i] == Types.REAL) {
+                value = ((Double) value).floatValue();
+            }
+            row[i] = value;
+        }
+        return row;
+    }
+
+    private Map<String, Object> toMap(Object[] values) {
+        Map<String, Object> row = new HashMap<>((int) (labels.length / 0.75f) + 1);
+        for (int i = 0; i < labels.length; i++) {
+            row.put(labels[i], values[i]);
+        }
+        return row;
+    }
+
+    /**
+     * Counts the bytes written to a stream, beyond the 2 GiB {@link DataOutputStream#size()} reports.
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    /**
+     * Reads a mapped buffer as a stream, from its current position.
+     */
+    private static final class BufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        BufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(len, buffer.remaining());
+            buffer.get(b, off, count);
+            return count;
+        }
+    }
+}
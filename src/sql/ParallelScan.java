@@ -0,0 +1,315 @@
+package sql;
+
+import core.clauses.Aggregate;
+import core.clauses.Where;
+import sql.queries.SQLSelectQuery;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+ * Scans a large table in parallel by splitting it into ranges of a numeric key column.
+ * <p>
+ * The minimum and maximum of the key among the matched rows are read first, and the range between them is split
+ * into partitions of equal width, each one loaded by its own {@code SELECT ... WHERE key >= lower AND key < upper}
+ * query. Partitions run concurrently, one per adapter of the given pool, so the scan uses as many connections as
+ * adapters are given. Rows whose key is NULL are not scanned.
+ * </p>
+ * <p>
+ * Rows are handed to the sink one partition at a time, never concurrently, either as partitions complete or in the
+ * order of the partitions. A partition is fully loaded before its rows are handed over, so a failed partition can be
+ * retried without handing any row twice. At most {@link #PARTITIONS_PER_ADAPTER} partitions per adapter are loading
+ * or awaiting the sink at a time, a new one only starting once another is handed over: the memory held by the scan
+ * is bounded by the size of that many partitions, however many the table is split into and however slow the sink.
+ * </p>
+ *
+ * <pre>{@code
+ * long exported = new ParallelScan(adapters, "events", "id", "id", "type", "payload")
+ *         .where(Where.greaterThan("created_at", cutoff))
+ *         .partitions(64)
+ *         .ordered(true)
+ *         .run(writer::write);
+ * }</pre>
+ */
+public class ParallelScan {
+
+    /**
+     * The default number of times a failed partition is retried.
+     */
+    public static final int DEFAULT_MAX_RETRIES = 2;
+
+    /**
+     * The number of partitions per adapter that may be loading or awaiting the sink at a time.
+     */
+    public static final int PARTITIONS_PER_ADAPTER = 2;
+
+    private final List<SQLAdapter> adapters;
+    private final String table;
+    private final String keyColumn;
+    private final String[] columns;
+    private final List<Where> wheres = new ArrayList<>();
+    private int partitions;
+    private int maxRetries = DEFAULT_MAX_RETRIES;
+    private boolean ordered;
+
+    /**
+     * Constructs a parallel scan of the given table.
+     *
+     * @param adapters  The adapters the partitions are loaded with, each one used by a single partition at a time.
+     * @param table     The table to scan.
+     * @param keyColumn The numeric column the table is partitioned on, ideally indexed.
+     * @param columns   The columns to select, or none to select every column.
+     */
+    public ParallelScan(List<SQLAdapter> adapters, String table, String keyColumn, String... columns) {
+        if (adapters.isEmpty()) {
+            throw new IllegalArgumentException("A parallel scan needs at least one adapter.");
+        }
+        this.adapters = new ArrayList<>(adapters);
+        this.table = table;
+        this.keyColumn = keyColumn;
+        this.columns = columns;
+        this.partitions = adapters.size() * 4;
+    }
+
+    /**
+     * Adds a condition on the rows to scan.
+     *
+     * @param where The WHERE condition.
+     * @return The current scan.
+     */
+    public ParallelScan where(Where where) {
+        this.wheres.add(where);
+        return this;
+    }
+
+    /**
+     * Sets the number of key ranges the table is split into, four per adapter by default.
+     *
+     * @param partitions The number of partitions.
+     * @return The current scan.
+     */
+    public ParallelScan partitions(int partitions) {
+        if (partitions <= 0) {
+            throw new IllegalArgumentException("The number of partitions must be greater than 0.");
+        }
+        this.partitions = partitions;
+        return this;
+    }
+
+    /**
+     * Sets the number of times a failed partition is retried before the scan fails.
+     *
+     * @param maxRetries The maximum number of retries per partition.
+     * @return The current scan.
+     */
+    public ParallelScan maxRetries(int maxRetries) {
+        this.maxRetries = Math.max(0, maxRetries);
+        return this;
+    }
+
+    /**
+     * Sets whether rows are handed to the sink in the order of the partitions, i.e. by ascending key range.
+     * <p>
+     * Ordered scans hold completed partitions until the ones before them are handed over, and start no new partition
+     * meanwhile once the loading and held ones reach the bound of the scan.
+     * </p>
+     *
+     * @param ordered true to hand partitions over in key order, false to hand them over as they complete.
+     * @return The current scan.
+     */
+    public ParallelScan ordered(boolean ordered) {
+        this.ordered = ordered;
+        return this;
+    }
+
+    /**
+     * Scans the table, handing every matched row to the sink.
+     *
+     * @param sink The consumer of the rows, never called concurrently.
+     * @return The number of scanned rows.
+     * @throws SQLException If a partition still fails after its retries; the remaining partitions are cancelled.
+     */
+    public long run(Consumer<Map<String, Object>> sink) throws SQLException {
+        List<Where> ranges = split();
+        if (ranges.isEmpty()) {
+            return 0;
+        }
+
+        BlockingQueue<SQLAdapter> pool = new LinkedBlockingQueue<>(adapters);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(adapters.size(), ranges.size()), runnable -> {
+            Thread thread = new Thread(runnable, "sql-parallel-scan-" + table);
+            thread.setDaemon(true);
+            return thread;
+        });
+        CompletionService<Partition> completion = new ExecutorCompletionService<>(executor);
+        try {
+            // Partitions start in key order, each one once another is handed over
+            int submitted = Math.min(ranges.size(), adapters.size() * PARTITIONS_PER_ADAPTER);
+            for (int i = 0; i < submitted; i++) {
+                submit(completion, pool, i, ranges.get(i));
+            }
+
+            long rows = 0;
+            int next = 0;
+            Map<Integer, Partition> pending = new HashMap<>();
+            for (int i = 0; i < ranges.size(); i++) {
+                Partition partition = completion.take().get();
+                if (!ordered) {
+                    rows += partition.handTo(sink);
+                    if (submitted < ranges.size()) {
+                        submit(completion, pool, submitted, ranges.get(submitted++));
+                    }
+                    continue;
+                }
+                pending.put(partition.index, partition);
+                while (pending.containsKey(next)) {
+                    rows += pending.remove(next++).handTo(sink);
+                    if (submitted < ranges.size()) {
+                        submit(completion, pool, submitted, ranges.get(submitted++));
+                    }
+                }
+            }
+            return rows;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("The parallel scan was interrupted.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new SQLException("A partition of the parallel scan failed.", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void submit(CompletionService<Partition> completion, BlockingQueue<SQLAdapter> pool, int index, Where range) {
+        completion.submit(() -> load(pool, index, range));
+    }
+
+    /**
+     * Loads a partition with an adapter of the pool, retrying it on failure.
+     *
+     * @param pool  The idle adapters.
+     * @param index The position of the partition in key order.
+     * @param range The key range condition of the partition.
+     * @return The loaded partition.
+     * @throws Exception If the partition still fails after its retries.
+     */
+    private Partition load(BlockingQueue<SQLAdapter> pool, int index, Where range) throws Exception {
+        SQLAdapter adapter = pool.take();
+        try {
+            for (int attempt = 0; ; attempt++) {
+                SQLSelectQuery query = adapter.getBuilder().select(columns).from(table).where(range);
+                wheres.forEach(query::where);
+                try {
+                    return new Partition(index, adapter.fetch(query.build()));
+                } catch (SQLException | RuntimeException e) {
+                    if (attempt >= maxRetries || Thread.currentThread().isInterrupted()) {
+                        throw e;
+                    }
+                }
+            }
+        } finally {
+            pool.put(adapter);
+        }
+    }
+
+    /**
+     * Splits the key range of the matched rows into partitions of equal width.
+     *
+     * @return The key range condition of each partition, in key order, empty if no row matches.
+     * @throws SQLException If the key bounds cannot be read.
+     */
+    private List<Where> split() throws SQLException {
+        SQLSelectQuery bounds = adapters.get(0).getBuilder()
+                .select()
+                .aggregate(Aggregate.min(keyColumn).as("lower_bound"), Aggregate.max(keyColumn).as("upper_bound"))
+                .from(table);
+        wheres.forEach(bounds::where);
+
+        Map<String, Object> row = adapters.get(0).execute(bounds.build());
+        Object lower = row.get("lower_bound");
+        Object upper = row.get("upper_bound");
+        if (lower == null || upper == null) {
+            return Collections.emptyList();
+        }
+        if (!(lower instanceof Number) || !(upper instanceof Number)) {
+            throw new IllegalStateException("The key column " + keyColumn + " of a parallel scan must be numeric.");
+        }
+
+        List<Object> boundaries = boundaries((Number) lower, (Number) upper);
+        List<Where> ranges = new ArrayList<>(boundaries.size() - 1);
+        for (int i = 0; i + 1 < boundaries.size(); i++) {
+            Where from = Where.greaterThanOrEqual(keyColumn, boundaries.get(i));
+            Where to = i + 2 == boundaries.size()
+                    ? Where.lessThanOrEqual(keyColumn, boundaries.get(i + 1))
+                    : Where.lessThan(keyColumn, boundaries.get(i + 1));
+            ranges.add(from.and(to));
+        }
+        return ranges;
+    }
+
+    /**
+     * Computes the boundaries of partitions of equal width between two keys.
+     *
+     * @param lower The smallest key.
+     * @param upper The largest key.
+     * @return The distinct boundaries, from the smallest to the largest key included.
+     */
+    private List<Object> boundaries(Number lower, Number upper) {
+        List<Object> boundaries = new ArrayList<>(partitions + 1);
+        Object lowerKey = SQLBatchLoader.normalize(lower);
+        Object upperKey = SQLBatchLoader.normalize(upper);
+        if (lowerKey instanceof Long && upperKey instanceof Long) {
+            long from = (Long) lowerKey;
+            long to = (Long) upperKey;
+            BigDecimal width = BigDecimal.valueOf(to).subtract(BigDecimal.valueOf(from));
+            for (int i = 0; i <= partitions; i++) {
+                long boundary = i == partitions ? to : BigDecimal.valueOf(from).add(width.multiply(BigDecimal.valueOf(i))
+                        .divide(BigDecimal.valueOf(partitions), 0, RoundingMode.FLOOR)).longValueExact();
+                if (boundaries.isEmpty() || !boundaries.get(boundaries.size() - 1).equals(boundary)) {
+                    boundaries.add(boundary);
+                }
+            }
+        } else {
+            BigDecimal from = new BigDecimal(lower.toString());
+            BigDecimal to = new BigDecimal(upper.toString());
+            BigDecimal width = to.subtract(from);
+            for (int i = 0; i <= partitions; i++) {
+                BigDecimal boundary = i == partitions ? to : from.add(width.multiply(BigDecimal.valueOf(i))
+                        .divide(BigDecimal.valueOf(partitions), Math.max(from.scale(), to.scale()) + 6, RoundingMode.FLOOR));
+                if (boundaries.isEmpty() || ((BigDecimal) boundaries.get(boundaries.size() - 1)).compareTo(boundary) != 0) {
+                    boundaries.add(boundary);
+                }
+            }
+        }
+        if (boundaries.size() == 1) {
+            // Every row holds the same key
+            boundaries.add(boundaries.get(0));
+        }
+        return boundaries;
+    }
+
+    /**
+     * The loaded rows of a key range.
+     */
+    private static final class Partition {
+        private final int index;
+        private final List<Map<String, Object>> rows;
+
+        Partition(int index, List<Map<String, Object>> rows) {
+            this.index = index;
+            this.rows = rows;
+        }
+
+        long handTo(Consumer<Map<String, Object>> sink) {
+            rows.forEach(sink);
+            return rows.size();
+        }
+    }
+}
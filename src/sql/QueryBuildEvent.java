@@ -0,0 +1,52 @@
+package sql;
+
+import jdk.jfr.*;
+
+/**
+ * A JDK Flight Recorder event timing the rendering of a query into its native SQL by the {@link SQLQueryBuilder}.
+ * <p>
+ * Like every event of the adapter, it is only committed when enabled in the recording and slower than its threshold,
+ * both configurable in the recording settings under its name. When no recording is running, emitting it costs no
+ * more than an empty method call, and its fingerprint is only computed for committed events.
+ * </p>
+ */
+@Name("orm.QueryBuild")
+@Label("Query Build")
+@Category({"ORM", "SQL"})
+@Description("Rendering of a query into its native SQL")
+@Threshold("100 us")
+@StackTrace(false)
+final class QueryBuildEvent extends Event {
+
+    @Label("Query Type")
+    String queryType;
+
+    @Label("Fingerprint")
+    String fingerprint;
+
+    @Label("SQL Length")
+    @DataAmount
+    long sqlLength;
+
+    @Label("Parameters")
+    int parameters;
+
+    /**
+     * Ends the event and commits it if it is recorded.
+     *
+     * @param queryType  The kind of the built query, e.g. SELECT.
+     * @param sql        The rendered native SQL.
+     * @param parameters The number of parameters bound to its placeholders.
+     */
+    void complete(String queryType, CharSequence sql, int parameters) {
+        end();
+        if (shouldCommit()) {
+            String nativeQuery = sql.toString();
+            this.queryType = queryType;
+            this.fingerprint = Fingerprint.of(nativeQuery);
+            this.sqlLength = nativeQuery.length();
+            this.parameters = parameters;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package sql;
+
+import core.queries.Query;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The execution of a query by an {@link SQLAdapter}, as reported to its {@link QueryListener}s.
+ */
+public final class QueryExecution {
+    private final Query query;
+    private final String sql;
+    private final List<Object> parameters;
+    private final String thread;
+    private final long startNanos;
+    private final long elapsedNanos;
+    private final Throwable failure;
+
+    QueryExecution(Query query, String sql, List<Object> parameters, String thread, long startNanos, long elapsedNanos, Throwable failure) {
+        this.query = query;
+        this.sql = sql;
+        this.parameters = parameters;
+        this.thread = thread;
+        this.startNanos = startNanos;
+        this.elapsedNanos = elapsedNanos;
+        this.failure = failure;
+    }
+
+    /**
+     * Returns the executed query.
+     *
+     * @return the query
+     */
+    public Query getQuery() {
+        return query;
+    }
+
+    /**
+     * Returns the native SQL sent to the database, which differs from the native query of {@link #getQuery()} for
+     * derived statements such as {@link SQLAdapter#count(sql.queries.SQLSelectQuery)}.
+     *
+     * @return the executed SQL
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * Returns the fingerprint of the executed SQL.
+     *
+     * @return the fingerprint
+     * @see Fingerprint
+     */
+    public String getFingerprint() {
+        return Fingerprint.of(sql);
+    }
+
+    /**
+     * Returns the values bound to the placeholders of the executed SQL.
+     *
+     * @return a copy of the query parameters
+     */
+    public List<Object> getParameters() {
+        return parameters;
+    }
+
+    /**
+     * Returns the name of the thread that executed the query.
+     *
+     * @return the thread name
+     */
+    public String getThread() {
+        return thread;
+    }
+
+    /**
+     * Returns the {@link System#nanoTime()} the execution started at.
+     *
+     * @return the start time, in nanoseconds
+     */
+    public long getStartNanos() {
+        return startNanos;
+    }
+
+    /**
+     * Returns the execution time of the query.
+     *
+     * @return the elapsed time
+     */
+    public Duration getElapsed() {
+        return Duration.ofNanos(elapsedNanos);
+    }
+
+    /**
+     * Returns the failure of the execution, if any.
+     *
+     * @return an Optional of the failure, empty if the query succeeded.
+     */
+    public Optional<Throwable> getFailure() {
+        return Optional.ofNullable(failure);
+    }
+}
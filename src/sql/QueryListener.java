@@ -0,0 +1,21 @@
+package sql;
+
+/**
+ * A listener notified by an {@link SQLAdapter} after each statement it executes.
+ * <p>
+ * Listeners are called synchronously on the thread that executed the statement, after it completed or failed, so
+ * they should return quickly. Exceptions thrown by a listener do not affect the observed query.
+ * </p>
+ *
+ * @see SQLAdapter#addListener(QueryListener)
+ */
+@FunctionalInterface
+public interface QueryListener {
+
+    /**
+     * Called once a query has been executed.
+     *
+     * @param execution The executed query and its outcome.
+     */
+    void onExecuted(QueryExecution execution);
+}
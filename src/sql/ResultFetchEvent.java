@@ -0,0 +1,75 @@
+package sql;
+
+import jdk.jfr.*;
+
+import java.util.Collection;
+
+/**
+ * A JDK Flight Recorder event timing the reading of a result, from its first fetch to its last row.
+ * <p>
+ * The event duration covers the round trips fetching the rows as well as their decoding; the time spent decoding
+ * rows into Java values is reported separately as the mapping time, with the number of rows and their estimated
+ * heap size. Decoded rows are only measured while the event is enabled.
+ * </p>
+ *
+ * @see QueryBuildEvent
+ */
+@Name("orm.ResultFetch")
+@Label("Result Fetch")
+@Category({"ORM", "SQL"})
+@Description("Fetching and decoding of the rows of a result")
+@Threshold("1 ms")
+final class ResultFetchEvent extends Event {
+
+    @Label("Fingerprint")
+    String fingerprint;
+
+    @Label("Rows")
+    long rows;
+
+    @Label("Bytes")
+    @Description("Estimated heap size of the decoded rows")
+    @DataAmount
+    long bytes;
+
+    @Label("Mapping Time")
+    @Description("Time spent decoding rows into Java values")
+    @Timespan
+    long mappingTime;
+
+    /**
+     * Returns the start of the decoding of a row, to be passed to {@link #mapped(Collection, long)}.
+     *
+     * @return the current {@link System#nanoTime()}, or 0 if the event is disabled
+     */
+    long startMapping() {
+        return isEnabled() ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Accounts for a decoded row.
+     *
+     * @param values     The column values of the row.
+     * @param startNanos The value returned by {@link #startMapping()} before the row was decoded.
+     */
+    void mapped(Collection<?> values, long startNanos) {
+        if (isEnabled()) {
+            mappingTime += System.nanoTime() - startNanos;
+            bytes += FetchSizePolicy.estimateRowBytes(values);
+            rows++;
+        }
+    }
+
+    /**
+     * Ends the event and commits it if it is recorded.
+     *
+     * @param sql The native SQL producing the result.
+     */
+    void complete(String sql) {
+        end();
+        if (shouldCommit()) {
+            this.fingerprint = Fingerprint.of(sql);
+            commit();
+        }
+    }
+}
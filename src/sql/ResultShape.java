@@ -0,0 +1,236 @@
+package sql;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The resolved shape of a query result: its column labels, JDBC types and the reader decoding each column.
+ * <p>
+ * Resolving labels and picking readers goes through {@link ResultSetMetaData}, which is costly for some drivers.
+ * A shape is resolved once per query fingerprint and reused by every execution, so decoding a row becomes a loop
+ * over precomputed readers. Before reuse, a shape is validated against the column count and type signature of the
+ * new result.
+ * </p>
+ * <p>
+ * Readers are picked from the Java class the driver maps each column to, so rows hold the same values
+ * {@link ResultSet#getObject(int)} would return, without its type dispatch.
+ * </p>
+ */
+final class ResultShape {
+
+    /**
+     * Reads the value of a column of the current row.
+     */
+    @FunctionalInterface
+    interface ColumnReader {
+        Object read(ResultSet resultSet, int column) throws SQLException;
+    }
+
+    private static final ColumnReader OBJECT = ResultSet::getObject;
+    private static final ColumnReader STRING = ResultSet::getString;
+    private static final ColumnReader INTEGER = (resultSet, column) -> {
+        int value = resultSet.getInt(column);
+        return resultSet.wasNull() ? null : value;
+    };
+    private static final ColumnReader LONG = (resultSet, column) -> {
+        long value = resultSet.getLong(column);
+        return resultSet.wasNull() ? null : value;
+    };
+    private static final ColumnReader DOUBLE = (resultSet, column) -> {
+        double value = resultSet.getDouble(column);
+        return resultSet.wasNull() ? null : value;
+    };
+    private static final ColumnReader BOOLEAN = (resultSet, column) -> {
+        boolean value = resultSet.getBoolean(column);
+        return resultSet.wasNull() ? null : value;
+    };
+
+    private final String[] labels;
+    private final int[] types;
+    private final ColumnReader[] readers;
+    private volatile double averageRowBytes;
+
+    private ResultShape(String[] labels, int[] types, ColumnReader[] readers) {
+        this.labels = labels;
+        this.types = types;
+        this.readers = readers;
+    }
+
+    /**
+     * Resolves the shape of a result from its metadata.
+     *
+     * @param metaData The metadata of the result.
+     * @return The resolved shape.
+     * @throws SQLException If the metadata cannot be read.
+     */
+    static ResultShape of(ResultSetMetaData metaData) throws SQLException {
+        int columnCount = metaData.getColumnCount();
+        String[] labels = new String[columnCount];
+        int[] types = new int[columnCount];
+        ColumnReader[] readers = new ColumnReader[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            labels[i] = metaData.getColumnLabel(i + 1); // Prefer getColumnLabel() for alias support
+            types[i] = metaData.getColumnType(i + 1);
+            readers[i] = readerFor(metaData.getColumnClassName(i + 1));
+        }
+        return new ResultShape(labels, types, readers);
+    }
+
+    private static ColumnReader readerFor(String className) {
+        if (className == null) {
+            return OBJECT;
+        }
+        switch (className) {
+            case "java.lang.String":
+                return STRING;
+            case "java.lang.Integer":
+                return INTEGER;
+            case "java.lang.Long":
+                return LONG;
+            case "java.lang.Double":
+                return DOUBLE;
+            case "java.lang.Boolean":
+                return BOOLEAN;
+            default:
+                return OBJECT;
+        }
+    }
+
+    /**
+     * Checks if this shape still describes a result, by its column count and type signature.
+     *
+     * @param metaData The metadata of the result.
+     * @return true if the result has the same columns types otherwise false .
+     * @throws SQLException If the metadata cannot be read.
+     */
+    boolean matches(ResultSetMetaData metaData) throws SQLException {
+        if (metaData.getColumnCount() != types.length) {
+            return false;
+        }
+        for (int i = 0; i < types.length; i++) {
+            if (metaData.getColumnType(i + 1) != types[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decodes the row the given {@link ResultSet} is currently positioned on.
+     *
+     * @param resultSet The result set positioned on a row.
+     * @return A map of column labels to column values.
+     * @throws SQLException If the row cannot be read.
+     */
+    Map<String, Object> read(ResultSet resultSet) throws SQLException {
+        Map<String, Object> row = new HashMap<>((int) (labels.length / 0.75f) + 1);
+        for (int i = 0; i < readers.length; i++) {
+            row.put(labels[i], readers[i].read(resultSet, i + 1));
+        }
+        return row;
+    }
+
+    /**
+     * Decodes the row the given {@link ResultSet} is currently positioned on into an array, without keying it.
+     *
+     * @param resultSet The result set positioned on a row.
+     * @return The column values, in column order.
+     * @throws SQLException If the row cannot be read.
+     */
+    Object[] readArray(ResultSet resultSet) throws SQLException {
+        Object[] row = new Object[readers.length];
+        for (int i = 0; i < readers.length; i++) {
+            row[i] = readers[i].read(resultSet, i + 1);
+        }
+        return row;
+    }
+
+    /**
+     * Decodes the regular columns of the row the given {@link ResultSet} is currently positioned on, leaving out its
+     * large objects.
+     *
+     * @param resultSet The result set positioned on a row.
+     * @return A map of column labels to column values, without the large object columns.
+     * @throws SQLException If the row cannot be read.
+     */
+    Map<String, Object> readValues(ResultSet resultSet) throws SQLException {
+        Map<String, Object> row = new HashMap<>((int) (labels.length / 0.75f) + 1);
+        for (int i = 0; i < readers.length; i++) {
+            if (!isLob(i)) {
+                row.put(labels[i], readers[i].read(resultSet, i + 1));
+            }
+        }
+        return row;
+    }
+
+    /**
+     * Checks if a column holds a large object, better streamed than decoded onto the heap.
+     *
+     * @param index The index of the column, from 0.
+     * @return true if the column is a BLOB, a CLOB or a long binary or character column otherwise false .
+     */
+    boolean isLob(int index) {
+        switch (types[index]) {
+            case Types.BLOB:
+            case Types.CLOB:
+            case Types.NCLOB:
+            case Types.LONGVARBINARY:
+            case Types.LONGVARCHAR:
+            case Types.LONGNVARCHAR:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Returns the index of a column.
+     *
+     * @param label The column label.
+     * @return The index of the column, from 0, or -1 if the result has no such column.
+     */
+    int indexOf(String label) {
+        for (int i = 0; i < labels.length; i++) {
+            if (labels[i].equalsIgnoreCase(label)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the average width of the decoded rows of the result, as measured by a {@link FetchSizePolicy}.
+     *
+     * @return the width, in bytes, or 0 if it has not been measured yet
+     */
+    double getAverageRowBytes() {
+        return averageRowBytes;
+    }
+
+    void setAverageRowBytes(double averageRowBytes) {
+        this.averageRowBytes = averageRowBytes;
+    }
+
+    /**
+     * Returns the column labels of the result.
+     *
+     * @return the labels, in column order
+     */
+    String[] getLabels() {
+        return Arrays.copyOf(labels, labels.length);
+    }
+
+    /**
+     * Returns the JDBC types of the result columns.
+     *
+     * @return the {@link java.sql.Types} of each column, in column order
+     */
+    int[] getTypes() {
+        return Arrays.copyOf(types, types.length);
+    }
+}
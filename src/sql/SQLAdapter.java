@@ -3,14 +3,22 @@ package sql;
 import core.DataBaseAdapter;
 import core.exceptions.ConnectionClosedException;
 import core.exceptions.QueryNotBuiltException;
+import core.exceptions.QueryTimeoutException;
 import core.queries.AbstractSelectQuery;
 import core.queries.Query;
+import sql.queries.SQLDeleteQuery;
+import sql.queries.SQLInsertQuery;
 import sql.queries.SQLSelectQuery;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.file.Path;
 import java.sql.*;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Optional;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * A SQL Adapter for connecting and interacting with a MySQL database.
@@ -21,7 +29,34 @@ import java.util.Optional;
  * </p>
  */
 public class SQLAdapter implements DataBaseAdapter<Connection, Map<String, Object>> {
+    /**
+     * The watchdog cancelling statements overrunning their timeout.
+     */
+    private static final ScheduledExecutorService WATCHDOG = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "sql-timeout-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * The time the calls running on each thread spent executing statements, without reading their results, as
+     * reported to the admission controller.
+     */
+    private static final ThreadLocal<long[]> EXECUTION_NANOS = ThreadLocal.withInitial(() -> new long[1]);
+
+    /**
+     * The maximum number of result shapes cached by an adapter.
+     */
+    private static final int MAX_RESULT_SHAPES = 1024;
+
     private final Optional<Connection> connection;
+    private final Map<String, ResultShape> resultShapes = new ConcurrentHashMap<>();
+    private final Map<String, String> fingerprints = new ConcurrentHashMap<>();
+    private final Set<Statement> runningStatements = ConcurrentHashMap.newKeySet();
+    private final List<QueryListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile Optional<Duration> queryTimeout = Optional.empty();
+    private volatile Optional<FetchSizePolicy> fetchSizePolicy = Optional.empty();
+    private volatile Optional<AdmissionController> admissionController = Optional.empty();
 
     /**
      * Constructs an {@code SQLAdapter} with an existing database {@link Connection}.
@@ -103,7 +138,10 @@ public class SQLAdapter implements DataBaseAdapter<Connection, Map<String, Objec
      */
     public static SQLAdapter connect(String url, String username, String password) {
         try {
-            Class.forName("com.mysql.cj.jdbc.Driver");
+            if (url.startsWith("jdbc:mysql:")) {
+                Class.forName("com.mysql.cj.jdbc.Driver");
+            }
+            // Other drivers, e.g. embedded databases, register themselves when on the classpath
             Connection conn = DriverManager.getConnection(url, username, password);
             return new SQLAdapter(conn);
         } catch (ClassNotFoundException e) {
@@ -151,42 +189,998 @@ public class SQLAdapter implements DataBaseAdapter<Connection, Map<String, Objec
      */
     @Override
     public Map<String, Object> execute(Query query) throws SQLException {
+        // Handle different types of queries based on whether they return a result set
+        return run(query, statement -> {
+            // Initialize the result data map
+            Map<String, Object> resultData = new HashMap<>();
+
+            // Check if it's a SELECT query
+            if (query instanceof SQLSelectQuery) {
+                try (ResultSet resultSet = executeQuery(statement, query.getNativeQuery())) {
+                    ResultFetchEvent fetchEvent = new ResultFetchEvent();
+                    fetchEvent.begin();
+                    if (resultSet.next()) { // If there is at least one row
+                        long mapping = fetchEvent.startMapping();
+                        resultData = shapeOf(query.getNativeQuery(), resultSet.getMetaData()).read(resultSet);
+                        fetchEvent.mapped(resultData.values(), mapping);
+                    }
+                    fetchEvent.complete(query.getNativeQuery());
+                }
+            } else {
+                // For non-SELECT queries (INSERT, UPDATE, DELETE), use executeUpdate
+                int affectedRows = executeUpdate(statement, query.getNativeQuery());
+                resultData.put("affectedRows", affectedRows);  // You can return the number of affected rows
+            }
+            return resultData;
+        });
+    }
+
+    /**
+     * Executes a given SELECT {@link Query} and returns every row of its result.
+     * <p>
+     * Unlike {@link #execute(Query)}, which only exposes the first row, each row is returned as its own map
+     * of column labels to values, in the order the database produced them.
+     * </p>
+     *
+     * @param query The SELECT query to execute.
+     * @return The list of rows returned by the query, empty if none matched.
+     * @throws SQLException If an SQL exception occurs during execution.
+     */
+    public List<Map<String, Object>> fetch(Query query) throws SQLException {
+        Optional<FetchSizePolicy> policy = this.fetchSizePolicy;
+        return run(query, statement -> {
+            List<Map<String, Object>> rows = new ArrayList<>();
+            applyFetchSize(statement, query, policy);
+            try (ResultSet resultSet = executeQuery(statement, query.getNativeQuery())) {
+                ResultFetchEvent fetchEvent = new ResultFetchEvent();
+                fetchEvent.begin();
+                ResultShape shape = shapeOf(query.getNativeQuery(), resultSet.getMetaData());
+                FetchSizePolicy.Cursor cursor = policy.isPresent() ? policy.get().open(resultSet, shape) : null;
+                while (resultSet.next()) {
+                    long mapping = fetchEvent.startMapping();
+                    Map<String, Object> row = shape.read(resultSet);
+                    fetchEvent.mapped(row.values(), mapping);
+                    rows.add(row);
+                    if (cursor != null) {
+                        cursor.onRow(row.values());
+                    }
+                }
+                if (cursor != null) {
+                    cursor.close();
+                }
+                fetchEvent.complete(query.getNativeQuery());
+            }
+            return rows;
+        });
+    }
+
+    /**
+     * Executes a given SELECT {@link Query} and materializes its rows, spilling them to a temporary file once they
+     * exceed a memory budget.
+     * <p>
+     * Unlike {@link #fetch(Query)}, an oversized result degrades to disk speed instead of exhausting the heap, provided
+     * the driver does not buffer the whole result before its first row is read. On MySQL without a
+     * {@link FetchSizePolicy}, the fetch size is set to {@link Integer#MIN_VALUE} so Connector/J streams the rows;
+     * with a policy, the connection URL needs {@code useCursorFetch=true} for its fetch sizes to apply.
+     * </p>
+     *
+     * @param query        The built SELECT query to execute.
+     * @param memoryBudget The estimated heap the rows may take before they are spilled, in bytes.
+     * @return The rows of the result, to be closed to delete its temporary file.
+     * @throws SQLException If an SQL exception occurs during execution, or the rows cannot be spilled.
+     * @see MaterializedResult
+     */
+    public MaterializedResult materialize(Query query, long memoryBudget) throws SQLException {
+        return materialize(query, memoryBudget, null);
+    }
+
+    /**
+     * Executes a given SELECT {@link Query} and materializes its rows, spilling them to a temporary file in the given
+     * directory once they exceed a memory budget.
+     *
+     * @param query        The built SELECT query to execute.
+     * @param memoryBudget The estimated heap the rows may take before they are spilled, in bytes.
+     * @param directory    The directory of the temporary file, or {@code null} for the default temporary directory.
+     * @return The rows of the result, to be closed to delete its temporary file.
+     * @throws SQLException If an SQL exception occurs during execution, or the rows cannot be spilled.
+     * @see MaterializedResult
+     */
+    public MaterializedResult materialize(Query query, long memoryBudget, Path directory) throws SQLException {
+        Optional<FetchSizePolicy> policy = this.fetchSizePolicy;
+        return run(query, statement -> {
+            applyStreamingFetchSize(statement, query, policy);
+            MaterializedResult result = null;
+            try (ResultSet resultSet = executeQuery(statement, query.getNativeQuery())) {
+                ResultFetchEvent fetchEvent = new ResultFetchEvent();
+                fetchEvent.begin();
+                ResultShape shape = shapeOf(query.getNativeQuery(), resultSet.getMetaData());
+                FetchSizePolicy.Cursor cursor = policy.isPresent() ? policy.get().open(resultSet, shape) : null;
+                result = new MaterializedResult(shape.getLabels(), shape.getTypes(), memoryBudget, directory);
+                while (resultSet.next()) {
+                    long mapping = fetchEvent.startMapping();
+                    Object[] row = shape.readArray(resultSet);
+                    fetchEvent.mapped(Arrays.asList(row), mapping);
+                    result.add(row);
+                    if (cursor != null) {
+                        cursor.onRow(Arrays.asList(row));
+                    }
+                }
+                if (cursor != null) {
+                    cursor.close();
+                }
+                result.finish();
+                fetchEvent.complete(query.getNativeQuery());
+                return result;
+            } catch (IOException e) {
+                result.close();
+                throw new SQLException("The result could not be spilled to disk.", e);
+            } catch (SQLException | RuntimeException e) {
+                if (result != null) {
+                    result.close();
+                }
+                throw e;
+            }
+        });
+    }
+
+    /**
+     * Executes a given SELECT {@link Query} and hands its rows to a handler one at a time, without holding them.
+     * <p>
+     * Unlike {@link #fetch(Query)}, large object columns are not decoded onto the heap: each {@link LobRow} reads
+     * them lazily, as streams or by copying them straight to a channel or a file, so documents of any size are read
+     * with constant memory. A row is only valid while the handler runs.
+     * </p>
+     * <p>
+     * Without a {@link FetchSizePolicy}, rows are only read with constant memory if the driver does not buffer whole
+     * results. On MySQL, which does, the fetch size is set to {@link Integer#MIN_VALUE} so Connector/J streams the rows
+     * one at a time; the connection then cannot run another statement until the stream is done. Other drivers keep
+     * their own fetch size.
+     * </p>
+     *
+     * @param query   The built SELECT query to execute.
+     * @param handler The handler of each row.
+     * @return The number of rows handled.
+     * @throws SQLException If an SQL exception occurs during execution, or the handler fails with an I/O error.
+     */
+    public long stream(Query query, LobRow.Handler handler) throws SQLException {
+        Optional<FetchSizePolicy> policy = this.fetchSizePolicy;
+        return run(query, statement -> {
+            long rows = 0;
+            applyStreamingFetchSize(statement, query, policy);
+            try (ResultSet resultSet = executeQuery(statement, query.getNativeQuery())) {
+                ResultFetchEvent fetchEvent = new ResultFetchEvent();
+                fetchEvent.begin();
+                ResultShape shape = shapeOf(query.getNativeQuery(), resultSet.getMetaData());
+                FetchSizePolicy.Cursor cursor = policy.isPresent() ? policy.get().open(resultSet, shape) : null;
+                while (resultSet.next()) {
+                    long mapping = fetchEvent.startMapping();
+                    LobRow row = new LobRow(resultSet, shape);
+                    fetchEvent.mapped(row.getValues().values(), mapping);
+                    handler.handle(row);
+                    rows++;
+                    if (cursor != null) {
+                        cursor.onStreamedRow(row.getValues().values());
+                    }
+                }
+                if (cursor != null) {
+                    cursor.close();
+                }
+                fetchEvent.complete(query.getNativeQuery());
+            } catch (IOException e) {
+                throw new SQLException("A streamed row could not be handled.", e);
+            }
+            return rows;
+        });
+    }
+
+    /**
+     * Executes the given INSERT, UPDATE or DELETE queries, in order, within a single transaction.
+     * <p>
+     * Every query is committed together, or none is if any of them fails.
+     * </p>
+     *
+     * @param queries The built queries to execute.
+     * @return The number of rows affected by each query, in order.
+     * @throws SQLException If an SQL exception occurs during execution.
+     */
+    public int[] executeInTransaction(List<? extends Query> queries) throws SQLException {
+        return transaction(() -> {
+            int[] affectedRows = new int[queries.size()];
+            for (int i = 0; i < queries.size(); i++) {
+                Query query = queries.get(i);
+                affectedRows[i] = run(query, statement -> executeUpdate(statement, query.getNativeQuery()));
+            }
+            return affectedRows;
+        });
+    }
+
+    /**
+     * Executes the given INSERT, UPDATE or DELETE queries, in order, as JDBC batches within a single transaction.
+     * <p>
+     * Consecutive queries sharing the same native SQL are sent together as one batch of a single
+     * {@link PreparedStatement}, each query contributing its own parameters. Order the queries so that identical
+     * statements are adjacent to make the most of batching.
+     * </p>
+     *
+     * @param queries The built queries to execute.
+     * @return The number of rows affected by each query, in order, as reported by {@link Statement#executeBatch()}.
+     * @throws SQLException If an SQL exception occurs during execution.
+     */
+    public int[] executeBatch(List<? extends Query> queries) throws SQLException {
+        for (Query query : queries) {
+            if (!query.isBuilt()) {
+                throw new QueryNotBuiltException("The query has not been built yet.");
+            }
+        }
+        return transaction(() -> {
+            int[] affectedRows = new int[queries.size()];
+            int from = 0;
+            while (from < queries.size()) {
+                String sql = queries.get(from).getNativeQuery();
+                int to = from + 1;
+                while (to < queries.size() && queries.get(to).getNativeQuery().equals(sql)) {
+                    to++;
+                }
+                List<? extends Query> batch = queries.subList(from, to);
+                int[] batchRows = run(batch, sql, () -> getConnection().prepareStatement(sql), statement -> {
+                    PreparedStatement preparedStatement = (PreparedStatement) statement;
+                    StatementPrepareEvent prepareEvent = new StatementPrepareEvent();
+                    prepareEvent.begin();
+                    for (Query query : batch) {
+                        bind(preparedStatement, query.getParameters());
+                        preparedStatement.addBatch();
+                    }
+                    prepareEvent.complete(sql, batch.size() * batch.get(0).getParameters().size());
+
+                    StatementExecuteEvent executeEvent = new StatementExecuteEvent();
+                    executeEvent.begin();
+                    long executing = System.nanoTime();
+                    int[] rows;
+                    try {
+                        rows = preparedStatement.executeBatch();
+                    } finally {
+                        executed(executing);
+                    }
+                    executeEvent.complete(sql, batch.size(), Arrays.stream(rows).asLongStream().sum());
+                    return rows;
+                });
+                System.arraycopy(batchRows, 0, affectedRows, from, batchRows.length);
+                from = to;
+            }
+            return affectedRows;
+        });
+    }
+
+    /**
+     * Executes an INSERT query and returns the keys generated for its rows, e.g. their auto-increment ids.
+     *
+     * @param query The built INSERT query, inserting one or many rows.
+     * @return The generated key of each row, in the order of the rows.
+     * @throws SQLException If an SQL exception occurs during execution, or the driver does not return a key per row.
+     * @see #insertReturningKeys(List)
+     */
+    public long[] insertReturningKeys(SQLInsertQuery query) throws SQLException {
+        return insertReturningKeys(Collections.singletonList(query));
+    }
+
+    /**
+     * Executes the given INSERT queries, in order, within a single transaction and returns the keys generated for
+     * their rows, e.g. their auto-increment ids.
+     * <p>
+     * Like {@link #executeBatch(List)}, consecutive queries sharing the same native SQL are sent as one JDBC batch,
+     * executed with {@link Statement#RETURN_GENERATED_KEYS}. The keys of every query are concatenated, so the
+     * returned array is aligned with the rows of the queries taken in order, across multi-row inserts and batches.
+     * This requires a driver returning a key per inserted row in insertion order, as MySQL and PostgreSQL do, and
+     * a single generated key column, read as a {@code long}.
+     * </p>
+     *
+     * @param queries The built INSERT queries to execute, e.g. the chunks of {@link SQLQueryBuilder#insertInChunks}.
+     * @return The generated key of each row, in order.
+     * @throws SQLException If an SQL exception occurs during execution, or the driver does not return a key per row.
+     */
+    public long[] insertReturningKeys(List<? extends SQLInsertQuery> queries) throws SQLException {
+        int rowCount = 0;
+        for (SQLInsertQuery query : queries) {
+            if (!query.isBuilt()) {
+                throw new QueryNotBuiltException("The query has not been built yet.");
+            }
+            rowCount += query.getRows().size();
+        }
+        long[] keys = new long[rowCount];
+        return transaction(() -> {
+            int from = 0;
+            int offset = 0;
+            while (from < queries.size()) {
+                String sql = queries.get(from).getNativeQuery();
+                int to = from + 1;
+                int batchRows = queries.get(from).getRows().size();
+                while (to < queries.size() && queries.get(to).getNativeQuery().equals(sql)) {
+                    batchRows += queries.get(to).getRows().size();
+                    to++;
+                }
+                List<? extends SQLInsertQuery> batch = queries.subList(from, to);
+                int batchOffset = offset;
+                int expected = batchRows;
+                run(batch, sql, () -> getConnection().prepareStatement(sql, Statement.RETURN_GENERATED_KEYS), statement -> {
+                    PreparedStatement preparedStatement = (PreparedStatement) statement;
+                    StatementPrepareEvent prepareEvent = new StatementPrepareEvent();
+                    prepareEvent.begin();
+                    for (Query query : batch) {
+                        bind(preparedStatement, query.getParameters());
+                        if (batch.size() > 1) {
+                            preparedStatement.addBatch();
+                        }
+                    }
+                    prepareEvent.complete(sql, batch.size() * batch.get(0).getParameters().size());
+
+                    StatementExecuteEvent executeEvent = new StatementExecuteEvent();
+                    executeEvent.begin();
+                    long executing = System.nanoTime();
+                    long affectedRows;
+                    try {
+                        affectedRows = batch.size() > 1
+                                ? Arrays.stream(preparedStatement.executeBatch()).asLongStream().sum()
+                                : preparedStatement.executeUpdate();
+                    } finally {
+                        executed(executing);
+                    }
+                    executeEvent.complete(sql, batch.size(), affectedRows);
+                    readGeneratedKeys(preparedStatement, keys, batchOffset, expected);
+                    return null;
+                });
+                offset += batchRows;
+                from = to;
+            }
+            return keys;
+        });
+    }
+
+    /**
+     * Inserts many rows into a table and returns the keys generated for them, e.g. their auto-increment ids.
+     * <p>
+     * Rows are inserted in chunks of {@code chunkSize}, each chunk being a single multi-row INSERT, and all the
+     * chunks are executed within a single transaction, those of the same shape as one batch.
+     * </p>
+     *
+     * @param table     The table to insert into.
+     * @param rows      The column-value pairs of each row, in order.
+     * @param chunkSize The maximum number of rows inserted by a single statement.
+     * @return The generated key of each row, in the order of the rows.
+     * @throws SQLException If an SQL exception occurs during execution, or the driver does not return a key per row.
+     * @see #insertReturningKeys(List)
+     */
+    public long[] insertReturningKeys(String table, List<Map<String, Object>> rows, int chunkSize) throws SQLException {
+        return insertReturningKeys(getBuilder().insertInChunks(table, rows, chunkSize));
+    }
+
+    /**
+     * Updates many rows of a table to their own values, identified by a key column.
+     * <p>
+     * Rows are updated in chunks of {@code chunkSize}, each chunk being a single
+     * {@code UPDATE table SET column = CASE key WHEN ? THEN ? ... END WHERE key IN (...)} statement, and all the
+     * chunks are executed within a single transaction.
+     * </p>
+     *
+     * @param table     The table to update.
+     * @param keyColumn The column identifying the rows.
+     * @param rows      A map of key values to the column-value pairs to set on the row holding that key.
+     * @param chunkSize The maximum number of rows updated by a single statement.
+     * @return The number of rows affected by each chunk, in order.
+     * @throws SQLException If an SQL exception occurs during execution.
+     */
+    public int[] updateByKey(String table, String keyColumn, Map<?, Map<String, Object>> rows, int chunkSize) throws SQLException {
+        return executeInTransaction(getBuilder().updateByKey(table, keyColumn, rows, chunkSize));
+    }
+
+    /**
+     * Prepares a purge of the rows matched by the given DELETE query, executed in small chunks.
+     *
+     * @param query     The unbuilt DELETE query selecting the rows to purge.
+     * @param keyColumn The column the rows are deleted in order of, usually the primary key.
+     * @return The chunked delete to configure and run.
+     * @see ChunkedDelete
+     */
+    public ChunkedDelete deleteInChunks(SQLDeleteQuery query, String keyColumn) {
+        return new ChunkedDelete(this, query, keyColumn);
+    }
+
+    /**
+     * Prepares an in-memory aggregate view over a table, kept up to date from the writes of this adapter.
+     *
+     * @param table The table the view aggregates.
+     * @return The view to define and open.
+     * @see AggregateView
+     */
+    public AggregateView aggregateView(String table) {
+        return new AggregateView(this, table);
+    }
+
+    /**
+     * Registers a listener notified after each statement executed by the adapter.
+     *
+     * @param listener The listener to notify.
+     */
+    public void addListener(QueryListener listener) {
+        this.listeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener.
+     *
+     * @param listener The listener to stop notifying.
+     */
+    public void removeListener(QueryListener listener) {
+        this.listeners.remove(listener);
+    }
+
+    /**
+     * Sets the default maximum time a query executed by this adapter may take.
+     * <p>
+     * A timeout set on the query itself takes precedence, and both are shortened to the remaining budget of the
+     * current {@link Deadline}, if any.
+     * </p>
+     *
+     * @param timeout The default timeout, or {@code null} to disable it.
+     */
+    public void setQueryTimeout(Duration timeout) {
+        this.queryTimeout = Optional.ofNullable(timeout);
+    }
+
+    /**
+     * Sets the policy sizing the JDBC fetches of the queries whose rows are all read, by {@link #fetch(Query)} and
+     * {@link #stream(Query, LobRow.Handler)}.
+     * <p>
+     * Without a policy, the fetch size is left to the driver default.
+     * </p>
+     *
+     * @param policy The fetch size policy, or {@code null} to disable it.
+     * @see FetchSizePolicy
+     */
+    public void setFetchSizePolicy(FetchSizePolicy policy) {
+        this.fetchSizePolicy = Optional.ofNullable(policy);
+    }
+
+    /**
+     * Sets the controller bounding the number of statements in flight, possibly shared with other adapters.
+     * <p>
+     * Every statement executed by this adapter, batches included, is then admitted by the controller first, and fails
+     * with an {@link core.exceptions.AdmissionRejectedException} if it cannot be admitted in time.
+     * </p>
+     *
+     * @param controller The admission controller, or {@code null} to admit every statement.
+     * @see AdmissionController
+     */
+    public void setAdmissionController(AdmissionController controller) {
+        this.admissionController = Optional.ofNullable(controller);
+    }
+
+    /**
+     * Cancels the statements currently being executed by this adapter.
+     * <p>
+     * The cancelled executions fail with the {@link SQLException} reported by the driver.
+     * </p>
+     */
+    public void cancel() {
+        for (Statement statement : this.runningStatements) {
+            cancelQuietly(statement);
+        }
+    }
+
+    /**
+     * Checks whether the given SELECT query matches any row.
+     * <p>
+     * The query is executed as {@code SELECT 1 ... LIMIT 1} without its ORDER BY clause, and does not need to be
+     * built beforehand.
+     * </p>
+     *
+     * @param query The SELECT query to probe.
+     * @return true if the query matches at least one row otherwise false .
+     * @throws SQLException If an SQL exception occurs during execution.
+     */
+    public boolean exists(SQLSelectQuery query) throws SQLException {
+        String sql = query.buildExists();
+        return run(Collections.singletonList(query), sql, () -> getConnection().createStatement(), statement -> {
+            try (ResultSet resultSet = executeQuery(statement, sql)) {
+                return resultSet.next();
+            }
+        });
+    }
+
+    /**
+     * Counts the rows matched by the given SELECT query.
+     * <p>
+     * The query is executed as {@code SELECT COUNT(*)} without its ORDER BY clause, and does not need to be built
+     * beforehand.
+     * </p>
+     *
+     * @param query The SELECT query to count the rows of.
+     * @return The number of rows the query returns.
+     * @throws SQLException If an SQL exception occurs during execution.
+     */
+    public long count(SQLSelectQuery query) throws SQLException {
+        String sql = query.buildCount();
+        return run(Collections.singletonList(query), sql, () -> getConnection().createStatement(), statement -> {
+            try (ResultSet resultSet = executeQuery(statement, sql)) {
+                return resultSet.next() ? resultSet.getLong(1) : 0L;
+            }
+        });
+    }
+
+    /**
+     * Returns the first row of the given SELECT query.
+     * <p>
+     * The query is executed with {@code LIMIT 1} so no further row is produced by the database, and does not need to
+     * be built beforehand.
+     * </p>
+     *
+     * @param query The SELECT query to read the first row of.
+     * @return an Optional of the first row, empty if the query matches none.
+     * @throws SQLException If an SQL exception occurs during execution.
+     */
+    public Optional<Map<String, Object>> first(SQLSelectQuery query) throws SQLException {
+        String sql = query.buildFirst();
+        return run(Collections.singletonList(query), sql, () -> getConnection().createStatement(), statement -> {
+            try (ResultSet resultSet = executeQuery(statement, sql)) {
+                ResultFetchEvent fetchEvent = new ResultFetchEvent();
+                fetchEvent.begin();
+                Optional<Map<String, Object>> row = Optional.empty();
+                if (resultSet.next()) {
+                    long mapping = fetchEvent.startMapping();
+                    row = Optional.of(shapeOf(sql, resultSet.getMetaData()).read(resultSet));
+                    fetchEvent.mapped(row.get().values(), mapping);
+                }
+                fetchEvent.complete(sql);
+                return row;
+            }
+        });
+    }
+
+    /**
+     * Returns a {@link Flow.Publisher} streaming the rows of the given SELECT query with backpressure.
+     * <p>
+     * Rows are read and emitted on the thread signalling the demand. The query is executed once the subscriber
+     * requests its first rows.
+     * </p>
+     *
+     * @param query The built SELECT query to stream.
+     * @return A single-subscriber publisher of the query rows.
+     * @see SQLRowPublisher
+     */
+    public Flow.Publisher<Map<String, Object>> publish(SQLSelectQuery query) {
+        return publish(query, Runnable::run);
+    }
+
+    /**
+     * Returns a {@link Flow.Publisher} streaming the rows of the given SELECT query with backpressure.
+     *
+     * @param query    The built SELECT query to stream.
+     * @param executor The executor rows are read and emitted on.
+     * @return A single-subscriber publisher of the query rows.
+     * @see SQLRowPublisher
+     */
+    public Flow.Publisher<Map<String, Object>> publish(SQLSelectQuery query, Executor executor) {
+        if (!query.isBuilt()) {
+            throw new QueryNotBuiltException("The query has not been built yet.");
+        }
+        return new SQLRowPublisher(this, query, executor);
+    }
+
+    /**
+     * Runs a call within a transaction, committed if the call succeeds and rolled back otherwise.
+     *
+     * @param call The call to run.
+     * @param <T>  The type of the call result.
+     * @return The result of the call.
+     * @throws SQLException If an SQL exception occurs during execution.
+     */
+    private <T> T transaction(TransactionCall<T> call) throws SQLException {
+        Connection connection = getConnection();
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            T result = call.apply();
+            connection.commit();
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Runs a call against a new statement, enforcing the effective timeout of the query.
+     * <p>
+     * The timeout is passed on to the driver and guarded by a watchdog cancelling the statement on overrun, in case
+     * the driver or the network does not honor it. Overruns are reported as a {@link QueryTimeoutException}.
+     * </p>
+     *
+     * @param query The built query to run.
+     * @param call  The call executing the query on the statement.
+     * @param <T>   The type of the call result.
+     * @return The result of the call.
+     * @throws SQLException If an SQL exception occurs during execution.
+     */
+    private <T> T run(Query query, StatementCall<T> call) throws SQLException {
         if (!query.isBuilt()) {
             throw new QueryNotBuiltException("The query has not been built yet.");
         }
+        return run(Collections.singletonList(query), query.getNativeQuery(), () -> createStatement(query), call);
+    }
 
+    /**
+     * Runs a call against a statement created by the given factory, once admitted by the admission controller if
+     * any, enforcing the effective timeout of the queries and notifying the listeners once the call completes.
+     *
+     * @param queries The queries executed by the call, built or not; a single one unless they are batched.
+     * @param sql     The native SQL executed by the call.
+     * @param factory The factory creating the statement.
+     * @param call    The call executing the queries on the statement.
+     * @param <T>     The type of the call result.
+     * @return The result of the call.
+     * @throws SQLException If an SQL exception occurs during execution.
+     */
+    private <T> T run(List<? extends Query> queries, String sql, StatementFactory factory, StatementCall<T> call) throws SQLException {
         if (this.connection.isPresent() && this.connection.get().isClosed()) {
             throw new ConnectionClosedException("The database connection is closed.");
         }
 
-        // Initialize the result data map
-        Map<String, Object> resultData = new HashMap<>();
-
-        // Handle different types of queries based on whether they return a result set
-        try (Statement statement = this.connection.get().createStatement()) {
-            // Check if it's a SELECT query
-            if (query instanceof SQLSelectQuery) {
-                try (ResultSet resultSet = statement.executeQuery(query.getNativeQuery())) {
-                    ResultSetMetaData metaData = resultSet.getMetaData();
-                    int columnCount = metaData.getColumnCount();
+        Optional<Duration> timeout = effectiveTimeout(queries.get(0));
+        AdmissionController admission = this.admissionController.orElse(null);
+        if (admission != null) {
+            try {
+                admission.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for admission.", e);
+            }
+        }
+        long admittedAt = System.nanoTime();
+        // Calls run from a handler of another call, on the same thread, measure their own statements
+        long[] executionNanos = EXECUTION_NANOS.get();
+        long enclosingNanos = executionNanos[0];
+        executionNanos[0] = 0;
+        boolean overloaded = false;
+        try {
+            if (admission != null) {
+                // The wait for admission consumed part of the deadline
+                timeout = effectiveTimeout(queries.get(0));
+            }
+            try (Statement statement = factory.create()) {
+                AtomicBoolean timedOut = new AtomicBoolean();
+                ScheduledFuture<?> watchdog = null;
+                if (timeout.isPresent()) {
+                    long millis = Math.max(1, timeout.get().toMillis());
+                    statement.setQueryTimeout((int) Math.max(1, (millis + 999) / 1000));
+                    watchdog = WATCHDOG.schedule(() -> {
+                        timedOut.set(true);
+                        cancelQuietly(statement);
+                    }, millis, TimeUnit.MILLISECONDS);
+                }
 
-                    if (resultSet.next()) { // If there is at least one row
-                        for (int i = 1; i <= columnCount; i++) {
-                            String columnName = metaData.getColumnLabel(i); // Prefer getColumnLabel() for alias support
-                            Object columnValue = resultSet.getObject(i);
-                            resultData.put(columnName, columnValue);
-                        }
+                this.runningStatements.add(statement);
+                long start = System.nanoTime();
+                Throwable failure = null;
+                try {
+                    return call.apply(statement);
+                } catch (SQLException e) {
+                    failure = e;
+                    if (timedOut.get() || e instanceof SQLTimeoutException) {
+                        QueryTimeoutException timeoutException = new QueryTimeoutException("The query exceeded its timeout of " + timeout.map(Duration::toMillis).orElse(0L) + "ms.", e);
+                        failure = timeoutException;
+                        throw timeoutException;
+                    }
+                    throw e;
+                } catch (RuntimeException e) {
+                    failure = e;
+                    throw e;
+                } finally {
+                    this.runningStatements.remove(statement);
+                    if (watchdog != null) {
+                        watchdog.cancel(false);
+                    }
+                    if (!this.listeners.isEmpty()) {
+                        notifyListeners(queries, sql, start, System.nanoTime() - start, failure);
                     }
                 }
+            }
+        } catch (QueryTimeoutException | SQLTransientException e) {
+            overloaded = true;
+            throw e;
+        } finally {
+            long executedNanos = executionNanos[0];
+            executionNanos[0] = enclosingNanos;
+            if (admission != null) {
+                // Results are read at the pace of the caller, which says nothing of the load of the database
+                admission.release(executedNanos > 0 ? executedNanos : System.nanoTime() - admittedAt, overloaded);
+            }
+        }
+    }
+
+    /**
+     * Notifies the listeners of the execution of some queries. Queries executed as a single batch share its
+     * execution time evenly.
+     *
+     * @param queries      The executed queries.
+     * @param sql          The executed native SQL.
+     * @param startNanos   The {@link System#nanoTime()} the execution started at.
+     * @param elapsedNanos The execution time of the statement.
+     * @param failure      The failure of the execution, or {@code null} if it succeeded.
+     */
+    private void notifyListeners(List<? extends Query> queries, String sql, long startNanos, long elapsedNanos, Throwable failure) {
+        String thread = Thread.currentThread().getName();
+        for (Query query : queries) {
+            QueryExecution execution = new QueryExecution(query, sql, new ArrayList<Object>(query.getParameters()),
+                    thread, startNanos, elapsedNanos / queries.size(), failure);
+            for (QueryListener listener : this.listeners) {
+                try {
+                    listener.onExecuted(execution);
+                } catch (RuntimeException e) {
+                    // A faulty listener must not fail the query it observes
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates the statement executing a query: a {@link PreparedStatement} with the query parameters bound if it
+     * has any, a plain {@link Statement} otherwise.
+     *
+     * @param query The built query to execute.
+     * @return The statement to execute the query with.
+     * @throws SQLException If the statement cannot be created.
+     */
+    private Statement createStatement(Query query) throws SQLException {
+        List<Object> parameters = query.getParameters();
+        if (parameters.isEmpty()) {
+            return this.connection.get().createStatement();
+        }
+        StatementPrepareEvent event = new StatementPrepareEvent();
+        event.begin();
+        PreparedStatement statement = this.connection.get().prepareStatement(query.getNativeQuery());
+        try {
+            bind(statement, parameters);
+            event.complete(query.getNativeQuery(), parameters.size());
+        } catch (SQLException e) {
+            statement.close();
+            throw e;
+        }
+        return statement;
+    }
+
+    /**
+     * Binds the given parameters to the placeholders of a prepared statement, in order.
+     * <p>
+     * {@link InputStream} and {@link Reader} values are bound as streams, so the driver reads large objects as it
+     * sends them instead of requiring them on the heap. A stream can thus only be bound once.
+     * </p>
+     *
+     * @param statement  The prepared statement.
+     * @param parameters The values to bind.
+     * @throws SQLException If a value cannot be bound.
+     */
+    private static void bind(PreparedStatement statement, List<Object> parameters) throws SQLException {
+        for (int i = 0; i < parameters.size(); i++) {
+            Object value = parameters.get(i);
+            if (value == null) {
+                statement.setNull(i + 1, Types.NULL);
+            } else if (value instanceof InputStream) {
+                statement.setBinaryStream(i + 1, (InputStream) value);
+            } else if (value instanceof Reader) {
+                statement.setCharacterStream(i + 1, (Reader) value);
+            } else if (value instanceof Blob) {
+                statement.setBlob(i + 1, (Blob) value);
+            } else if (value instanceof Clob) {
+                statement.setClob(i + 1, (Clob) value);
             } else {
-                // For non-SELECT queries (INSERT, UPDATE, DELETE), use executeUpdate
-                int affectedRows = statement.executeUpdate(query.getNativeQuery());
-                resultData.put("affectedRows", affectedRows);  // You can return the number of affected rows
+                statement.setObject(i + 1, value);
+            }
+        }
+    }
+
+    /**
+     * Sets the fetch size a query is executed with, from the row width measured on its previous executions.
+     *
+     * @param statement The statement about to execute the query.
+     * @param query     The built query.
+     * @param policy    The fetch size policy, if any.
+     * @throws SQLException If the fetch size cannot be set.
+     */
+    private void applyFetchSize(Statement statement, Query query, Optional<FetchSizePolicy> policy) throws SQLException {
+        if (policy.isPresent()) {
+            ResultShape shape = this.resultShapes.get(fingerprintOf(query.getNativeQuery()));
+            statement.setFetchSize(policy.get().initialFetchSize(shape));
+        }
+    }
+
+    /**
+     * Sets the fetch size of a statement whose rows are consumed one at a time, from the policy if any. Without one,
+     * MySQL Connector/J is asked to stream the rows, as it otherwise reads the whole result before returning it.
+     * Other drivers reject a negative fetch size, and keep their default.
+     *
+     * @param statement The statement about to execute the query.
+     * @param query     The built query.
+     * @param policy    The fetch size policy, if any.
+     * @throws SQLException If the fetch size cannot be set.
+     */
+    private void applyStreamingFetchSize(Statement statement, Query query, Optional<FetchSizePolicy> policy) throws SQLException {
+        if (policy.isPresent()) {
+            applyFetchSize(statement, query, policy);
+        } else if (isMySQL()) {
+            statement.setFetchSize(Integer.MIN_VALUE);
+        }
+    }
+
+    private boolean isMySQL() throws SQLException {
+        DatabaseMetaData metaData = getConnection().getMetaData();
+        return metaData != null && metaData.getURL() != null && metaData.getURL().startsWith("jdbc:mysql:");
+    }
+
+    /**
+     * Reads the keys generated by an executed INSERT into a slice of the given array.
+     *
+     * @param statement The statement executed with {@link Statement#RETURN_GENERATED_KEYS}.
+     * @param keys      The array receiving the keys.
+     * @param offset    The index of the first key of the statement in the array.
+     * @param expected  The number of rows inserted by the statement.
+     * @throws SQLException If the keys cannot be read, or the driver returned fewer or more keys than rows.
+     */
+    private static void readGeneratedKeys(Statement statement, long[] keys, int offset, int expected) throws SQLException {
+        int count = 0;
+        try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
+            while (generatedKeys.next()) {
+                if (count == expected) {
+                    throw new SQLException("The driver returned more generated keys than the " + expected + " inserted rows.");
+                }
+                keys[offset + count++] = generatedKeys.getLong(1);
             }
         }
+        if (count < expected) {
+            throw new SQLException("The driver returned " + count + " generated keys for " + expected + " inserted rows.");
+        }
+    }
 
-        return resultData;
+    private static ResultSet executeQuery(Statement statement, String sql) throws SQLException {
+        StatementExecuteEvent event = new StatementExecuteEvent();
+        event.begin();
+        long executing = System.nanoTime();
+        ResultSet resultSet;
+        try {
+            resultSet = statement instanceof PreparedStatement
+                    ? ((PreparedStatement) statement).executeQuery()
+                    : statement.executeQuery(sql);
+        } finally {
+            executed(executing);
+        }
+        event.complete(sql, 1, -1);
+        return resultSet;
     }
 
+    private static int executeUpdate(Statement statement, String sql) throws SQLException {
+        StatementExecuteEvent event = new StatementExecuteEvent();
+        event.begin();
+        long executing = System.nanoTime();
+        int affectedRows;
+        try {
+            affectedRows = statement instanceof PreparedStatement
+                    ? ((PreparedStatement) statement).executeUpdate()
+                    : statement.executeUpdate(sql);
+        } finally {
+            executed(executing);
+        }
+        event.complete(sql, 1, affectedRows);
+        return affectedRows;
+    }
 
+    /**
+     * Adds the execution time of a statement to that of the call running on the current thread.
+     *
+     * @param startNanos The {@link System#nanoTime()} the statement started executing at.
+     */
+    private static void executed(long startNanos) {
+        EXECUTION_NANOS.get()[0] += System.nanoTime() - startNanos;
+    }
+
+    /**
+     * Resolves the timeout of a query from its own timeout, the adapter default and the current {@link Deadline}.
+     *
+     * @param query The query about to be executed.
+     * @return The shortest applicable timeout, if any.
+     */
+    private Optional<Duration> effectiveTimeout(Query query) {
+        Optional<Duration> queryTimeout = query.getTimeout();
+        Optional<Duration> timeout = queryTimeout.isPresent() ? queryTimeout : this.queryTimeout;
+
+        Optional<Deadline> deadline = Deadline.current();
+        if (deadline.isPresent()) {
+            Duration remaining = deadline.get().remaining();
+            if (remaining.isZero() || remaining.isNegative()) {
+                throw new QueryTimeoutException("The deadline expired before the query was executed.");
+            }
+            if (!timeout.isPresent() || remaining.compareTo(timeout.get()) < 0) {
+                timeout = Optional.of(remaining);
+            }
+        }
+        return timeout;
+    }
+
+    private static void cancelQuietly(Statement statement) {
+        try {
+            statement.cancel();
+        } catch (SQLException ignored) {
+            // The statement may have completed or been closed in the meantime
+        }
+    }
+
+    /**
+     * Returns the shape of a result, resolved once per query fingerprint and reused while the result still has the
+     * same column count and type signature.
+     *
+     * @param sql      The native SQL query producing the result.
+     * @param metaData The metadata of the result.
+     * @return The shape decoding the rows of the result.
+     * @throws SQLException If the metadata cannot be read.
+     */
+    ResultShape shapeOf(String sql, ResultSetMetaData metaData) throws SQLException {
+        String fingerprint = fingerprintOf(sql);
+        ResultShape shape = this.resultShapes.get(fingerprint);
+        if (shape == null || !shape.matches(metaData)) {
+            shape = ResultShape.of(metaData);
+            if (this.resultShapes.size() >= MAX_RESULT_SHAPES) {
+                // Queries with unbounded shapes would otherwise grow the cache forever
+                this.resultShapes.clear();
+            }
+            this.resultShapes.put(fingerprint, shape);
+        }
+        return shape;
+    }
+
+    /**
+     * Returns the fingerprint of a native query, computed once per query text rather than on every execution.
+     *
+     * @param sql The native SQL query.
+     * @return The fingerprint of the query.
+     */
+    private String fingerprintOf(String sql) {
+        String fingerprint = this.fingerprints.get(sql);
+        if (fingerprint == null) {
+            fingerprint = Fingerprint.of(sql);
+            if (this.fingerprints.size() >= MAX_RESULT_SHAPES) {
+                // Queries inlining their values would otherwise grow the cache forever
+                this.fingerprints.clear();
+            }
+            this.fingerprints.put(sql, fingerprint);
+        }
+        return fingerprint;
+    }
+
+    /**
+     * A call executing a query on a statement.
+     *
+     * @param <T> The type of the call result.
+     */
+    @FunctionalInterface
+    private interface StatementCall<T> {
+        T apply(Statement statement) throws SQLException;
+    }
+
+    /**
+     * A call running within a transaction.
+     *
+     * @param <T> The type of the call result.
+     */
+    @FunctionalInterface
+    private interface TransactionCall<T> {
+        T apply() throws SQLException;
+    }
+
+    /**
+     * A factory creating the statement a query is executed with.
+     */
+    @FunctionalInterface
+    private interface StatementFactory {
+        Statement create() throws SQLException;
+    }
 }
@@ -0,0 +1,240 @@
+package sql;
+
+import core.clauses.Where;
+import core.queries.Query;
+
+import java.math.BigInteger;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * A DataLoader-style loader that batches point lookups on a single table column.
+ * <p>
+ * Every {@link #load(Object)} call registers a key and returns a future. Keys collected within a short window,
+ * or until the batch reaches its maximum size, are resolved with a single
+ * {@code SELECT ... FROM table WHERE column IN (...)} query, and the fetched rows are split back out to the
+ * future of each requested key. Repeated keys within the same batch share the same future.
+ * </p>
+ * <p>
+ * Batches are dispatched one at a time on a dedicated thread, so the underlying {@link SQLAdapter} connection is
+ * never used concurrently by the loader itself.
+ * </p>
+ */
+public class SQLBatchLoader implements AutoCloseable {
+
+    /**
+     * The default maximum number of keys resolved by a single query.
+     */
+    public static final int DEFAULT_MAX_BATCH_SIZE = 500;
+
+    /**
+     * The default time, in milliseconds, a batch waits for more keys before being dispatched.
+     */
+    public static final long DEFAULT_WINDOW_MILLIS = 2;
+
+    private final SQLAdapter adapter;
+    private final String table;
+    private final String keyColumn;
+    private final String keyLabel;
+    private final String[] columns;
+    private final int maxBatchSize;
+    private final long windowMillis;
+    private final ScheduledExecutorService dispatcher;
+
+    private Map<Object, CompletableFuture<List<Map<String, Object>>>> pending = new LinkedHashMap<>();
+    private ScheduledFuture<?> scheduledDispatch;
+    private boolean closed;
+
+    /**
+     * Constructs a loader with the default batch size and window.
+     *
+     * @param adapter   The adapter used to execute the batched queries.
+     * @param table     The table to look rows up in.
+     * @param keyColumn The column the lookups are made on.
+     * @param columns   The columns to select, or none to select every column.
+     */
+    public SQLBatchLoader(SQLAdapter adapter, String table, String keyColumn, String... columns) {
+        this(adapter, table, keyColumn, DEFAULT_MAX_BATCH_SIZE, DEFAULT_WINDOW_MILLIS, columns);
+    }
+
+    /**
+     * Constructs a loader.
+     *
+     * @param adapter      The adapter used to execute the batched queries.
+     * @param table        The table to look rows up in.
+     * @param keyColumn    The column the lookups are made on.
+     * @param maxBatchSize The maximum number of keys resolved by a single query.
+     * @param windowMillis The time a batch waits for more keys before being dispatched.
+     * @param columns      The columns to select, or none to select every column.
+     */
+    public SQLBatchLoader(SQLAdapter adapter, String table, String keyColumn, int maxBatchSize, long windowMillis, String... columns) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("The maximum batch size must be greater than 0.");
+        }
+        this.adapter = adapter;
+        this.table = table;
+        this.keyColumn = keyColumn;
+        this.keyLabel = keyColumn.substring(keyColumn.lastIndexOf('.') + 1).replace("`", "");
+        this.maxBatchSize = maxBatchSize;
+        this.windowMillis = Math.max(0, windowMillis);
+
+        // The key column must be part of the projection to split the rows back out
+        if (columns.length > 0 && !Arrays.asList(columns).contains(keyColumn)) {
+            this.columns = Arrays.copyOf(columns, columns.length + 1);
+            this.columns[columns.length] = keyColumn;
+        } else {
+            this.columns = columns;
+        }
+
+        ScheduledThreadPoolExecutor dispatcher = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "sql-batch-loader-" + table);
+            thread.setDaemon(true);
+            return thread;
+        });
+        // A cancelled or still delayed dispatch must not hold close() until its window elapses
+        dispatcher.setRemoveOnCancelPolicy(true);
+        dispatcher.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        this.dispatcher = dispatcher;
+    }
+
+    /**
+     * Requests the rows matching the given key.
+     *
+     * @param key The value of the key column to look up.
+     * @return A future completed with the matching rows, empty if none matched.
+     */
+    public CompletableFuture<List<Map<String, Object>>> load(Object key) {
+        Object normalizedKey = normalize(key);
+        Map<Object, CompletableFuture<List<Map<String, Object>>>> batch = null;
+        CompletableFuture<List<Map<String, Object>>> future;
+
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("The batch loader is closed.");
+            }
+            future = pending.get(normalizedKey);
+            if (future != null) {
+                return future;
+            }
+            future = new CompletableFuture<>();
+            pending.put(normalizedKey, future);
+
+            if (pending.size() >= maxBatchSize) {
+                batch = takePending();
+            } else if (scheduledDispatch == null) {
+                scheduledDispatch = dispatcher.schedule(this::dispatchPending, windowMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        if (batch != null) {
+            Map<Object, CompletableFuture<List<Map<String, Object>>>> fullBatch = batch;
+            dispatcher.execute(() -> dispatch(fullBatch));
+        }
+        return future;
+    }
+
+    /**
+     * Requests the rows matching each of the given keys.
+     *
+     * @param keys The values of the key column to look up.
+     * @return The futures of each key, in the order of the given keys.
+     */
+    public List<CompletableFuture<List<Map<String, Object>>>> loadMany(Collection<?> keys) {
+        List<CompletableFuture<List<Map<String, Object>>>> futures = new ArrayList<>(keys.size());
+        for (Object key : keys) {
+            futures.add(load(key));
+        }
+        return futures;
+    }
+
+    /**
+     * Dispatches the keys collected so far without waiting for the window to elapse.
+     */
+    public void flush() {
+        dispatcher.execute(this::dispatchPending);
+    }
+
+    /**
+     * Dispatches the pending keys and stops the loader once every batch has been resolved.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (scheduledDispatch != null) {
+                scheduledDispatch.cancel(false);
+                scheduledDispatch = null;
+            }
+        }
+        dispatcher.execute(this::dispatchPending);
+        dispatcher.shutdown();
+        try {
+            dispatcher.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Takes the current pending batch, leaving an empty one for the next keys.
+     *
+     * @return The pending keys and their futures.
+     */
+    private synchronized Map<Object, CompletableFuture<List<Map<String, Object>>>> takePending() {
+        Map<Object, CompletableFuture<List<Map<String, Object>>>> batch = pending;
+        pending = new LinkedHashMap<>();
+        if (scheduledDispatch != null) {
+            scheduledDispatch.cancel(false);
+            scheduledDispatch = null;
+        }
+        return batch;
+    }
+
+    private void dispatchPending() {
+        Map<Object, CompletableFuture<List<Map<String, Object>>>> batch = takePending();
+        if (!batch.isEmpty()) {
+            dispatch(batch);
+        }
+    }
+
+    /**
+     * Resolves a batch of keys with a single IN query and completes their futures.
+     *
+     * @param batch The keys to resolve and their futures.
+     */
+    private void dispatch(Map<Object, CompletableFuture<List<Map<String, Object>>>> batch) {
+        try {
+            Query query = adapter.getBuilder()
+                    .select(columns)
+                    .from(table)
+                    .where(Where.in(keyColumn, new ArrayList<>(batch.keySet())))
+                    .build();
+
+            Map<Object, List<Map<String, Object>>> rowsByKey = new HashMap<>();
+            for (Map<String, Object> row : adapter.fetch(query)) {
+                rowsByKey.computeIfAbsent(normalize(row.get(keyLabel)), k -> new ArrayList<>()).add(row);
+            }
+            for (Map.Entry<Object, CompletableFuture<List<Map<String, Object>>>> entry : batch.entrySet()) {
+                entry.getValue().complete(rowsByKey.getOrDefault(entry.getKey(), Collections.emptyList()));
+            }
+        } catch (Throwable e) {
+            batch.values().forEach(future -> future.completeExceptionally(e));
+        }
+    }
+
+    /**
+     * Normalizes integral keys to {@link Long} so the requested keys match the values returned by the driver.
+     *
+     * @param key The key to normalize.
+     * @return The normalized key.
+     */
+    static Object normalize(Object key) {
+        if (key instanceof Integer || key instanceof Long || key instanceof Short || key instanceof Byte || key instanceof BigInteger) {
+            return ((Number) key).longValue();
+        }
+        return key;
+    }
+}
@@ -1,15 +1,20 @@
 package sql;
 
 import core.QueryBuilder;
+import core.clauses.Aggregate;
+import core.clauses.IndexHint;
+import core.clauses.Join;
+import core.clauses.Limit;
 import core.clauses.OrderBy;
 import core.clauses.Where;
+import core.queries.AbstractSelectQuery;
+import core.queries.Query;
 import sql.queries.SQLDeleteQuery;
 import sql.queries.SQLInsertQuery;
 import sql.queries.SQLSelectQuery;
 import sql.queries.SQLUpdateQuery;
 
-import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.*;
 
 /**
  * SQLQueryBuilder is an implementation of the QueryBuilder interface for building SQL queries.
@@ -28,34 +33,121 @@ public final class SQLQueryBuilder implements QueryBuilder {
         return new SQLSelectQuery(args) {
             @Override
             public SQLSelectQuery build() {
-                StringBuilder sql = new StringBuilder();
+                QueryBuildEvent event = new QueryBuildEvent();
+                event.begin();
+                StringBuilder sql = render(renderBuffer(), null, true, this.limit);
+                setNativeQuery(sql);
+                event.complete("SELECT", sql, this.parameters.size());
+                return this;
+            }
+
+            @Override
+            public String buildCount() {
+                if (this.groupBy.isEmpty() && this.having.isEmpty() && !this.limit.isPresent()) {
+                    return render(new StringBuilder(), "COUNT(*)", false, Optional.empty()).toString();
+                }
+                // Groups and limits must be applied before counting the rows
+                return render(new StringBuilder("SELECT COUNT(*) FROM ("), null, false, this.limit).append(") AS counted").toString();
+            }
+
+            @Override
+            public String buildExists() {
+                return render(new StringBuilder(), "1", false, Optional.of(new Limit(1))).toString();
+            }
+
+            @Override
+            public String buildFirst() {
+                return render(new StringBuilder(), null, true, Optional.of(new Limit(1))).toString();
+            }
+
+            /**
+             * Renders the query, optionally overriding its projection, ordering and limit.
+             *
+             * @param sql        The buffer the native SQL is appended to.
+             * @param projection The projection replacing the selected columns, or {@code null} to keep them.
+             * @param ordered    Whether the ORDER BY clause is rendered.
+             * @param limit      The LIMIT clause to render.
+             * @return The buffer holding the native SQL of the query.
+             */
+            private StringBuilder render(StringBuilder sql, String projection, boolean ordered, Optional<Limit> limit) {
                 sql.append("SELECT ");
-                if (this.args.isEmpty()) {
+                if (!this.optimizerHints.isEmpty()) {
+                    sql.append("/*+ ");
+                    for (int i = 0; i < this.optimizerHints.size(); i++) {
+                        if (i > 0) sql.append(" ");
+                        sql.append(this.optimizerHints.get(i).getExpression());
+                    }
+                    sql.append(" */ ");
+                }
+                if (this.straightJoin) {
+                    sql.append("STRAIGHT_JOIN ");
+                }
+                if (this.sqlNoCache) {
+                    sql.append("SQL_NO_CACHE ");
+                }
+                if (projection != null) {
+                    sql.append(projection);
+                } else if (this.args.isEmpty() && this.aggregates.isEmpty()) {
                     sql.append("*");
                 } else {
-                    sql.append(String.join(", ", args));
+                    for (int i = 0; i < this.args.size(); i++) {
+                        if (i > 0) sql.append(", ");
+                        sql.append(this.args.get(i));
+                    }
+                    for (int i = 0; i < this.aggregates.size(); i++) {
+                        if (i > 0 || !this.args.isEmpty()) sql.append(", ");
+                        appendClause(sql, this.aggregates.get(i));
+                    }
                 }
                 if (!targets.isEmpty()) {
                     sql.append(" FROM ");
-                    sql.append(targets.entrySet().stream()
-                            .map(entry -> entry.getValue() == null ? entry.getKey() : entry.getKey() + " AS " + entry.getValue())
-                            .collect(Collectors.joining(", ")));
+                    int i = 0;
+                    for (Map.Entry<String, String> target : targets.entrySet()) {
+                        if (i++ > 0) sql.append(", ");
+                        sql.append(target.getKey());
+                        if (target.getValue() != null) {
+                            sql.append(" AS ").append(target.getValue());
+                        }
+                        appendIndexHints(sql, target.getKey(), this.indexHints);
+                    }
+                }
+                for (Join join : this.joins) {
+                    sql.append(" ").append(join.getType().getValue()).append(" ").append(join.getTable());
+                    if (join.getAlias().isPresent()) {
+                        sql.append(" AS ").append(join.getAlias().get());
+                    }
+                    appendIndexHints(sql, join.getTable(), this.indexHints);
+                    sql.append(" ON ");
+                    appendClause(sql, join.getOn(), null);
                 }
                 if (!wheres.isEmpty()) {
                     sql.append(" WHERE ");
                     for (int i = 0; i < wheres.size(); i++) {
                         if (i > 0) sql.append(" AND ");
-                        sql.append(buildClause(wheres.get(i)));
+                        appendClause(sql, wheres.get(i), null);
                     }
                 }
-                if (!this.orderBy.isEmpty()) {
-                    sql.append(" ORDER BY ").append(String.join(" , ", this.orderBy.stream().map(e -> buildClause(e)).collect(Collectors.toList())));
+                if (!this.groupBy.isEmpty()) {
+                    sql.append(" GROUP BY ");
+                    for (int i = 0; i < this.groupBy.size(); i++) {
+                        if (i > 0) sql.append(", ");
+                        sql.append(this.groupBy.get(i));
+                    }
                 }
-                if (this.limit.isPresent()) {
-                    sql.append(" LIMIT ").append(String.valueOf(this.limit.get().getAmount()));
+                if (!this.having.isEmpty()) {
+                    sql.append(" HAVING ");
+                    for (int i = 0; i < this.having.size(); i++) {
+                        if (i > 0) sql.append(" AND ");
+                        appendClause(sql, this.having.get(i), null);
+                    }
                 }
-                this.nativeQuery = Optional.of(sql);
-                return this;
+                if (ordered && !this.orderBy.isEmpty()) {
+                    appendOrderBy(sql, this.orderBy);
+                }
+                if (limit.isPresent()) {
+                    sql.append(" LIMIT ").append(limit.get().getAmount());
+                }
+                return sql;
             }
         };
     }
@@ -71,24 +163,75 @@ public final class SQLQueryBuilder implements QueryBuilder {
         return new SQLUpdateQuery(table) {
             @Override
             public SQLUpdateQuery build() {
-                StringBuilder sql = new StringBuilder();
+                QueryBuildEvent event = new QueryBuildEvent();
+                event.begin();
+                StringBuilder sql = renderBuffer();
+                this.parameters.clear();
                 sql.append("UPDATE ").append(table).append(" SET ");
-                sql.append(this.wheres.stream()
-                        .map(entry -> entry.getValue() + " = ?")
-                        .collect(Collectors.joining(", ")));
-                if (!wheres.isEmpty()) {
+                if (!this.keyedSetters.isEmpty()) {
+                    appendKeyedSetters(sql, this.keyColumn.get(), this.keyedSetters, this.parameters);
+                    if (!this.setters.isEmpty()) {
+                        sql.append(", ");
+                    }
+                }
+                int i = 0;
+                for (Map.Entry<String, Object> setter : this.setters.entrySet()) {
+                    if (i++ > 0) sql.append(", ");
+                    sql.append(setter.getKey()).append(" = ");
+                    appendValue(sql, setter.getValue(), this.parameters);
+                }
+                if (!wheres.isEmpty() || !this.keyedSetters.isEmpty()) {
                     sql.append(" WHERE ");
-                    for (int i = 0; i < wheres.size(); i++) {
-                        if (i > 0) sql.append(" AND ");
-                        sql.append(buildClause(wheres.get(i)));
+                    if (!this.keyedSetters.isEmpty()) {
+                        sql.append(this.keyColumn.get()).append(" IN (");
+                        appendValues(sql, this.keyedSetters.keySet(), this.parameters);
+                        sql.append(")");
+                    }
+                    for (int j = 0; j < wheres.size(); j++) {
+                        if (j > 0 || !this.keyedSetters.isEmpty()) sql.append(" AND ");
+                        appendClause(sql, wheres.get(j), this.parameters);
                     }
                 }
-                this.nativeQuery = Optional.of(sql);
+                setNativeQuery(sql);
+                event.complete("UPDATE", sql, this.parameters.size());
                 return this;
             }
         };
     }
 
+    /**
+     * Builds the chunks of a keyed bulk UPDATE, each one updating up to {@code chunkSize} rows to their own values.
+     *
+     * @param table     The table to update.
+     * @param keyColumn The column identifying the rows.
+     * @param rows      A map of key values to the column-value pairs to set on the row holding that key.
+     * @param chunkSize The maximum number of rows updated by a single statement.
+     * @return The built UPDATE queries, one per chunk.
+     */
+    public List<SQLUpdateQuery> updateByKey(String table, String keyColumn, Map<?, Map<String, Object>> rows, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("The chunk size must be greater than 0.");
+        }
+        List<SQLUpdateQuery> chunks = new ArrayList<>();
+        SQLUpdateQuery chunk = null;
+        int chunkRows = 0;
+        for (Map.Entry<?, Map<String, Object>> row : rows.entrySet()) {
+            if (chunk == null) {
+                chunk = update(table);
+            }
+            chunk.setByKey(keyColumn, row.getKey(), row.getValue());
+            if (++chunkRows == chunkSize) {
+                chunks.add((SQLUpdateQuery) chunk.build());
+                chunk = null;
+                chunkRows = 0;
+            }
+        }
+        if (chunk != null) {
+            chunks.add((SQLUpdateQuery) chunk.build());
+        }
+        return chunks;
+    }
+
     /**
      * Builds a DELETE query.
      *
@@ -100,16 +243,29 @@ public final class SQLQueryBuilder implements QueryBuilder {
         return new SQLDeleteQuery(table) {
             @Override
             public SQLDeleteQuery build() {
-                StringBuilder sql = new StringBuilder();
-                sql.append("DELETE FROM ").append(table);
+                QueryBuildEvent event = new QueryBuildEvent();
+                event.begin();
+                StringBuilder sql = renderBuffer();
+                this.parameters.clear();
+                sql.append("DELETE FROM ").append(this.target.orElse(table));
+                if (this.alias.isPresent()) {
+                    sql.append(" AS ").append(this.alias.get());
+                }
                 if (!this.wheres.isEmpty()) {
                     sql.append(" WHERE ");
                     for (int i = 0; i < this.wheres.size(); i++) {
                         if (i > 0) sql.append(" AND ");
-                        sql.append(buildClause(wheres.get(i)));
+                        appendClause(sql, wheres.get(i), this.parameters);
                     }
                 }
-                this.nativeQuery = Optional.of(sql);
+                if (!this.orderBy.isEmpty()) {
+                    appendOrderBy(sql, this.orderBy);
+                }
+                if (this.limit.isPresent()) {
+                    sql.append(" LIMIT ").append(this.limit.get().getAmount());
+                }
+                setNativeQuery(sql);
+                event.complete("DELETE", sql, this.parameters.size());
                 return this;
             }
         };
@@ -125,112 +281,339 @@ public final class SQLQueryBuilder implements QueryBuilder {
         return new SQLInsertQuery() {
             @Override
             public SQLInsertQuery build() {
-                StringBuilder sql = new StringBuilder();
-                sql.append("INSERT INTO ").append(this.target).append(" (");
-                sql.append(String.join(", ", this.values.keySet()));
-                sql.append(") VALUES (");
-                sql.append(this.values.values().stream().map(v -> "?").collect(Collectors.joining(", ")));
-                sql.append(")");
-                this.nativeQuery = Optional.of(sql);
+                QueryBuildEvent event = new QueryBuildEvent();
+                event.begin();
+                StringBuilder sql = renderBuffer();
+                this.parameters.clear();
+                Collection<String> columns = this.values.keySet();
+                if (!this.rows.isEmpty()) {
+                    Set<String> union = new LinkedHashSet<>(columns);
+                    this.rows.forEach(row -> union.addAll(row.keySet()));
+                    columns = union;
+                }
+
+                sql.append("INSERT INTO ").append(this.target.orElse("")).append(" (");
+                int i = 0;
+                for (String column : columns) {
+                    if (i++ > 0) sql.append(", ");
+                    sql.append(column);
+                }
+                sql.append(") VALUES ");
+                appendRow(sql, columns, this.values, this.parameters);
+                for (Map<String, Object> row : this.rows) {
+                    sql.append(", ");
+                    appendRow(sql, columns, row, this.parameters);
+                }
+                setNativeQuery(sql);
+                event.complete("INSERT", sql, this.parameters.size());
                 return this;
             }
         };
     }
 
     /**
-     * Builds a WHERE clause based on the provided condition.
+     * Builds the chunks of a bulk INSERT, each one a multi-row INSERT of up to {@code chunkSize} rows.
+     *
+     * @param table     The table to insert into.
+     * @param rows      The column-value pairs of each row, in order.
+     * @param chunkSize The maximum number of rows inserted by a single statement.
+     * @return The built INSERT queries, one per chunk, in the order of the rows.
+     */
+    public List<SQLInsertQuery> insertInChunks(String table, List<Map<String, Object>> rows, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("The chunk size must be greater than 0.");
+        }
+        List<SQLInsertQuery> chunks = new ArrayList<>();
+        for (int from = 0; from < rows.size(); from += chunkSize) {
+            SQLInsertQuery chunk = insert().into(table);
+            for (Map<String, Object> row : rows.subList(from, Math.min(rows.size(), from + chunkSize))) {
+                chunk.row(row);
+            }
+            chunks.add((SQLInsertQuery) chunk.build());
+        }
+        return chunks;
+    }
+
+    /**
+     * Appends a row of a multi-row INSERT, rendering the columns it does not set as {@code DEFAULT}.
      *
-     * @param where The Where object containing the condition.
-     * @return The string representation of the WHERE clause.
+     * @param sql        The SQL being built.
+     * @param columns    The columns of the insert, in order.
+     * @param row        The column-value pairs of the row.
+     * @param parameters The parameters of the query, receiving the values of the row in order.
      */
-    private String buildClause(Where where) {
-        StringBuilder sb = new StringBuilder();
-        if (where.getOperator() == Where.Operator.RAW) {
-            sb.append(where.getRawExpression());
+    private void appendRow(StringBuilder sql, Collection<String> columns, Map<String, Object> row, List<Object> parameters) {
+        sql.append("(");
+        int i = 0;
+        for (String column : columns) {
+            if (i++ > 0) sql.append(", ");
+            if (row.containsKey(column)) {
+                appendValue(sql, row.get(column), parameters);
+            } else {
+                sql.append("DEFAULT");
+            }
+        }
+        sql.append(")");
+    }
+
+    /**
+     * Appends the index hints attached to a table of the FROM clause.
+     *
+     * @param sql        The SQL being built.
+     * @param table      The table name.
+     * @param indexHints The index hints of the query.
+     */
+    private void appendIndexHints(StringBuilder sql, String table, List<IndexHint> indexHints) {
+        for (IndexHint hint : indexHints) {
+            if (hint.getTable().equals(table)) {
+                sql.append(" ").append(hint.getType().getValue())
+                        .append(" (").append(String.join(", ", hint.getIndexes())).append(")");
+            }
+        }
+    }
+
+    /**
+     * Appends the CASE expressions of a keyed bulk UPDATE, one per updated column.
+     * <p>
+     * Rows that do not set a column keep their current value through an {@code ELSE} branch.
+     * </p>
+     *
+     * @param sql          The SQL being built.
+     * @param keyColumn    The column identifying the rows.
+     * @param keyedSetters A map of key values to the column-value pairs to set on the row holding that key.
+     * @param parameters   The parameters of the query, receiving the keys and values in order.
+     */
+    private void appendKeyedSetters(StringBuilder sql, String keyColumn, Map<Object, Map<String, Object>> keyedSetters, List<Object> parameters) {
+        Set<String> columns = new LinkedHashSet<>();
+        keyedSetters.values().forEach(values -> columns.addAll(values.keySet()));
+
+        int column = 0;
+        for (String name : columns) {
+            if (column++ > 0) sql.append(", ");
+            sql.append(name).append(" = CASE ").append(keyColumn);
+            boolean everyRowSet = true;
+            for (Map.Entry<Object, Map<String, Object>> row : keyedSetters.entrySet()) {
+                if (!row.getValue().containsKey(name)) {
+                    everyRowSet = false;
+                    continue;
+                }
+                sql.append(" WHEN ");
+                appendValue(sql, row.getKey(), parameters);
+                sql.append(" THEN ");
+                appendValue(sql, row.getValue().get(name), parameters);
+            }
+            if (!everyRowSet) {
+                sql.append(" ELSE ").append(name);
+            }
+            sql.append(" END");
+        }
+    }
+
+    /**
+     * Appends a WHERE clause based on the provided condition.
+     *
+     * @param sql        The SQL being built.
+     * @param where      The Where object containing the condition.
+     * @param parameters The parameters receiving the values of the condition in place of placeholders,
+     *                   or {@code null} to inline the values.
+     */
+    private void appendClause(StringBuilder sql, Where where, List<Object> parameters) {
+        if (where.getLogicalOperator() != null) {
+            sql.append("(");
+            appendClause(sql, where.getLeft(), parameters);
+            sql.append(" ").append(where.getLogicalOperator().name()).append(" ");
+            appendClause(sql, where.getRight(), parameters);
+            sql.append(")");
+        } else if (where.getOperator() == Where.Operator.RAW) {
+            sql.append(where.getRawExpression());
+        } else if (where.getSubquery() != null) {
+            if (where.getField() != null) {
+                sql.append(where.getField()).append(" ");
+            }
+            switch (where.getOperator()) {
+                case IN:
+                    sql.append("IN (");
+                    break;
+                case NOT_IN:
+                    sql.append("NOT IN (");
+                    break;
+                case EXISTS:
+                    sql.append("EXISTS (");
+                    break;
+                case NOT_EXISTS:
+                    sql.append("NOT EXISTS (");
+                    break;
+            }
+            sql.append(buildSubquery(where.getSubquery(), parameters)).append(")");
         } else {
-            sb.append(where.getField());
+            sql.append(where.getField());
             switch (where.getOperator()) {
                 case EQUAL:
-                    sb.append(" = ").append(formatValue(where.getValue()));
+                    sql.append(" = ");
+                    appendValue(sql, where.getValue(), parameters);
                     break;
                 case NOT_EQUAL:
-                    sb.append(" != ").append(formatValue(where.getValue()));
+                    sql.append(" != ");
+                    appendValue(sql, where.getValue(), parameters);
                     break;
                 case GREATER_THAN:
-                    sb.append(" > ").append(formatValue(where.getValue()));
+                    sql.append(" > ");
+                    appendValue(sql, where.getValue(), parameters);
                     break;
                 case GREATER_THAN_OR_EQUAL:
-                    sb.append(" >= ").append(formatValue(where.getValue()));
+                    sql.append(" >= ");
+                    appendValue(sql, where.getValue(), parameters);
                     break;
                 case LESS_THAN:
-                    sb.append(" < ").append(formatValue(where.getValue()));
+                    sql.append(" < ");
+                    appendValue(sql, where.getValue(), parameters);
                     break;
                 case LESS_THAN_OR_EQUAL:
-                    sb.append(" <= ").append(formatValue(where.getValue()));
+                    sql.append(" <= ");
+                    appendValue(sql, where.getValue(), parameters);
                     break;
                 case IS_NULL:
-                    sb.append(" IS NULL");
+                    sql.append(" IS NULL");
                     break;
                 case IS_NOT_NULL:
-                    sb.append(" IS NOT NULL");
+                    sql.append(" IS NOT NULL");
                     break;
                 case IN:
-                    sb.append(" IN (")
-                            .append(where.getValues().stream()
-                                    .map(this::formatValue)
-                                    .collect(Collectors.joining(", ")))
-                            .append(")");
+                    sql.append(" IN (");
+                    appendValues(sql, where.getValues(), parameters);
+                    sql.append(")");
                     break;
                 case NOT_IN:
-                    sb.append(" NOT IN (")
-                            .append(where.getValues().stream()
-                                    .map(this::formatValue)
-                                    .collect(Collectors.joining(", ")))
-                            .append(")");
+                    sql.append(" NOT IN (");
+                    appendValues(sql, where.getValues(), parameters);
+                    sql.append(")");
                     break;
                 case BETWEEN:
-                    sb.append(" BETWEEN ")
-                            .append(formatValue(where.getValues().get(0)))
-                            .append(" AND ")
-                            .append(formatValue(where.getValues().get(1)));
+                    sql.append(" BETWEEN ");
+                    appendValue(sql, where.getValue(), parameters);
+                    sql.append(" AND ");
+                    appendValue(sql, where.getSecondValue(), parameters);
                     break;
                 case LIKE:
-                    sb.append(" LIKE ").append(formatValue(where.getValue()));
+                    sql.append(" LIKE ");
+                    appendValue(sql, where.getValue(), parameters);
                     break;
                 case NOT_LIKE:
-                    sb.append(" NOT LIKE ").append(formatValue(where.getValue()));
+                    sql.append(" NOT LIKE ");
+                    appendValue(sql, where.getValue(), parameters);
+                    break;
+                case COLUMN_EQUAL:
+                    sql.append(" = ").append(where.getValue());
                     break;
             }
         }
-        return sb.toString();
     }
 
     /**
-     * Builds a OrderBy clause based on the provided instance.
+     * Builds a subquery to render inline, merging its parameters into those of the enclosing query.
+     *
+     * @param subquery   The nested SELECT query.
+     * @param parameters The parameters of the enclosing query, or {@code null} if its values are inlined.
+     * @return The native SQL of the subquery.
+     */
+    private String buildSubquery(AbstractSelectQuery<?> subquery, List<Object> parameters) {
+        Query<?> built = subquery.build();
+        if (!built.getParameters().isEmpty()) {
+            if (parameters == null) {
+                throw new IllegalStateException("A subquery with bound parameters cannot be inlined.");
+            }
+            parameters.addAll(built.getParameters());
+        }
+        return built.getNativeQuery();
+    }
+
+    /**
+     * Appends an ORDER BY clause listing the provided sorting args.
+     *
+     * @param sql     The SQL being built.
+     * @param orderBy The OrderBy objects containing the sorting args.
+     */
+    private void appendOrderBy(StringBuilder sql, List<OrderBy> orderBy) {
+        sql.append(" ORDER BY ");
+        for (int i = 0; i < orderBy.size(); i++) {
+            if (i > 0) sql.append(" , ");
+            sql.append(orderBy.get(i).getColumnOrExpression()).append(" ")
+                    .append(orderBy.get(i).getDirection().orElse(OrderBy.OrderDirection.ASC).getValue());
+        }
+    }
+
+    /**
+     * Appends values separated by commas, each either as a placeholder or inlined as a literal.
+     *
+     * @param sql        The SQL being built.
+     * @param values     The values to render.
+     * @param parameters The parameters of the query, or {@code null} to inline the values.
+     */
+    private void appendValues(StringBuilder sql, Collection<?> values, List<Object> parameters) {
+        int i = 0;
+        for (Object value : values) {
+            if (i++ > 0) sql.append(", ");
+            appendValue(sql, value, parameters);
+        }
+    }
+
+    /**
+     * Appends a value either as a placeholder, recording it into the given parameters, or inlined as a literal.
+     *
+     * @param sql        The SQL being built.
+     * @param value      The value to render.
+     * @param parameters The parameters of the query, or {@code null} to inline the value.
+     */
+    private void appendValue(StringBuilder sql, Object value, List<Object> parameters) {
+        if (parameters == null) {
+            appendLiteral(sql, value);
+        } else {
+            parameters.add(value);
+            sql.append("?");
+        }
+    }
+
+    /**
+     * Appends an aggregate projection based on the provided instance.
      *
-     * @param orderBy The OrderBy object containing the sorting args.
-     * @return The string representation of the OrderBy clause.
+     * @param sql       The SQL being built.
+     * @param aggregate The Aggregate object containing the function and its column.
      */
-    private String buildClause(OrderBy orderBy) {
-        return orderBy.getColumnOrExpression().concat(" ").concat(orderBy.getDirection().orElse(OrderBy.OrderDirection.ASC).getValue());
+    private void appendClause(StringBuilder sql, Aggregate aggregate) {
+        if (aggregate.getFunction() == Aggregate.Function.COUNT_DISTINCT) {
+            sql.append("COUNT(DISTINCT ").append(aggregate.getColumn()).append(")");
+        } else {
+            sql.append(aggregate.getFunction().name()).append("(").append(aggregate.getColumn()).append(")");
+        }
+        if (aggregate.getAlias().isPresent()) {
+            sql.append(" AS ").append(aggregate.getAlias().get());
+        }
     }
 
     /**
-     * Formats the value for SQL queries.
+     * Appends a value formatted as an SQL literal.
      *
+     * @param sql   The SQL being built.
      * @param value The value to format.
-     * @return The formatted value as a string.
      */
-    private String formatValue(Object value) {
-        if (value instanceof Number) {
-            return value.toString();
+    private void appendLiteral(StringBuilder sql, Object value) {
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            sql.append(((Number) value).longValue());
+        } else if (value instanceof Number) {
+            sql.append(value);
         } else if (value instanceof Boolean) {
-            return (Boolean) value ? "true" : "false";
+            sql.append((Boolean) value ? "true" : "false");
         } else if (value == null) {
-            return "NULL";
+            sql.append("NULL");
         } else {
-            String str = value.toString().replace("'", "''");
-            return "'" + str + "'";
+            String str = value.toString();
+            sql.append("'");
+            for (int i = 0; i < str.length(); i++) {
+                char c = str.charAt(i);
+                if (c == '\'') sql.append('\'');
+                sql.append(c);
+            }
+            sql.append("'");
         }
     }
 }
@@ -0,0 +1,214 @@
+package sql;
+
+import core.exceptions.ConnectionClosedException;
+import core.queries.Query;
+
+import java.sql.*;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link Flow.Publisher} streaming the rows of a SELECT query with backpressure.
+ * <p>
+ * The statement is only executed once the subscriber signals its first demand, and rows are then read from the
+ * {@link ResultSet} only as they are requested: nothing beyond the outstanding demand is read ahead on the client
+ * side. The JDBC fetch size follows the outstanding demand (capped to {@link #MAX_FETCH_SIZE}) so the driver does not
+ * pull more rows over the wire than the subscriber is ready to consume. Cancelling the subscription closes the
+ * cursor and its statement.
+ * </p>
+ * <p>
+ * Note that some drivers ignore the fetch size unless explicitly configured for it, e.g. MySQL requires
+ * {@code useCursorFetch=true} on the connection URL.
+ * </p>
+ * <p>
+ * A publisher holds a single cursor, hence it accepts a single subscriber.
+ * </p>
+ */
+public class SQLRowPublisher implements Flow.Publisher<Map<String, Object>> {
+
+    /**
+     * The upper bound of the fetch size derived from the subscriber demand.
+     */
+    public static final int MAX_FETCH_SIZE = 1000;
+
+    private final SQLAdapter adapter;
+    private final Query query;
+    private final Executor executor;
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    /**
+     * Constructs a publisher for the given built query.
+     *
+     * @param adapter  The adapter whose connection the query is executed on.
+     * @param query    The built SELECT query.
+     * @param executor The executor rows are read and emitted on.
+     */
+    SQLRowPublisher(SQLAdapter adapter, Query query, Executor executor) {
+        this.adapter = adapter;
+        this.query = query;
+        this.executor = executor;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super Map<String, Object>> subscriber) {
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("The publisher accepts a single subscriber."));
+            return;
+        }
+        subscriber.onSubscribe(new RowSubscription(subscriber));
+    }
+
+    /**
+     * The subscription reading rows on demand.
+     * <p>
+     * Signals are serialized through a work-in-progress counter so the cursor is only ever touched by one
+     * draining thread at a time, whatever thread {@link #request(long)} or {@link #cancel()} are called from.
+     * </p>
+     */
+    private final class RowSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super Map<String, Object>> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile Throwable invalidRequest;
+        private boolean done;
+
+        private Statement statement;
+        private ResultSet resultSet;
+        private ResultShape shape;
+
+        RowSubscription(Flow.Subscriber<? super Map<String, Object>> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                invalidRequest = new IllegalArgumentException("The requested amount must be greater than 0.");
+            } else {
+                long current;
+                do {
+                    current = demand.get();
+                } while (!demand.compareAndSet(current, current + n < 0 ? Long.MAX_VALUE : current + n));
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            schedule();
+        }
+
+        private void schedule() {
+            if (wip.getAndIncrement() == 0) {
+                executor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            int missed = 1;
+            do {
+                if (done) {
+                    return;
+                }
+                if (cancelled) {
+                    terminate();
+                    return;
+                }
+                if (invalidRequest != null) {
+                    terminate();
+                    subscriber.onError(invalidRequest);
+                    return;
+                }
+
+                long requested = demand.get();
+                long emitted = 0;
+                try {
+                    if (requested > 0 && resultSet == null) {
+                        open(requested);
+                    } else if (requested > 0) {
+                        resultSet.setFetchSize(fetchSizeFor(requested));
+                    }
+                    while (emitted != requested && !cancelled) {
+                        if (!resultSet.next()) {
+                            terminate();
+                            subscriber.onComplete();
+                            return;
+                        }
+                        subscriber.onNext(shape.read(resultSet));
+                        emitted++;
+                    }
+                } catch (Throwable e) {
+                    terminate();
+                    if (!cancelled) {
+                        subscriber.onError(e);
+                    }
+                    return;
+                }
+
+                if (requested != Long.MAX_VALUE) {
+                    demand.addAndGet(-emitted);
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        /**
+         * Executes the query with a fetch size matching the initial demand.
+         *
+         * @param requested The demand at the time the cursor is opened.
+         * @throws SQLException If the query cannot be executed.
+         */
+        private void open(long requested) throws SQLException {
+            Connection connection = adapter.getConnection();
+            if (connection.isClosed()) {
+                throw new ConnectionClosedException("The database connection is closed.");
+            }
+            statement = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSizeFor(requested));
+            resultSet = statement.executeQuery(query.getNativeQuery());
+            shape = adapter.shapeOf(query.getNativeQuery(), resultSet.getMetaData());
+        }
+
+        private int fetchSizeFor(long requested) {
+            return (int) Math.max(1, Math.min(requested, MAX_FETCH_SIZE));
+        }
+
+        /**
+         * Releases the cursor and its statement; the subscription is terminal afterwards.
+         */
+        private void terminate() {
+            done = true;
+            try {
+                if (resultSet != null) {
+                    resultSet.close();
+                }
+            } catch (SQLException ignored) {
+                // The statement is closed below regardless
+            }
+            try {
+                if (statement != null) {
+                    statement.close();
+                }
+            } catch (SQLException ignored) {
+                // Nothing left to release
+            }
+            resultSet = null;
+            statement = null;
+        }
+    }
+}
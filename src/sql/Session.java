@@ -0,0 +1,315 @@
+package sql;
+
+import core.clauses.Where;
+import core.queries.Query;
+import sql.queries.SQLDeleteQuery;
+import sql.queries.SQLInsertQuery;
+import sql.queries.SQLUpdateQuery;
+
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * A unit of work over an {@link SQLAdapter}, scoped to a single request.
+ * <p>
+ * Rows loaded through a session are kept in an identity map keyed by table and primary key: loading the same row
+ * again returns the same map without querying the database. Loaded rows are mutable, and a snapshot of their
+ * original values is kept so {@link #flush()} only writes the columns that actually changed.
+ * </p>
+ * <p>
+ * Flushing turns the pending changes into INSERT, UPDATE and DELETE statements, executed in that order within a
+ * single transaction. Statements keep the order of the calls that caused them, so persisting a parent row before its
+ * children, or removing children before their parent, satisfies foreign keys. Consecutive identical statements (same
+ * table, same changed columns) are sent as one JDBC batch.
+ * </p>
+ *
+ * <pre>{@code
+ * try (Session session = new Session(adapter)) {
+ *     Map<String, Object> user = session.find("users", "id", 42).orElseThrow();
+ *     user.put("score", 90);
+ *     session.persist("audit", "id", audit);
+ *     session.flush();
+ * }
+ * }</pre>
+ */
+public class Session implements AutoCloseable {
+    private final SQLAdapter adapter;
+    private final Map<EntityKey, Entry> identityMap = new LinkedHashMap<>();
+    private final List<Entry> insertions = new ArrayList<>();
+    private final List<Entry> removals = new ArrayList<>();
+
+    /**
+     * Constructs a session over the given adapter.
+     *
+     * @param adapter The adapter loading and writing rows.
+     */
+    public Session(SQLAdapter adapter) {
+        this.adapter = adapter;
+    }
+
+    /**
+     * Returns the row of a table holding the given primary key, loading it only if it is not managed yet.
+     *
+     * @param table     The table to load the row from.
+     * @param keyColumn The primary key column of the table.
+     * @param key       The primary key of the row.
+     * @return an Optional of the managed row, empty if no row holds that key or it was removed in this session.
+     * @throws SQLException If an SQL exception occurs during execution.
+     */
+    public Optional<Map<String, Object>> find(String table, String keyColumn, Object key) throws SQLException {
+        EntityKey entityKey = new EntityKey(table, key);
+        Entry entry = identityMap.get(entityKey);
+        if (entry != null) {
+            return entry.removed ? Optional.empty() : Optional.of(entry.row);
+        }
+
+        Optional<Map<String, Object>> row = adapter.first(adapter.getBuilder()
+                .select()
+                .from(table)
+                .where(Where.equal(keyColumn, key)));
+        return row.map(loaded -> manage(table, keyColumn, key, loaded).row);
+    }
+
+    /**
+     * Returns the rows of a table holding the given primary keys, loading the ones not managed yet with a single
+     * IN query.
+     *
+     * @param table     The table to load the rows from.
+     * @param keyColumn The primary key column of the table.
+     * @param keys      The primary keys of the rows.
+     * @return The managed rows found, in the order of the given keys.
+     * @throws SQLException If an SQL exception occurs during execution.
+     */
+    public List<Map<String, Object>> findAll(String table, String keyColumn, Collection<?> keys) throws SQLException {
+        List<Object> missing = new ArrayList<>();
+        for (Object key : keys) {
+            if (!identityMap.containsKey(new EntityKey(table, key))) {
+                missing.add(key);
+            }
+        }
+        if (!missing.isEmpty()) {
+            Query query = adapter.getBuilder().select().from(table).where(Where.in(keyColumn, missing)).build();
+            String keyLabel = keyColumn.substring(keyColumn.lastIndexOf('.') + 1).replace("`", "");
+            for (Map<String, Object> loaded : adapter.fetch(query)) {
+                Object key = loaded.get(keyLabel);
+                if (!identityMap.containsKey(new EntityKey(table, key))) {
+                    manage(table, keyColumn, key, loaded);
+                }
+            }
+        }
+
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (Object key : keys) {
+            Entry entry = identityMap.get(new EntityKey(table, key));
+            if (entry != null && !entry.removed) {
+                rows.add(entry.row);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Schedules the insertion of a new row on the next flush.
+     * <p>
+     * A row removed in this session and persisted again is updated instead, as its deletion would only run after
+     * the insertion: the columns the new row does not hold keep their values.
+     * </p>
+     *
+     * @param table     The table to insert the row into.
+     * @param keyColumn The primary key column of the table.
+     * @param row       The column values of the new row.
+     * @return The managed row, further changes to which are inserted as well.
+     */
+    public Map<String, Object> persist(String table, String keyColumn, Map<String, Object> row) {
+        Entry entry = new Entry(table, keyColumn, row.get(keyColumn), new HashMap<>(row));
+        if (entry.key != null) {
+            EntityKey entityKey = new EntityKey(table, entry.key);
+            Entry existing = identityMap.get(entityKey);
+            if (existing != null && !existing.removed) {
+                throw new IllegalStateException("A row of " + table + " with key " + entry.key + " is already managed.");
+            }
+            identityMap.put(entityKey, entry);
+            if (existing != null && removals.remove(existing)) {
+                // Still in the database: every column of the new row is written over it
+                entry.snapshot = new HashMap<>();
+                entry.snapshot.put(keyColumn, entry.key);
+                return entry.row;
+            }
+        }
+        insertions.add(entry);
+        return entry.row;
+    }
+
+    /**
+     * Schedules the deletion of a row on the next flush.
+     *
+     * @param table     The table to delete the row from.
+     * @param keyColumn The primary key column of the table.
+     * @param key       The primary key of the row.
+     */
+    public void remove(String table, String keyColumn, Object key) {
+        EntityKey entityKey = new EntityKey(table, key);
+        Entry entry = identityMap.get(entityKey);
+        if (entry != null && insertions.remove(entry)) {
+            // Never written, nothing to delete
+            identityMap.remove(entityKey);
+            return;
+        }
+        if (entry == null) {
+            entry = new Entry(table, keyColumn, key, new HashMap<>());
+            identityMap.put(entityKey, entry);
+        }
+        if (!entry.removed) {
+            entry.removed = true;
+            removals.add(entry);
+        }
+    }
+
+    /**
+     * Writes the pending insertions, changes and deletions within a single transaction.
+     *
+     * @return The number of rows affected by each executed statement.
+     * @throws SQLException If an SQL exception occurs during execution; the session is left unchanged.
+     */
+    public int[] flush() throws SQLException {
+        SQLQueryBuilder builder = adapter.getBuilder();
+        List<Query> inserts = new ArrayList<>();
+        List<Query> updates = new ArrayList<>();
+        List<Query> deletes = new ArrayList<>();
+        List<Entry> dirty = new ArrayList<>();
+
+        for (Entry entry : insertions) {
+            SQLInsertQuery insert = builder.insert().into(entry.table);
+            new TreeMap<>(entry.row).forEach(insert::value);
+            inserts.add(insert.build());
+        }
+        for (Entry entry : identityMap.values()) {
+            if (entry.snapshot == null || entry.removed) {
+                continue;
+            }
+            SortedMap<String, Object> changes = entry.changes();
+            if (!changes.isEmpty()) {
+                SQLUpdateQuery update = builder.update(entry.table);
+                changes.forEach(update::set);
+                updates.add(update.where(Where.equal(entry.keyColumn, entry.key)).build());
+                dirty.add(entry);
+            }
+        }
+        for (Entry entry : removals) {
+            SQLDeleteQuery delete = builder.delete(entry.table);
+            deletes.add(delete.where(Where.equal(entry.keyColumn, entry.key)).build());
+        }
+
+        List<Query> statements = new ArrayList<>(inserts.size() + updates.size() + deletes.size());
+        statements.addAll(inserts);
+        statements.addAll(updates);
+        statements.addAll(deletes);
+        if (statements.isEmpty()) {
+            return new int[0];
+        }
+
+        int[] affectedRows = adapter.executeBatch(statements);
+
+        for (Entry entry : insertions) {
+            entry.snapshot = new HashMap<>(entry.row);
+        }
+        for (Entry entry : dirty) {
+            entry.snapshot = new HashMap<>(entry.row);
+        }
+        for (Entry entry : removals) {
+            identityMap.remove(new EntityKey(entry.table, entry.key), entry);
+        }
+        insertions.clear();
+        removals.clear();
+        return affectedRows;
+    }
+
+    /**
+     * Detaches every row from the session, discarding the pending changes.
+     */
+    public void clear() {
+        identityMap.clear();
+        insertions.clear();
+        removals.clear();
+    }
+
+    /**
+     * Closes the session, discarding the changes that were not flushed.
+     */
+    @Override
+    public void close() {
+        clear();
+    }
+
+    private Entry manage(String table, String keyColumn, Object key, Map<String, Object> loaded) {
+        Entry entry = new Entry(table, keyColumn, key, new HashMap<>(loaded));
+        entry.snapshot = new HashMap<>(loaded);
+        identityMap.put(new EntityKey(table, key), entry);
+        return entry;
+    }
+
+    /**
+     * The identity of a row: its table and primary key.
+     */
+    private static final class EntityKey {
+        private final String table;
+        private final Object key;
+
+        EntityKey(String table, Object key) {
+            this.table = table;
+            this.key = SQLBatchLoader.normalize(key);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof EntityKey)) {
+                return false;
+            }
+            EntityKey entityKey = (EntityKey) other;
+            return table.equals(entityKey.table) && Objects.equals(key, entityKey.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * table.hashCode() + Objects.hashCode(key);
+        }
+    }
+
+    /**
+     * A row managed by the session, with the snapshot of its values as last loaded or flushed.
+     */
+    private static final class Entry {
+        private final String table;
+        private final String keyColumn;
+        private final Object key;
+        private final Map<String, Object> row;
+        private Map<String, Object> snapshot;
+        private boolean removed;
+
+        Entry(String table, String keyColumn, Object key, Map<String, Object> row) {
+            this.table = table;
+            this.keyColumn = keyColumn;
+            this.key = key;
+            this.row = row;
+        }
+
+        /**
+         * Compares the row to its snapshot.
+         *
+         * @return The changed columns and their new values, sorted by column name.
+         */
+        SortedMap<String, Object> changes() {
+            SortedMap<String, Object> changes = new TreeMap<>();
+            for (Map.Entry<String, Object> column : row.entrySet()) {
+                if (!snapshot.containsKey(column.getKey())
+                        || !Objects.deepEquals(column.getValue(), snapshot.get(column.getKey()))) {
+                    changes.put(column.getKey(), column.getValue());
+                }
+            }
+            return changes;
+        }
+    }
+}
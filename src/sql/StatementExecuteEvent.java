@@ -0,0 +1,43 @@
+package sql;
+
+import jdk.jfr.*;
+
+/**
+ * A JDK Flight Recorder event timing the execution of a statement by the database, up to its first results.
+ *
+ * @see QueryBuildEvent
+ */
+@Name("orm.StatementExecute")
+@Label("Statement Execute")
+@Category({"ORM", "SQL"})
+@Description("Execution of a JDBC statement, until the database returns its first results")
+@Threshold("1 ms")
+final class StatementExecuteEvent extends Event {
+
+    @Label("Fingerprint")
+    String fingerprint;
+
+    @Label("Batch Size")
+    int batchSize;
+
+    @Label("Affected Rows")
+    @Description("Rows affected by an update, or -1 for a query")
+    long affectedRows;
+
+    /**
+     * Ends the event and commits it if it is recorded.
+     *
+     * @param sql          The executed native SQL.
+     * @param batchSize    The number of statements executed as a batch, 1 unless batched.
+     * @param affectedRows The number of affected rows, or -1 for a query.
+     */
+    void complete(String sql, int batchSize, long affectedRows) {
+        end();
+        if (shouldCommit()) {
+            this.fingerprint = Fingerprint.of(sql);
+            this.batchSize = batchSize;
+            this.affectedRows = affectedRows;
+            commit();
+        }
+    }
+}
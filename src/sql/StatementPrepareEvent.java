@@ -0,0 +1,37 @@
+package sql;
+
+import jdk.jfr.*;
+
+/**
+ * A JDK Flight Recorder event timing the preparation of a statement and the binding of its parameters.
+ *
+ * @see QueryBuildEvent
+ */
+@Name("orm.StatementPrepare")
+@Label("Statement Prepare")
+@Category({"ORM", "SQL"})
+@Description("Preparation of a JDBC statement and binding of its parameters")
+@Threshold("1 ms")
+final class StatementPrepareEvent extends Event {
+
+    @Label("Fingerprint")
+    String fingerprint;
+
+    @Label("Parameters")
+    int parameters;
+
+    /**
+     * Ends the event and commits it if it is recorded.
+     *
+     * @param sql        The prepared native SQL.
+     * @param parameters The number of bound parameters.
+     */
+    void complete(String sql, int parameters) {
+        end();
+        if (shouldCommit()) {
+            this.fingerprint = Fingerprint.of(sql);
+            this.parameters = parameters;
+            commit();
+        }
+    }
+}
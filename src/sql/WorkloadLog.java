@@ -0,0 +1,337 @@
+package sql;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * A workload captured by a {@link WorkloadRecorder}: the queries executed by one or more adapters, with their
+ * parameters, timing and thread, in the order they completed.
+ * <p>
+ * The log is a compact binary stream: after a header, it holds a sequence of records, each one starting with its
+ * type. SQL texts and thread names are written once, the first time they appear, and then referenced by index;
+ * integers are written as variable-length quantities.
+ * </p>
+ */
+public final class WorkloadLog {
+    static final int MAGIC = 0x4F524D57;
+    static final int VERSION = 1;
+
+    static final int STATEMENT = 1;
+    static final int THREAD = 2;
+    static final int EXECUTION = 3;
+
+    static final int NULL = 0;
+    static final int LONG = 1;
+    static final int DOUBLE = 2;
+    static final int TRUE = 3;
+    static final int FALSE = 4;
+    static final int STRING = 5;
+    static final int BYTES = 6;
+    static final int DECIMAL = 7;
+    static final int TIMESTAMP = 8;
+    static final int DATE = 9;
+    static final int TIME = 10;
+
+    private final List<Entry> entries;
+    private final int threads;
+
+    private WorkloadLog(List<Entry> entries, int threads) {
+        this.entries = entries;
+        this.threads = threads;
+    }
+
+    /**
+     * Reads a workload log.
+     *
+     * @param path The file written by a {@link WorkloadRecorder}.
+     * @return The captured workload.
+     * @throws IOException If the file cannot be read or is not a workload log.
+     */
+    public static WorkloadLog read(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(path + " is not a workload log.");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported workload log version " + version + ".");
+            }
+
+            List<String[]> statements = new ArrayList<>();
+            List<String> threadNames = new ArrayList<>();
+            List<Entry> entries = new ArrayList<>();
+            long offset = 0;
+            int type;
+            while ((type = in.read()) != -1) {
+                switch (type) {
+                    case STATEMENT:
+                        statements.add(new String[]{readString(in), readString(in)});
+                        break;
+                    case THREAD:
+                        threadNames.add(readString(in));
+                        break;
+                    case EXECUTION:
+                        String[] statement = statements.get(readInt(in));
+                        int thread = readInt(in);
+                        offset += zigZagDecode(readLong(in));
+                        long elapsedNanos = readLong(in);
+                        boolean failed = in.readBoolean();
+                        int count = readInt(in);
+                        List<Object> parameters = new ArrayList<>(count);
+                        for (int i = 0; i < count; i++) {
+                            parameters.add(readValue(in));
+                        }
+                        entries.add(new Entry(statement[0], statement[1], parameters, thread, threadNames.get(thread),
+                                offset, elapsedNanos, failed));
+                        break;
+                    default:
+                        throw new IOException("Corrupted workload log: unknown record type " + type + ".");
+                }
+            }
+            entries.sort(Comparator.comparingLong(Entry::getOffsetNanos));
+            return new WorkloadLog(Collections.unmodifiableList(entries), threadNames.size());
+        }
+    }
+
+    /**
+     * Returns the captured executions, in the order they started.
+     *
+     * @return the log entries
+     */
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Returns the number of distinct threads that executed the captured queries.
+     *
+     * @return the thread count
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    static void writeString(DataOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        byte[] bytes = new byte[readInt(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void writeInt(DataOutput out, int value) throws IOException {
+        writeLong(out, value & 0xFFFFFFFFL);
+    }
+
+    static int readInt(DataInput in) throws IOException {
+        return (int) readLong(in);
+    }
+
+    /**
+     * Writes an unsigned value as a variable-length quantity, seven bits per byte.
+     *
+     * @param out   The output to write to.
+     * @param value The value, read as unsigned.
+     * @throws IOException If the value cannot be written.
+     */
+    static void writeLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static long readLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupted workload log: variable-length quantity too long.");
+    }
+
+    static long zigZagEncode(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long zigZagDecode(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static void writeValue(DataOutput out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            out.writeByte(LONG);
+            writeLong(out, zigZagEncode(((Number) value).longValue()));
+        } else if (value instanceof Double || value instanceof Float) {
+            out.writeByte(DOUBLE);
+            out.writeDouble(((Number) value).doubleValue());
+        } else if (value instanceof Boolean) {
+            out.writeByte((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof byte[]) {
+            out.writeByte(BYTES);
+            writeInt(out, ((byte[]) value).length);
+            out.write((byte[]) value);
+        } else if (value instanceof BigDecimal) {
+            out.writeByte(DECIMAL);
+            writeString(out, value.toString());
+        } else if (value instanceof java.sql.Timestamp) {
+            out.writeByte(TIMESTAMP);
+            writeLong(out, zigZagEncode(((java.sql.Timestamp) value).getTime()));
+            writeInt(out, ((java.sql.Timestamp) value).getNanos());
+        } else if (value instanceof java.sql.Date) {
+            out.writeByte(DATE);
+            writeLong(out, zigZagEncode(((java.sql.Date) value).getTime()));
+        } else if (value instanceof java.sql.Time) {
+            out.writeByte(TIME);
+            writeLong(out, zigZagEncode(((java.sql.Time) value).getTime()));
+        } else {
+            out.writeByte(STRING);
+            writeString(out, value.toString());
+        }
+    }
+
+    static Object readValue(DataInput in) throws IOException {
+        int type = in.readUnsignedByte();
+        switch (type) {
+            case NULL:
+                return null;
+            case LONG:
+                return zigZagDecode(readLong(in));
+            case DOUBLE:
+                return in.readDouble();
+            case TRUE:
+                return true;
+            case FALSE:
+                return false;
+            case STRING:
+                return readString(in);
+            case BYTES:
+                byte[] bytes = new byte[readInt(in)];
+                in.readFully(bytes);
+                return bytes;
+            case DECIMAL:
+                return new BigDecimal(readString(in));
+            case TIMESTAMP:
+                java.sql.Timestamp timestamp = new java.sql.Timestamp(zigZagDecode(readLong(in)));
+                timestamp.setNanos(readInt(in));
+                return timestamp;
+            case DATE:
+                return new java.sql.Date(zigZagDecode(readLong(in)));
+            case TIME:
+                return new java.sql.Time(zigZagDecode(readLong(in)));
+            default:
+                throw new IOException("Corrupted workload log: unknown value type " + type + ".");
+        }
+    }
+
+    /**
+     * A captured query execution.
+     */
+    public static final class Entry {
+        private final String sql;
+        private final String fingerprint;
+        private final List<Object> parameters;
+        private final int threadIndex;
+        private final String thread;
+        private final long offsetNanos;
+        private final long elapsedNanos;
+        private final boolean failed;
+
+        Entry(String sql, String fingerprint, List<Object> parameters, int threadIndex, String thread, long offsetNanos, long elapsedNanos, boolean failed) {
+            this.sql = sql;
+            this.fingerprint = fingerprint;
+            this.parameters = parameters;
+            this.threadIndex = threadIndex;
+            this.thread = thread;
+            this.offsetNanos = offsetNanos;
+            this.elapsedNanos = elapsedNanos;
+            this.failed = failed;
+        }
+
+        /**
+         * Returns the executed native SQL.
+         *
+         * @return the SQL
+         */
+        public String getSql() {
+            return sql;
+        }
+
+        /**
+         * Returns the fingerprint of the executed SQL.
+         *
+         * @return the fingerprint
+         */
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        /**
+         * Returns the values bound to the placeholders of the SQL.
+         *
+         * @return the parameters
+         */
+        public List<Object> getParameters() {
+            return parameters;
+        }
+
+        /**
+         * Returns the index of the thread that executed the query, from 0 to {@link WorkloadLog#getThreads()}.
+         *
+         * @return the thread index
+         */
+        public int getThreadIndex() {
+            return threadIndex;
+        }
+
+        /**
+         * Returns the name of the thread that executed the query.
+         *
+         * @return the thread name
+         */
+        public String getThread() {
+            return thread;
+        }
+
+        /**
+         * Returns the time the execution started at, relative to the start of the recording.
+         *
+         * @return the start offset, in nanoseconds
+         */
+        public long getOffsetNanos() {
+            return offsetNanos;
+        }
+
+        /**
+         * Returns the recorded execution time.
+         *
+         * @return the elapsed time, in nanoseconds
+         */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * Returns whether the recorded execution failed.
+         *
+         * @return true if the query failed otherwise false .
+         */
+        public boolean isFailed() {
+            return failed;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package sql;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A {@link QueryListener} capturing the queries executed by an adapter into a {@link WorkloadLog} file, to be
+ * replayed offline by a {@link WorkloadReplayer}.
+ * <p>
+ * Each execution is recorded with its SQL, fingerprint, parameters, start time, execution time, thread and outcome.
+ * Writes are buffered and serialized, so a recorder can be shared by adapters used from several threads. If the log
+ * cannot be written, recording stops and the failure is reported by {@link #close()}.
+ * </p>
+ *
+ * <pre>{@code
+ * try (WorkloadRecorder recorder = new WorkloadRecorder(Paths.get("workload.bin"))) {
+ *     adapter.addListener(recorder);
+ *     // serve traffic
+ *     adapter.removeListener(recorder);
+ * }
+ * }</pre>
+ */
+public class WorkloadRecorder implements QueryListener, AutoCloseable {
+    private final DataOutputStream out;
+    private final long startNanos = System.nanoTime();
+    private final Map<String, Integer> statements = new HashMap<>();
+    private final Map<String, Integer> threads = new HashMap<>();
+    private long previousOffset;
+    private long recordedQueries;
+    private IOException failure;
+    private boolean closed;
+
+    /**
+     * Constructs a recorder writing to the given file, replacing it if it exists.
+     *
+     * @param path The file to write the log to.
+     * @throws IOException If the file cannot be created.
+     */
+    public WorkloadRecorder(Path path) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)));
+        this.out.writeInt(WorkloadLog.MAGIC);
+        this.out.writeInt(WorkloadLog.VERSION);
+    }
+
+    @Override
+    public synchronized void onExecuted(QueryExecution execution) {
+        if (closed || failure != null) {
+            return;
+        }
+        try {
+            Integer statement = statements.get(execution.getSql());
+            if (statement == null) {
+                statement = statements.size();
+                statements.put(execution.getSql(), statement);
+                out.writeByte(WorkloadLog.STATEMENT);
+                WorkloadLog.writeString(out, execution.getSql());
+                WorkloadLog.writeString(out, execution.getFingerprint());
+            }
+            Integer thread = threads.get(execution.getThread());
+            if (thread == null) {
+                thread = threads.size();
+                threads.put(execution.getThread(), thread);
+                out.writeByte(WorkloadLog.THREAD);
+                WorkloadLog.writeString(out, execution.getThread());
+            }
+
+            // Executions are recorded as they complete, so start offsets are not monotonic
+            long offset = execution.getStartNanos() - startNanos;
+            out.writeByte(WorkloadLog.EXECUTION);
+            WorkloadLog.writeInt(out, statement);
+            WorkloadLog.writeInt(out, thread);
+            WorkloadLog.writeLong(out, WorkloadLog.zigZagEncode(offset - previousOffset));
+            WorkloadLog.writeLong(out, execution.getElapsed().toNanos());
+            out.writeBoolean(execution.getFailure().isPresent());
+            WorkloadLog.writeInt(out, execution.getParameters().size());
+            for (Object parameter : execution.getParameters()) {
+                WorkloadLog.writeValue(out, parameter);
+            }
+            previousOffset = offset;
+            recordedQueries++;
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    /**
+     * Returns the number of executions recorded so far.
+     *
+     * @return the recorded query count
+     */
+    public synchronized long getRecordedQueries() {
+        return recordedQueries;
+    }
+
+    /**
+     * Writes the buffered records to the file.
+     *
+     * @throws IOException If the log cannot be written.
+     */
+    public synchronized void flush() throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+        out.flush();
+    }
+
+    /**
+     * Stops recording and closes the file.
+     *
+     * @throws IOException If the log could not be written.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        out.close();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,381 @@
+package sql;
+
+import core.queries.Query;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Replays a captured {@link WorkloadLog} against a database, typically an embedded one, and reports the latency
+ * percentiles and throughput of each query fingerprint.
+ * <p>
+ * Queries are replayed through {@link SQLAdapter}s so the report reflects the adapter as well as the database. By
+ * default, the replay runs one worker per recorded thread, each replaying the queries of its thread in order at their
+ * original pace. The concurrency and the rate can be scaled:
+ * <ul>
+ *     <li>with fewer workers than recorded threads, the queries of several threads are replayed by one worker;</li>
+ *     <li>with more workers than recorded threads, queries are dealt to the workers in turn, regardless of their
+ *     thread;</li>
+ *     <li>a speed of 2 replays the queries twice as fast as recorded, and a speed of 0 replays them as fast as
+ *     possible.</li>
+ * </ul>
+ * Each worker executes its queries on its own adapter, closed once the replay completes.
+ * </p>
+ * <p>
+ * When queries are paced, their latency is measured from the time they were due rather than the time they were sent:
+ * a query held up behind a slow one on its worker counts the wait, as it would for a client issuing it on time. The
+ * service time, from the moment a query is sent, is reported separately.
+ * </p>
+ *
+ * <pre>{@code
+ * WorkloadReplayer.Report report = new WorkloadReplayer(WorkloadLog.read(path),
+ *         () -> SQLAdapter.connect("jdbc:h2:mem:replay;DB_CLOSE_DELAY=-1", "sa", ""))
+ *         .concurrency(16)
+ *         .speed(2)
+ *         .run();
+ * System.out.println(report);
+ * }</pre>
+ */
+public class WorkloadReplayer {
+    private final WorkloadLog log;
+    private final Supplier<SQLAdapter> adapters;
+    private int concurrency;
+    private double speed = 1;
+
+    /**
+     * Constructs a replayer of the given workload.
+     *
+     * @param log      The workload to replay.
+     * @param adapters The factory of the adapters the workers replay queries with, called once per worker.
+     */
+    public WorkloadReplayer(WorkloadLog log, Supplier<SQLAdapter> adapters) {
+        this.log = log;
+        this.adapters = adapters;
+        this.concurrency = Math.max(1, log.getThreads());
+    }
+
+    /**
+     * Sets the number of workers replaying queries concurrently, the number of recorded threads by default.
+     *
+     * @param concurrency The number of workers.
+     * @return The current replayer.
+     */
+    public WorkloadReplayer concurrency(int concurrency) {
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException("The concurrency must be greater than 0.");
+        }
+        this.concurrency = concurrency;
+        return this;
+    }
+
+    /**
+     * Sets the rate queries are replayed at, relative to the recorded rate.
+     *
+     * @param speed The rate multiplier, 1 for the recorded rate, or 0 to replay as fast as possible.
+     * @return The current replayer.
+     */
+    public WorkloadReplayer speed(double speed) {
+        if (speed < 0) {
+            throw new IllegalArgumentException("The speed must not be negative.");
+        }
+        this.speed = speed;
+        return this;
+    }
+
+    /**
+     * Replays the workload and waits for every query to complete.
+     *
+     * @return The latency and throughput report of the replay.
+     * @throws InterruptedException If the calling thread is interrupted while waiting for the workers.
+     */
+    public Report run() throws InterruptedException {
+        List<List<WorkloadLog.Entry>> assignments = new ArrayList<>();
+        for (int i = 0; i < concurrency; i++) {
+            assignments.add(new ArrayList<>());
+        }
+        List<WorkloadLog.Entry> entries = log.getEntries();
+        for (int i = 0; i < entries.size(); i++) {
+            WorkloadLog.Entry entry = entries.get(i);
+            int worker = concurrency <= log.getThreads() ? entry.getThreadIndex() % concurrency : i % concurrency;
+            assignments.get(worker).add(entry);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "workload-replayer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long start = System.nanoTime();
+        long firstOffset = entries.isEmpty() ? 0 : entries.get(0).getOffsetNanos();
+        try {
+            List<Future<List<Sample>>> workers = new ArrayList<>();
+            for (List<WorkloadLog.Entry> assignment : assignments) {
+                workers.add(executor.submit(() -> replay(assignment, start, firstOffset)));
+            }
+
+            Map<String, List<Sample>> samples = new TreeMap<>();
+            for (Future<List<Sample>> worker : workers) {
+                for (Sample sample : worker.get()) {
+                    samples.computeIfAbsent(sample.fingerprint, fingerprint -> new ArrayList<>()).add(sample);
+                }
+            }
+            Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+            Map<String, Stats> stats = new LinkedHashMap<>();
+            samples.forEach((fingerprint, fingerprintSamples) -> stats.put(fingerprint, new Stats(fingerprintSamples, elapsed)));
+            return new Report(stats, elapsed);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A replay worker failed.", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Replays the queries assigned to a worker on an adapter of its own.
+     *
+     * @param assignment  The queries of the worker, in the order they started.
+     * @param start       The {@link System#nanoTime()} the replay started at.
+     * @param firstOffset The start offset of the first query of the workload.
+     * @return The latency samples of the replayed queries.
+     */
+    private List<Sample> replay(List<WorkloadLog.Entry> assignment, long start, long firstOffset) {
+        List<Sample> samples = new ArrayList<>(assignment.size());
+        if (assignment.isEmpty()) {
+            return samples;
+        }
+        try (SQLAdapter adapter = adapters.get()) {
+            for (WorkloadLog.Entry entry : assignment) {
+                long due = 0;
+                if (speed > 0) {
+                    due = start + (long) ((entry.getOffsetNanos() - firstOffset) / speed);
+                    long wait;
+                    while ((wait = due - System.nanoTime()) > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                }
+                if (Thread.currentThread().isInterrupted()) {
+                    break;
+                }
+
+                Query query = new ReplayedQuery(entry.getSql(), entry.getParameters());
+                boolean failed = false;
+                long queryStart = System.nanoTime();
+                if (speed == 0) {
+                    // Unpaced queries are due as soon as their worker gets to them
+                    due = queryStart;
+                }
+                try {
+                    if (isSelect(entry.getSql())) {
+                        adapter.fetch(query);
+                    } else {
+                        adapter.execute(query);
+                    }
+                } catch (Exception e) {
+                    failed = true;
+                }
+                long end = System.nanoTime();
+                samples.add(new Sample(entry.getFingerprint(), end - due, end - queryStart, failed));
+            }
+        }
+        return samples;
+    }
+
+    private static boolean isSelect(String sql) {
+        String statement = sql.trim();
+        return statement.regionMatches(true, 0, "SELECT", 0, 6) || statement.regionMatches(true, 0, "WITH", 0, 4);
+    }
+
+    /**
+     * Replays a workload log against a JDBC database and prints the report.
+     * <p>
+     * Usage: {@code WorkloadReplayer <log> <jdbc-url> [concurrency] [speed] [username] [password]}
+     * </p>
+     *
+     * @param args The command line arguments.
+     * @throws IOException          If the log cannot be read.
+     * @throws InterruptedException If the replay is interrupted.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.err.println("Usage: WorkloadReplayer <log> <jdbc-url> [concurrency] [speed] [username] [password]");
+            System.exit(1);
+        }
+        WorkloadLog log = WorkloadLog.read(Paths.get(args[0]));
+        String username = args.length > 4 ? args[4] : "";
+        String password = args.length > 5 ? args[5] : "";
+        WorkloadReplayer replayer = new WorkloadReplayer(log, () -> SQLAdapter.connect(args[1], username, password));
+        if (args.length > 2) {
+            replayer.concurrency(Integer.parseInt(args[2]));
+        }
+        if (args.length > 3) {
+            replayer.speed(Double.parseDouble(args[3]));
+        }
+        System.out.println(replayer.run());
+    }
+
+    /**
+     * A query replayed as recorded: its native SQL and parameters are already built.
+     */
+    private static final class ReplayedQuery extends Query<ReplayedQuery> {
+        ReplayedQuery(String sql, List<Object> parameters) {
+            this.nativeQuery = Optional.of(new StringBuilder(sql));
+            this.parameters = parameters;
+        }
+
+        @Override
+        public Query<ReplayedQuery> build() {
+            return this;
+        }
+    }
+
+    /**
+     * The replay latency of a query, from the time it was due, and its service time, from the time it was sent.
+     */
+    private static final class Sample {
+        private final String fingerprint;
+        private final long latencyNanos;
+        private final long serviceNanos;
+        private final boolean failed;
+
+        Sample(String fingerprint, long latencyNanos, long serviceNanos, boolean failed) {
+            this.fingerprint = fingerprint;
+            this.latencyNanos = latencyNanos;
+            this.serviceNanos = serviceNanos;
+            this.failed = failed;
+        }
+    }
+
+    /**
+     * The latency distribution and throughput of the replayed queries sharing a fingerprint.
+     */
+    public static final class Stats {
+        private final long[] latencies;
+        private final long[] serviceTimes;
+        private final long errors;
+        private final double throughput;
+
+        Stats(List<Sample> samples, Duration elapsed) {
+            this.latencies = new long[samples.size()];
+            this.serviceTimes = new long[samples.size()];
+            long errors = 0;
+            for (int i = 0; i < samples.size(); i++) {
+                latencies[i] = samples.get(i).latencyNanos;
+                serviceTimes[i] = samples.get(i).serviceNanos;
+                errors += samples.get(i).failed ? 1 : 0;
+            }
+            Arrays.sort(latencies);
+            Arrays.sort(serviceTimes);
+            this.errors = errors;
+            this.throughput = elapsed.isZero() ? 0 : samples.size() / (elapsed.toNanos() / 1e9);
+        }
+
+        /**
+         * Returns the number of replayed queries.
+         *
+         * @return the query count
+         */
+        public long getCount() {
+            return latencies.length;
+        }
+
+        /**
+         * Returns the number of replayed queries that failed.
+         *
+         * @return the error count
+         */
+        public long getErrors() {
+            return errors;
+        }
+
+        /**
+         * Returns the number of queries replayed per second over the whole replay.
+         *
+         * @return the throughput, in queries per second
+         */
+        public double getThroughput() {
+            return throughput;
+        }
+
+        /**
+         * Returns a latency percentile, using the nearest-rank method.
+         * <p>
+         * The latency of a paced query runs from the time it was due, including any wait behind earlier queries of
+         * its worker.
+         * </p>
+         *
+         * @param percentile The percentile, between 0 and 100.
+         * @return the latency below which the given percentage of the queries completed
+         */
+        public Duration getPercentile(double percentile) {
+            return percentile(latencies, percentile);
+        }
+
+        /**
+         * Returns a service time percentile, using the nearest-rank method.
+         *
+         * @param percentile The percentile, between 0 and 100.
+         * @return the time from being sent below which the given percentage of the queries completed
+         */
+        public Duration getServicePercentile(double percentile) {
+            return percentile(serviceTimes, percentile);
+        }
+
+        private static Duration percentile(long[] sorted, double percentile) {
+            if (sorted.length == 0) {
+                return Duration.ZERO;
+            }
+            int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+            return Duration.ofNanos(sorted[Math.min(sorted.length - 1, Math.max(0, rank - 1))]);
+        }
+    }
+
+    /**
+     * The report of a replay, per query fingerprint.
+     */
+    public static final class Report {
+        private final Map<String, Stats> stats;
+        private final Duration elapsed;
+
+        Report(Map<String, Stats> stats, Duration elapsed) {
+            this.stats = Collections.unmodifiableMap(stats);
+            this.elapsed = elapsed;
+        }
+
+        /**
+         * Returns the statistics of each replayed fingerprint.
+         *
+         * @return the statistics by fingerprint
+         */
+        public Map<String, Stats> getStats() {
+            return stats;
+        }
+
+        /**
+         * Returns the duration of the replay.
+         *
+         * @return the elapsed time
+         */
+        public Duration getElapsed() {
+            return elapsed;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder report = new StringBuilder();
+            report.append(String.format("%10s %8s %10s %10s %10s %10s %10s %14s  %s%n",
+                    "count", "errors", "qps", "p50 (us)", "p95 (us)", "p99 (us)", "max (us)", "svc p99 (us)", "fingerprint"));
+            stats.forEach((fingerprint, stat) -> report.append(String.format("%10d %8d %10.1f %10d %10d %10d %10d %14d  %s%n",
+                    stat.getCount(), stat.getErrors(), stat.getThroughput(),
+                    stat.getPercentile(50).toNanos() / 1000, stat.getPercentile(95).toNanos() / 1000,
+                    stat.getPercentile(99).toNanos() / 1000, stat.getPercentile(100).toNanos() / 1000,
+                    stat.getServicePercentile(99).toNanos() / 1000, fingerprint)));
+            return report.toString();
+        }
+    }
+}
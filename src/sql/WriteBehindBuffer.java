@@ -0,0 +1,376 @@
+package sql;
+
+import sql.queries.SQLInsertQuery;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+
+/**
+ * An asynchronous write-behind buffer batching the INSERT queries of a single table.
+ * <p>
+ * Producers hand their insert queries to the buffer instead of executing them. The rows are queued in a bounded
+ * queue and written by a dedicated flusher thread as multi-row {@code INSERT INTO table (...) VALUES (...), (...)}
+ * statements, as soon as {@code maxBatchRows} rows are queued or the oldest queued row has waited for
+ * {@code flushInterval}, whichever comes first. When the queue is full, producers block until the flusher has made
+ * room for their rows.
+ * </p>
+ * <p>
+ * Closing the buffer stops accepting rows and returns once every queued row has been written. Batches are written
+ * one at a time from the flusher thread, so the underlying {@link SQLAdapter} connection is never used concurrently
+ * by the buffer itself; it should not be shared with other threads.
+ * </p>
+ *
+ * <pre>{@code
+ * try (WriteBehindBuffer buffer = new WriteBehindBuffer(adapter, "events", 10_000, 500, Duration.ofMillis(20))) {
+ *     buffer.add(builder.insert().into("events").value("type", "click").value("at", now));
+ * }
+ * }</pre>
+ */
+public class WriteBehindBuffer implements AutoCloseable {
+
+    /**
+     * The longest the flusher waits for rows before checking whether the buffer was closed.
+     */
+    private static final long CLOSE_CHECK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final SQLAdapter adapter;
+    private final String table;
+    private final int maxBatchRows;
+    private final long flushIntervalNanos;
+    private final BlockingQueue<Map<String, Object>> queue;
+    private final ReadWriteLock lifecycle = new ReentrantReadWriteLock();
+    private final Thread flusher;
+
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong writtenRows = new AtomicLong();
+    private final AtomicLong failedRows = new AtomicLong();
+    private final AtomicLong totalFlushNanos = new AtomicLong();
+    private final AtomicLong maxFlushNanos = new AtomicLong();
+    private final AtomicLong maxBatchSize = new AtomicLong();
+    private final AtomicLong handlerFailures = new AtomicLong();
+
+    private volatile BiConsumer<List<Map<String, Object>>, Exception> failureHandler = (rows, e) -> {
+    };
+    private volatile boolean closed;
+
+    /**
+     * Constructs a buffer and starts its flusher thread.
+     *
+     * @param adapter       The adapter executing the batched inserts, dedicated to the buffer.
+     * @param table         The table every buffered row is inserted into.
+     * @param capacity      The maximum number of queued rows before producers block.
+     * @param maxBatchRows  The maximum number of rows written by a single statement.
+     * @param flushInterval The maximum time a queued row waits before being written, 0 to write rows as soon as they
+     *                      are queued.
+     */
+    public WriteBehindBuffer(SQLAdapter adapter, String table, int capacity, int maxBatchRows, Duration flushInterval) {
+        if (capacity <= 0 || maxBatchRows <= 0) {
+            throw new IllegalArgumentException("The capacity and the maximum batch size must be greater than 0.");
+        }
+        this.adapter = adapter;
+        this.table = table;
+        this.maxBatchRows = maxBatchRows;
+        this.flushIntervalNanos = Math.max(0, flushInterval.toNanos());
+        this.queue = new ArrayBlockingQueue<>(capacity);
+
+        this.flusher = new Thread(this::flushLoop, "write-behind-" + table);
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Sets the callback notified when a batch cannot be written; its rows are not retried. Exceptions thrown by the
+     * callback are counted and otherwise ignored, so they cannot stop the flusher.
+     *
+     * @param failureHandler The callback receiving the rows of the failed batch and the failure.
+     * @return The current buffer.
+     */
+    public WriteBehindBuffer onFailure(BiConsumer<List<Map<String, Object>>, Exception> failureHandler) {
+        this.failureHandler = failureHandler;
+        return this;
+    }
+
+    /**
+     * Queues the rows of an insert query, blocking while the buffer is full.
+     *
+     * @param query The unbuilt insert query, targeting the table of the buffer.
+     * @throws InterruptedException If the calling thread is interrupted while waiting for room.
+     */
+    public void add(SQLInsertQuery query) throws InterruptedException {
+        List<Map<String, Object>> rows = rowsOf(query);
+        lifecycle.readLock().lock();
+        try {
+            ensureOpen();
+            for (Map<String, Object> row : rows) {
+                queue.put(row);
+            }
+        } finally {
+            lifecycle.readLock().unlock();
+        }
+    }
+
+    /**
+     * Queues the rows of an insert query, waiting at most the given time for room.
+     *
+     * @param query   The unbuilt insert query, targeting the table of the buffer.
+     * @param timeout The maximum time to wait for room in the buffer.
+     * @return true if every row was queued, false if the buffer stayed full; rows queued before the timeout are kept.
+     * @throws InterruptedException If the calling thread is interrupted while waiting for room.
+     */
+    public boolean offer(SQLInsertQuery query, Duration timeout) throws InterruptedException {
+        List<Map<String, Object>> rows = rowsOf(query);
+        long deadline = System.nanoTime() + timeout.toNanos();
+        lifecycle.readLock().lock();
+        try {
+            ensureOpen();
+            for (Map<String, Object> row : rows) {
+                if (!queue.offer(row, deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            lifecycle.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns a snapshot of the buffer metrics.
+     *
+     * @return the current metrics
+     */
+    public Metrics getMetrics() {
+        return new Metrics(queue.size(), batches.get(), writtenRows.get(), failedRows.get(),
+                totalFlushNanos.get(), maxFlushNanos.get(), maxBatchSize.get(), handlerFailures.get());
+    }
+
+    /**
+     * Stops accepting rows and waits until every queued row has been written.
+     */
+    @Override
+    public void close() {
+        lifecycle.writeLock().lock();
+        try {
+            closed = true;
+        } finally {
+            lifecycle.writeLock().unlock();
+        }
+        boolean interrupted = false;
+        while (flusher.isAlive()) {
+            try {
+                flusher.join();
+            } catch (InterruptedException e) {
+                // The queued rows must be written before returning
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("The write-behind buffer is closed.");
+        }
+    }
+
+    private List<Map<String, Object>> rowsOf(SQLInsertQuery query) {
+        if (!query.getTarget().map(table::equals).orElse(false)) {
+            throw new IllegalArgumentException("The write-behind buffer only accepts inserts into " + table + ".");
+        }
+        List<Map<String, Object>> rows = new ArrayList<>();
+        query.getRows().forEach(row -> rows.add(new LinkedHashMap<>(row)));
+        return rows;
+    }
+
+    /**
+     * Collects batches of rows and writes them until the buffer is closed and drained.
+     */
+    private void flushLoop() {
+        List<Map<String, Object>> batch = new ArrayList<>(maxBatchRows);
+        while (true) {
+            Map<String, Object> first;
+            try {
+                // Waits in slices so closing is noticed without spinning, whatever the flush interval
+                first = queue.poll(closed ? 0 : CLOSE_CHECK_NANOS, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                first = queue.poll();
+            }
+            if (first == null) {
+                if (closed && queue.isEmpty()) {
+                    return;
+                }
+                continue;
+            }
+
+            batch.add(first);
+            long deadline = System.nanoTime() + flushIntervalNanos;
+            while (batch.size() < maxBatchRows) {
+                queue.drainTo(batch, maxBatchRows - batch.size());
+                long remaining = deadline - System.nanoTime();
+                if (batch.size() >= maxBatchRows || closed || remaining <= 0) {
+                    break;
+                }
+                try {
+                    Map<String, Object> next = queue.poll(Math.min(remaining, CLOSE_CHECK_NANOS), TimeUnit.NANOSECONDS);
+                    if (next != null) {
+                        batch.add(next);
+                    }
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Writes a batch of rows with a single multi-row insert.
+     *
+     * @param batch The rows to write.
+     */
+    private void write(List<Map<String, Object>> batch) {
+        SQLInsertQuery insert = adapter.getBuilder().insert().into(table);
+        batch.forEach(insert::row);
+
+        long start = System.nanoTime();
+        try {
+            adapter.execute(insert.build());
+            writtenRows.addAndGet(batch.size());
+        } catch (Exception e) {
+            failedRows.addAndGet(batch.size());
+            try {
+                failureHandler.accept(new ArrayList<>(batch), e);
+            } catch (RuntimeException handlerFailure) {
+                // A faulty handler must not stop the flusher, or producers would block on a queue nobody drains
+                handlerFailures.incrementAndGet();
+            }
+        }
+        long latency = System.nanoTime() - start;
+
+        batches.incrementAndGet();
+        totalFlushNanos.addAndGet(latency);
+        maxFlushNanos.accumulateAndGet(latency, Math::max);
+        maxBatchSize.accumulateAndGet(batch.size(), Math::max);
+    }
+
+    /**
+     * A snapshot of the write-behind buffer metrics.
+     */
+    public static final class Metrics {
+        private final int queuedRows;
+        private final long batches;
+        private final long writtenRows;
+        private final long failedRows;
+        private final long totalFlushNanos;
+        private final long maxFlushNanos;
+        private final long maxBatchSize;
+        private final long handlerFailures;
+
+        Metrics(int queuedRows, long batches, long writtenRows, long failedRows, long totalFlushNanos, long maxFlushNanos, long maxBatchSize,
+                long handlerFailures) {
+            this.queuedRows = queuedRows;
+            this.batches = batches;
+            this.writtenRows = writtenRows;
+            this.failedRows = failedRows;
+            this.totalFlushNanos = totalFlushNanos;
+            this.maxFlushNanos = maxFlushNanos;
+            this.maxBatchSize = maxBatchSize;
+            this.handlerFailures = handlerFailures;
+        }
+
+        /**
+         * Returns the number of rows waiting to be written.
+         *
+         * @return the queued row count
+         */
+        public int getQueuedRows() {
+            return queuedRows;
+        }
+
+        /**
+         * Returns the number of batches written or failed so far.
+         *
+         * @return the batch count
+         */
+        public long getBatches() {
+            return batches;
+        }
+
+        /**
+         * Returns the number of rows written so far.
+         *
+         * @return the written row count
+         */
+        public long getWrittenRows() {
+            return writtenRows;
+        }
+
+        /**
+         * Returns the number of rows whose batch failed.
+         *
+         * @return the failed row count
+         */
+        public long getFailedRows() {
+            return failedRows;
+        }
+
+        /**
+         * Returns the average number of rows per batch.
+         *
+         * @return the average batch size, 0 if no batch was written yet
+         */
+        public double getAverageBatchSize() {
+            return batches == 0 ? 0 : (double) (writtenRows + failedRows) / batches;
+        }
+
+        /**
+         * Returns the largest number of rows written by a single batch.
+         *
+         * @return the maximum batch size
+         */
+        public long getMaxBatchSize() {
+            return maxBatchSize;
+        }
+
+        /**
+         * Returns the average execution time of a batch.
+         *
+         * @return the average flush latency
+         */
+        public Duration getAverageFlushLatency() {
+            return batches == 0 ? Duration.ZERO : Duration.ofNanos(totalFlushNanos / batches);
+        }
+
+        /**
+         * Returns the longest execution time of a batch.
+         *
+         * @return the maximum flush latency
+         */
+        public Duration getMaxFlushLatency() {
+            return Duration.ofNanos(maxFlushNanos);
+        }
+
+        /**
+         * Returns the number of times the failure handler itself threw an exception.
+         *
+         * @return the handler failure count
+         */
+        public long getHandlerFailures() {
+            return handlerFailures;
+        }
+    }
+}
@@ -2,8 +2,6 @@ package sql.queries;
 
 import core.queries.AbstractDeleteQuery;
 
-import java.util.Optional;
-
 /**
  * Represents a SQL DELETE query specific to the SQL adapter layer.
  * <p>
@@ -12,15 +10,6 @@ import java.util.Optional;
  * </p>
  */
 public abstract class SQLDeleteQuery extends AbstractDeleteQuery<SQLDeleteQuery> {
-    /**
-     * The target table to delete from.
-     */
-    private final Optional<String> table;
-
-    /**
-     * An optional alias for the table.
-     */
-    private final Optional<String> alias;
 
     /**
      * Constructs a new {@code SQLDeleteQuery} for the given table.
@@ -29,7 +18,6 @@ public abstract class SQLDeleteQuery extends AbstractDeleteQuery<SQLDeleteQuery>
      */
     public SQLDeleteQuery(String table) {
         super();
-        this.table = Optional.of(table);
-        this.alias = Optional.empty();
+        from(table);
     }
 }
@@ -19,4 +19,29 @@ public abstract class SQLSelectQuery extends AbstractSelectQuery<SQLSelectQuery>
     public SQLSelectQuery(String... args) {
         super(args);
     }
+
+    /**
+     * Builds the query as a {@code SELECT COUNT(*)} of its rows, dropping its ORDER BY clause.
+     * <p>
+     * Queries with GROUP BY, HAVING or LIMIT clauses are counted through a derived table, so the count matches the
+     * number of rows the query itself returns.
+     * </p>
+     *
+     * @return The native SQL counting the rows of the query.
+     */
+    public abstract String buildCount();
+
+    /**
+     * Builds the query as a {@code SELECT 1 ... LIMIT 1} probe, dropping its ORDER BY clause.
+     *
+     * @return The native SQL returning a row only if the query matches any.
+     */
+    public abstract String buildExists();
+
+    /**
+     * Builds the query limited to its first row.
+     *
+     * @return The native SQL returning the first row of the query.
+     */
+    public abstract String buildFirst();
 }
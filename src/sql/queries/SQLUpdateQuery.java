@@ -24,5 +24,12 @@ public abstract class SQLUpdateQuery extends AbstractUpdateQuery<SQLUpdateQuery>
         this.table = Optional.of(table);
     }
 
-
+    /**
+     * Returns the name of the updated table.
+     *
+     * @return an Optional of the updated table.
+     */
+    public Optional<String> getTable() {
+        return table;
+    }
 }
@@ -0,0 +1,291 @@
+import core.clauses.Where;
+import core.queries.Query;
+import sql.SQLAdapter;
+import sql.SQLQueryBuilder;
+import sql.queries.SQLInsertQuery;
+
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the end-to-end throughput and latency of {@link SQLAdapter} against an embedded in-process database.
+ * <p>
+ * A synthetic dataset is loaded first, then each scenario (point selects, range scans, batched inserts, updates and
+ * deletes) runs for a fixed time at 1, 2, 4... up to the given number of threads, each thread using its own adapter.
+ * One JSON object per scenario and thread count is appended to the output file, so successive runs can be compared.
+ * </p>
+ * <p>
+ * Run with an embedded database driver, e.g. H2, on the classpath:
+ * {@code java -cp out:tests:h2.jar AdapterThroughputBenchmark [jdbc-url] [output] [max-threads] [seconds] [rows]}
+ * </p>
+ */
+public class AdapterThroughputBenchmark {
+
+    private static final String DEFAULT_URL = "jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1;MODE=MySQL";
+    private static final int RANGE_SIZE = 100;
+    private static final int BATCH_SIZE = 100;
+
+    private final String url;
+    private final int rows;
+    private final long durationNanos;
+    private final AtomicLong nextDeletedId = new AtomicLong(1);
+    private final AtomicLong nextEventId;
+
+    private AdapterThroughputBenchmark(String url, int rows, long durationNanos) {
+        this.url = url;
+        this.rows = rows;
+        this.durationNanos = durationNanos;
+        this.nextEventId = new AtomicLong(rows + 1L);
+    }
+
+    public static void main(String[] args) throws Exception {
+        String url = args.length > 0 ? args[0] : DEFAULT_URL;
+        Path output = Paths.get(args.length > 1 ? args[1] : "benchmark-results.jsonl");
+        int maxThreads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+        int rows = args.length > 4 ? Integer.parseInt(args[4]) : 100_000;
+
+        AdapterThroughputBenchmark benchmark = new AdapterThroughputBenchmark(url, rows, TimeUnit.SECONDS.toNanos(seconds));
+        // Keeps the in-memory database alive for the whole run
+        try (SQLAdapter owner = SQLAdapter.connect(url, "sa", "")) {
+            benchmark.load(owner);
+
+            Map<String, Operation> scenarios = new LinkedHashMap<>();
+            scenarios.put("point-select", benchmark::pointSelect);
+            scenarios.put("range-scan", benchmark::rangeScan);
+            scenarios.put("batched-insert", benchmark::batchedInsert);
+            scenarios.put("update", benchmark::update);
+            scenarios.put("delete", benchmark::delete);
+
+            String run = Instant.now().toString();
+            try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(output, StandardOpenOption.CREATE, StandardOpenOption.APPEND))) {
+                for (Map.Entry<String, Operation> scenario : scenarios.entrySet()) {
+                    for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                        Result result = benchmark.measure(scenario.getValue(), threads);
+                        String json = result.toJson(run, scenario.getKey(), threads, url);
+                        out.println(json);
+                        out.flush();
+                        System.out.println(json);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates the tables of the dataset and fills them.
+     *
+     * @param adapter The adapter to load the dataset with.
+     * @throws SQLException If the dataset cannot be loaded.
+     */
+    private void load(SQLAdapter adapter) throws SQLException {
+        try (Statement statement = adapter.getConnection().createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS users");
+            statement.execute("DROP TABLE IF EXISTS events");
+            statement.execute("CREATE TABLE users (id BIGINT PRIMARY KEY, name VARCHAR(64), score INT, country VARCHAR(2))");
+            statement.execute("CREATE TABLE events (id BIGINT PRIMARY KEY, user_id BIGINT, type VARCHAR(16))");
+        }
+
+        SQLQueryBuilder builder = adapter.getBuilder();
+        String[] countries = {"TN", "FR", "DE", "US", "JP"};
+        for (int from = 1; from <= rows; from += 1000) {
+            SQLInsertQuery users = builder.insert().into("users");
+            SQLInsertQuery events = builder.insert().into("events");
+            for (int id = from; id < from + 1000 && id <= rows; id++) {
+                Map<String, Object> user = new LinkedHashMap<>();
+                user.put("id", (long) id);
+                user.put("name", "user " + id);
+                user.put("score", id % 100);
+                user.put("country", countries[id % countries.length]);
+                users.row(user);
+
+                Map<String, Object> event = new LinkedHashMap<>();
+                event.put("id", (long) id);
+                event.put("user_id", (long) id);
+                event.put("type", "signup");
+                events.row(event);
+            }
+            adapter.execute(users.build());
+            adapter.execute(events.build());
+        }
+    }
+
+    private void pointSelect(SQLAdapter adapter, ThreadLocalRandom random) throws SQLException {
+        Query query = adapter.getBuilder()
+                .select("id", "name", "score")
+                .from("users")
+                .where(Where.equal("id", 1 + random.nextLong(rows)))
+                .build();
+        adapter.fetch(query);
+    }
+
+    private void rangeScan(SQLAdapter adapter, ThreadLocalRandom random) throws SQLException {
+        long from = 1 + random.nextLong(Math.max(1, rows - RANGE_SIZE));
+        Query query = adapter.getBuilder()
+                .select("id", "name", "score", "country")
+                .from("users")
+                .where(Where.between("id", from, from + RANGE_SIZE - 1))
+                .orderBy("id")
+                .build();
+        adapter.fetch(query);
+    }
+
+    private void batchedInsert(SQLAdapter adapter, ThreadLocalRandom random) throws SQLException {
+        List<Query> inserts = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            inserts.add(adapter.getBuilder()
+                    .insert()
+                    .into("events")
+                    .value("id", nextEventId.getAndIncrement())
+                    .value("user_id", 1 + random.nextLong(rows))
+                    .value("type", "click")
+                    .build());
+        }
+        adapter.executeBatch(inserts);
+    }
+
+    private void update(SQLAdapter adapter, ThreadLocalRandom random) throws SQLException {
+        Query query = adapter.getBuilder()
+                .update("users")
+                .set("score", random.nextInt(100))
+                .where(Where.equal("id", 1 + random.nextLong(rows)))
+                .build();
+        adapter.execute(query);
+    }
+
+    private void delete(SQLAdapter adapter, ThreadLocalRandom random) throws SQLException {
+        // Deletes the loaded events in order; once exhausted, deletes match no row
+        Query query = adapter.getBuilder()
+                .delete("events")
+                .where(Where.equal("id", nextDeletedId.getAndIncrement()))
+                .build();
+        adapter.execute(query);
+    }
+
+    /**
+     * Runs an operation in a loop on the given number of threads, after a warmup of the same duration.
+     *
+     * @param operation The operation to measure.
+     * @param threads   The number of threads running it.
+     * @return The throughput and latency of the operation.
+     * @throws Exception If a thread cannot connect.
+     */
+    private Result measure(Operation operation, int threads) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CyclicBarrier start = new CyclicBarrier(threads);
+            List<Future<Recorder>> workers = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                workers.add(executor.submit(() -> {
+                    try (SQLAdapter adapter = SQLAdapter.connect(url, "sa", "")) {
+                        ThreadLocalRandom random = ThreadLocalRandom.current();
+                        loop(operation, adapter, random, new Recorder(), System.nanoTime() + durationNanos);
+
+                        start.await();
+                        Recorder recorder = new Recorder();
+                        long begin = System.nanoTime();
+                        loop(operation, adapter, random, recorder, begin + durationNanos);
+                        recorder.elapsedNanos = System.nanoTime() - begin;
+                        return recorder;
+                    }
+                }));
+            }
+
+            Recorder total = new Recorder();
+            for (Future<Recorder> worker : workers) {
+                total.merge(worker.get());
+            }
+            return new Result(total);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void loop(Operation operation, SQLAdapter adapter, ThreadLocalRandom random, Recorder recorder, long end) {
+        long now;
+        while ((now = System.nanoTime()) < end) {
+            try {
+                operation.run(adapter, random);
+                recorder.record(System.nanoTime() - now);
+            } catch (SQLException | RuntimeException e) {
+                recorder.errors++;
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface Operation {
+        void run(SQLAdapter adapter, ThreadLocalRandom random) throws SQLException;
+    }
+
+    /**
+     * The latencies recorded by a thread.
+     */
+    private static final class Recorder {
+        private long[] latencies = new long[1 << 16];
+        private int count;
+        private long errors;
+        private long elapsedNanos;
+
+        void record(long latencyNanos) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latencyNanos;
+        }
+
+        void merge(Recorder other) {
+            for (int i = 0; i < other.count; i++) {
+                record(other.latencies[i]);
+            }
+            errors += other.errors;
+            elapsedNanos = Math.max(elapsedNanos, other.elapsedNanos);
+        }
+    }
+
+    /**
+     * The measured throughput and latency percentiles of a scenario.
+     */
+    private static final class Result {
+        private final long operations;
+        private final long errors;
+        private final long elapsedNanos;
+        private final long[] latencies;
+
+        Result(Recorder recorder) {
+            this.operations = recorder.count;
+            this.errors = recorder.errors;
+            this.elapsedNanos = recorder.elapsedNanos;
+            this.latencies = Arrays.copyOf(recorder.latencies, recorder.count);
+            Arrays.sort(this.latencies);
+        }
+
+        double percentileMicros(double percentile) {
+            if (latencies.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(percentile / 100 * latencies.length);
+            return latencies[Math.min(latencies.length - 1, Math.max(0, rank - 1))] / 1000.0;
+        }
+
+        String toJson(String run, String scenario, int threads, String url) {
+            double throughput = elapsedNanos == 0 ? 0 : operations / (elapsedNanos / 1e9);
+            return String.format(Locale.ROOT,
+                    "{\"run\":\"%s\",\"scenario\":\"%s\",\"threads\":%d,\"url\":\"%s\",\"java\":\"%s\","
+                            + "\"operations\":%d,\"errors\":%d,\"durationMs\":%d,\"throughput\":%.1f,"
+                            + "\"p50Us\":%.1f,\"p95Us\":%.1f,\"p99Us\":%.1f,\"maxUs\":%.1f}",
+                    run, scenario, threads, url.replace("\"", "\\\""), System.getProperty("java.version"),
+                    operations, errors, elapsedNanos / 1_000_000, throughput,
+                    percentileMicros(50), percentileMicros(95), percentileMicros(99), percentileMicros(100));
+        }
+    }
+}
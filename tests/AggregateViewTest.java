@@ -0,0 +1,188 @@
+import core.clauses.Aggregate;
+import core.clauses.Where;
+import org.junit.Before;
+import org.junit.Test;
+import sql.AggregateView;
+import sql.SQLAdapter;
+
+import java.math.BigDecimal;
+import java.sql.*;
+import java.time.Duration;
+import java.util.*;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class AggregateViewTest {
+
+    private static final String SEED = "SELECT region, COUNT(*) AS m0, COUNT(amount) AS m1_count, SUM(amount) AS m1 "
+            + "FROM orders WHERE status = 'paid' GROUP BY region";
+
+    private Connection mockConnection;
+    private Statement mockStatement;
+    private SQLAdapter adapter;
+
+    @Before
+    public void setUp() throws Exception {
+        mockConnection = mock(Connection.class);
+        mockStatement = mock(Statement.class);
+        PreparedStatement mockPreparedStatement = mock(PreparedStatement.class);
+        when(mockConnection.isClosed()).thenReturn(false);
+        when(mockConnection.createStatement()).thenReturn(mockStatement);
+        when(mockConnection.prepareStatement(anyString())).thenReturn(mockPreparedStatement);
+        when(mockPreparedStatement.executeUpdate()).thenReturn(1);
+
+        java.lang.reflect.Constructor<SQLAdapter> constructor = SQLAdapter.class.getDeclaredConstructor(Connection.class);
+        constructor.setAccessible(true);
+        adapter = constructor.newInstance(mockConnection);
+    }
+
+    private ResultSet groups(Object[]... rows) throws SQLException {
+        ResultSet resultSet = mock(ResultSet.class);
+        ResultSetMetaData metaData = mock(ResultSetMetaData.class);
+        String[] labels = {"region", "m0", "m1_count", "m1"};
+        when(resultSet.getMetaData()).thenReturn(metaData);
+        when(metaData.getColumnCount()).thenReturn(labels.length);
+        for (int i = 0; i < labels.length; i++) {
+            when(metaData.getColumnLabel(i + 1)).thenReturn(labels[i]);
+        }
+
+        int[] row = {-1};
+        when(resultSet.next()).thenAnswer(invocation -> ++row[0] < rows.length);
+        for (int column = 0; column < labels.length; column++) {
+            Object first = rows.length > 0 ? rows[0][column] : null;
+            Object[] others = new Object[Math.max(0, rows.length - 1)];
+            for (int i = 1; i < rows.length; i++) {
+                others[i - 1] = rows[i][column];
+            }
+            when(resultSet.getObject(column + 1)).thenReturn(first, others);
+        }
+        return resultSet;
+    }
+
+    private AggregateView openView() throws SQLException {
+        return adapter.aggregateView("orders")
+                .groupBy("region")
+                .measure(Aggregate.count().as("orders"), Aggregate.sum("amount").as("total"))
+                .where(Where.equal("status", "paid"))
+                .reconcileEvery(Duration.ZERO)
+                .refreshDelay(Duration.ZERO)
+                .open();
+    }
+
+    private static Map<String, Object> order(String region, Object amount, String status) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("region", region);
+        row.put("amount", amount);
+        row.put("status", status);
+        return row;
+    }
+
+    @Test
+    public void testInsertedRowsAreAppliedToTheirGroup() throws Exception {
+        ResultSet seed = groups(new Object[]{"eu", 2L, 2L, new BigDecimal("30")}, new Object[]{"us", 1L, 1L, new BigDecimal("5")});
+        when(mockStatement.executeQuery(SEED)).thenReturn(seed);
+
+        try (AggregateView view = openView()) {
+            adapter.execute(adapter.getBuilder().insert().into("orders")
+                    .row(order("eu", 12, "paid"))
+                    .row(order("fr", 1.5, "paid"))
+                    .row(order("eu", 100, "draft"))
+                    .build());
+            adapter.execute(adapter.getBuilder().update("orders").set("note", "checked").build());
+
+            Map<String, Object> europe = view.get("eu").get();
+            assertEquals(3L, europe.get("orders"));
+            assertEquals(0, new BigDecimal("42").compareTo((BigDecimal) europe.get("total")));
+            assertEquals(1L, view.get("fr").get().get("orders"));
+            assertEquals(1L, view.get("us").get().get("orders"));
+            assertFalse(view.get("de").isPresent());
+            assertFalse(view.isStale());
+            assertEquals(2, view.getMetrics().getAppliedRows());
+            // Reads never query the database again
+            verify(mockStatement, times(1)).executeQuery(anyString());
+        }
+    }
+
+    @Test
+    public void testDeletesReconcileTheView() throws Exception {
+        ResultSet seed = groups(new Object[]{"eu", 2L, 2L, new BigDecimal("30")});
+        ResultSet reconciled = groups(new Object[]{"eu", 1L, 1L, new BigDecimal("10")});
+        when(mockStatement.executeQuery(SEED)).thenReturn(seed, reconciled);
+
+        try (AggregateView view = openView()) {
+            adapter.execute(adapter.getBuilder().delete("orders").where(Where.equal("id", 7)).build());
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (view.getMetrics().getReconciliations() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(1L, view.get("eu").get().get("orders"));
+            assertEquals(0, BigDecimal.TEN.compareTo((BigDecimal) view.get("eu").get().get("total")));
+            assertEquals(1, view.getMetrics().getDriftedGroups());
+        }
+    }
+
+    @Test
+    public void testInsertsOverlappingReconciliationAreNotCountedTwice() throws Exception {
+        ResultSet seed = groups(new Object[]{"eu", 3L, 3L, new BigDecimal("42")});
+        when(mockStatement.executeQuery(SEED)).thenAnswer(invocation -> {
+            // Commits while the seed query runs, so the snapshot may already count it
+            adapter.execute(adapter.getBuilder().insert().into("orders").row(order("eu", 12, "paid")).build());
+            return seed;
+        });
+
+        try (AggregateView view = openView()) {
+            assertEquals(3L, view.get("eu").get().get("orders"));
+            assertEquals(0, new BigDecimal("42").compareTo((BigDecimal) view.get("eu").get().get("total")));
+            assertFalse(view.isStale());
+            assertEquals(1, view.getMetrics().getOverlappedRows());
+            assertEquals(0, view.getMetrics().getAppliedRows());
+        }
+    }
+
+    @Test
+    public void testSteadyInsertsDoNotKeepReconciling() throws Exception {
+        Deque<ResultSet> results = new ArrayDeque<>();
+        for (int i = 0; i < 6; i++) {
+            results.add(groups(new Object[]{"eu", 2L, 2L, new BigDecimal("30")}));
+        }
+        when(mockStatement.executeQuery(SEED)).thenAnswer(invocation -> {
+            Thread.sleep(20);
+            return results.poll();
+        });
+
+        try (AggregateView view = openView()) {
+            Thread writer = new Thread(() -> {
+                while (!Thread.currentThread().isInterrupted()) {
+                    try {
+                        adapter.execute(adapter.getBuilder().insert().into("orders").row(order("eu", 1, "paid")).build());
+                    } catch (SQLException e) {
+                        return;
+                    }
+                }
+            });
+            writer.start();
+            try {
+                for (int i = 0; i < 3; i++) {
+                    view.reconcile();
+                }
+                Thread.sleep(200);
+            } finally {
+                writer.interrupt();
+                writer.join();
+            }
+
+            AggregateView.Metrics metrics = view.getMetrics();
+            assertEquals(4, metrics.getReconciliations());
+            assertFalse(view.isStale());
+            assertTrue(metrics.getOverlappedRows() > 0);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDistinctCountsAreRejected() {
+        adapter.aggregateView("orders").measure(Aggregate.countDistinct("customer_id"));
+    }
+}
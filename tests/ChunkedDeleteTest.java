@@ -0,0 +1,68 @@
+import core.clauses.Where;
+import core.queries.Query;
+import org.junit.Before;
+import org.junit.Test;
+import sql.ChunkedDelete;
+import sql.SQLAdapter;
+import sql.SQLQueryBuilder;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class ChunkedDeleteTest {
+
+    private SQLAdapter mockAdapter;
+    private SQLQueryBuilder builder;
+
+    @Before
+    public void setUp() {
+        mockAdapter = mock(SQLAdapter.class);
+        builder = new SQLQueryBuilder();
+    }
+
+    @Test
+    public void testDeletesChunksUntilAShortChunk() throws Exception {
+        List<String> statements = new ArrayList<>();
+        when(mockAdapter.execute(any(Query.class))).thenAnswer(invocation -> {
+            statements.add(((Query) invocation.getArgument(0)).getNativeQuery());
+            return Collections.singletonMap("affectedRows", statements.size() < 3 ? 100 : 40);
+        });
+
+        List<ChunkedDelete.Progress> progress = new ArrayList<>();
+        long deleted = new ChunkedDelete(mockAdapter, builder.delete("events").where(Where.lessThan("id", 1000)), "id")
+                .chunkSize(100)
+                .onProgress(progress::add)
+                .run();
+
+        assertEquals(240, deleted);
+        assertEquals(3, statements.size());
+        assertEquals("DELETE FROM events WHERE id < ? ORDER BY id ASC LIMIT 100", statements.get(0));
+        assertEquals(3, progress.size());
+        assertEquals(240, progress.get(2).getDeletedRows());
+    }
+
+    @Test
+    public void testSlowChunksAreShrunk() throws Exception {
+        List<ChunkedDelete.Progress> progress = new ArrayList<>();
+        when(mockAdapter.execute(any(Query.class))).thenAnswer(invocation -> {
+            Thread.sleep(5);
+            return Collections.singletonMap("affectedRows", progress.size() < 2 ? 1000 / (progress.size() + 1) : 0);
+        });
+
+        new ChunkedDelete(mockAdapter, builder.delete("events"), "id")
+                .chunkSize(1000)
+                .targetChunkLatency(Duration.ofNanos(1))
+                .onProgress(progress::add)
+                .run();
+
+        assertEquals(1000, progress.get(0).getChunkSize());
+        assertEquals(500, progress.get(1).getChunkSize());
+        assertEquals(250, progress.get(2).getChunkSize());
+    }
+}
@@ -0,0 +1,84 @@
+import core.clauses.Where;
+import core.queries.Query;
+import org.junit.Before;
+import org.junit.Test;
+import sql.FetchPlan;
+import sql.SQLAdapter;
+import sql.SQLQueryBuilder;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class FetchPlanTest {
+
+    private SQLAdapter mockAdapter;
+
+    @Before
+    public void setUp() {
+        mockAdapter = mock(SQLAdapter.class);
+        when(mockAdapter.getBuilder()).thenReturn(new SQLQueryBuilder());
+    }
+
+    private static Map<String, Object> row(Object... columns) {
+        Map<String, Object> row = new HashMap<>();
+        for (int i = 0; i < columns.length; i += 2) {
+            row.put((String) columns[i], columns[i + 1]);
+        }
+        return row;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testJoinedAssociationIsStitchedFromOneQuery() throws Exception {
+        List<String> statements = new ArrayList<>();
+        when(mockAdapter.fetch(any(Query.class))).thenAnswer(invocation -> {
+            statements.add(((Query) invocation.getArgument(0)).getNativeQuery());
+            return Arrays.asList(
+                    row("id", 1L, "name", "Alice", "orders__id", 10L, "orders__user_id", 1L),
+                    row("id", 1L, "name", "Alice", "orders__id", 11L, "orders__user_id", 1L),
+                    row("id", 2L, "name", "Bob", "orders__id", null, "orders__user_id", null));
+        });
+
+        List<Map<String, Object>> users = new FetchPlan(mockAdapter, "users", "id", "name")
+                .where(Where.equal("users.country_iso", "TN"))
+                .hasMany("orders", "orders", "user_id", FetchPlan.Strategy.JOIN, "id")
+                .fetch();
+
+        assertEquals(Collections.singletonList("SELECT users.name, users.id, orders.id AS orders__id, orders.user_id AS orders__user_id"
+                + " FROM users LEFT JOIN orders AS orders ON orders.user_id = users.id WHERE users.country_iso = 'TN'"), statements);
+        assertEquals(2, users.size());
+        assertEquals(2, ((List<Map<String, Object>>) users.get(0).get("orders")).size());
+        assertTrue(((List<Map<String, Object>>) users.get(1).get("orders")).isEmpty());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testBatchedAssociationUsesOneInQueryPerChunk() throws Exception {
+        List<String> statements = new ArrayList<>();
+        when(mockAdapter.fetch(any(Query.class))).thenAnswer(invocation -> {
+            String sql = ((Query) invocation.getArgument(0)).getNativeQuery();
+            statements.add(sql);
+            if (sql.startsWith("SELECT * FROM users")) {
+                return Arrays.asList(row("id", 1), row("id", 2), row("id", 3));
+            }
+            return sql.contains("(1, 2)")
+                    ? Arrays.asList(row("user_id", 1, "city", "Tunis"), row("user_id", 1, "city", "Sousse"))
+                    : Collections.singletonList(row("user_id", 3, "city", "Sfax"));
+        });
+
+        List<Map<String, Object>> users = new FetchPlan(mockAdapter, "users", "id")
+                .hasMany("addresses", "addresses", "user_id", FetchPlan.Strategy.BATCH)
+                .batchSize(2)
+                .fetch();
+
+        assertEquals(Arrays.asList("SELECT * FROM users",
+                "SELECT * FROM addresses WHERE user_id IN (1, 2)",
+                "SELECT * FROM addresses WHERE user_id IN (3)"), statements);
+        assertEquals(2, ((List<Map<String, Object>>) users.get(0).get("addresses")).size());
+        assertTrue(((List<Map<String, Object>>) users.get(1).get("addresses")).isEmpty());
+        assertEquals("Sfax", ((List<Map<String, Object>>) users.get(2).get("addresses")).get(0).get("city"));
+    }
+}
@@ -0,0 +1,31 @@
+import org.junit.Test;
+import sql.Fingerprint;
+
+import static org.junit.Assert.*;
+
+public class FingerprintTest {
+
+    @Test
+    public void testLiteralsAreReplacedByPlaceholders() {
+        assertEquals("SELECT id FROM users WHERE age < ? AND name = ? LIMIT ?",
+                Fingerprint.of("SELECT id FROM users WHERE age < 27 AND name = 'O''Brien' LIMIT 25"));
+    }
+
+    @Test
+    public void testIdentifiersAreKept() {
+        assertEquals("SELECT t1.c2, `col 1` FROM t1 WHERE x > -?",
+                Fingerprint.of("SELECT t1.c2, `col 1` FROM t1 WHERE x > -3.5"));
+    }
+
+    @Test
+    public void testQuotedAliasesAndIdentifiersAreKept() {
+        assertEquals("SELECT id AS 'user_id', \"Name\" FROM users WHERE name = ? AND alias = ?",
+                Fingerprint.of("SELECT id AS 'user_id', \"Name\" FROM users WHERE name = 'as' AND alias = 'x'"));
+    }
+
+    @Test
+    public void testListsOfDifferentLengthsShareTheFingerprint() {
+        assertEquals(Fingerprint.of("SELECT * FROM users WHERE id IN (1, 2)"),
+                Fingerprint.of("SELECT * FROM users  WHERE id IN (1, 2, 3, 4)"));
+    }
+}
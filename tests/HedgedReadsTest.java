@@ -0,0 +1,104 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import sql.Deadline;
+import sql.HedgedReads;
+import sql.SQLAdapter;
+import sql.SQLQueryBuilder;
+import sql.queries.SQLSelectQuery;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class HedgedReadsTest {
+
+    private SQLAdapter slowAdapter;
+    private SQLAdapter fastAdapter;
+    private CountDownLatch cancelled;
+    private SQLSelectQuery query;
+
+    @Before
+    public void setUp() throws Exception {
+        slowAdapter = mock(SQLAdapter.class);
+        fastAdapter = mock(SQLAdapter.class);
+        cancelled = new CountDownLatch(1);
+        query = new SQLQueryBuilder().select("id").from("users");
+
+        // The slow replica only answers once its statement is cancelled
+        when(slowAdapter.fetch(any(SQLSelectQuery.class))).thenAnswer(invocation -> {
+            if (!cancelled.await(5, TimeUnit.SECONDS)) {
+                return Collections.singletonList(Collections.singletonMap("id", "slow"));
+            }
+            throw new SQLException("Statement cancelled.");
+        });
+        doAnswer(invocation -> {
+            cancelled.countDown();
+            return null;
+        }).when(slowAdapter).cancel();
+        when(fastAdapter.fetch(any(SQLSelectQuery.class)))
+                .thenReturn(Collections.singletonList(Collections.singletonMap("id", "fast")));
+    }
+
+    @After
+    public void tearDown() {
+        cancelled.countDown();
+    }
+
+    @Test
+    public void testSlowReadIsHedgedAndTheLoserCancelled() throws Exception {
+        try (HedgedReads reads = new HedgedReads(Arrays.asList(slowAdapter, fastAdapter))
+                .initialDelay(Duration.ofMillis(10))
+                .budget(1)) {
+            List<Map<String, Object>> rows = reads.fetch(query);
+
+            assertEquals("fast", rows.get(0).get("id"));
+            verify(slowAdapter).cancel();
+            verify(fastAdapter, never()).cancel();
+            HedgedReads.Metrics metrics = reads.getMetrics();
+            assertEquals(1, metrics.getReads());
+            assertEquals(1, metrics.getHedges());
+            assertEquals(1, metrics.getHedgeWins());
+        }
+    }
+
+    @Test
+    public void testReadsAreNotHedgedWithoutBudget() throws Exception {
+        try (HedgedReads reads = new HedgedReads(Arrays.asList(fastAdapter, slowAdapter))
+                .initialDelay(Duration.ofMillis(10))
+                .budget(0)) {
+            assertEquals("fast", reads.fetch(query).get(0).get("id"));
+            verify(slowAdapter, never()).fetch(any(SQLSelectQuery.class));
+            assertEquals(0, reads.getMetrics().getHedges());
+        }
+    }
+
+    @Test
+    public void testReplicasReadUnderTheCallerDeadline() throws Exception {
+        List<Optional<Deadline>> seen = Collections.synchronizedList(new ArrayList<>());
+        when(fastAdapter.fetch(any(SQLSelectQuery.class))).thenAnswer(invocation -> {
+            seen.add(Deadline.current());
+            return Collections.singletonList(Collections.singletonMap("id", "fast"));
+        });
+
+        try (HedgedReads reads = new HedgedReads(Arrays.asList(fastAdapter, slowAdapter));
+             Deadline deadline = Deadline.after(Duration.ofSeconds(30))) {
+            reads.fetch(query);
+
+            assertEquals(1, seen.size());
+            assertTrue(seen.get(0).isPresent());
+            assertEquals(deadline.remaining().toMillis(), seen.get(0).get().remaining().toMillis(), 1000);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAtLeastTwoReplicasAreRequired() {
+        new HedgedReads(Collections.singletonList(fastAdapter));
+    }
+}
@@ -0,0 +1,127 @@
+import core.queries.Query;
+import org.junit.Before;
+import org.junit.Test;
+import sql.ParallelScan;
+import sql.SQLAdapter;
+import sql.SQLQueryBuilder;
+
+import java.sql.SQLException;
+import java.util.*;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class ParallelScanTest {
+
+    private SQLAdapter mockAdapter;
+    private List<String> statements;
+
+    @Before
+    public void setUp() throws Exception {
+        mockAdapter = mock(SQLAdapter.class);
+        statements = Collections.synchronizedList(new ArrayList<>());
+        when(mockAdapter.getBuilder()).thenReturn(new SQLQueryBuilder());
+
+        Map<String, Object> bounds = new HashMap<>();
+        bounds.put("lower_bound", 1L);
+        bounds.put("upper_bound", 100L);
+        when(mockAdapter.execute(any(Query.class))).thenReturn(bounds);
+    }
+
+    private static Map<String, Object> row(String statement) {
+        return Collections.singletonMap("statement", statement);
+    }
+
+    @Test
+    public void testTableIsSplitIntoKeyRanges() throws Exception {
+        when(mockAdapter.fetch(any(Query.class))).thenAnswer(invocation -> {
+            String statement = ((Query) invocation.getArgument(0)).getNativeQuery();
+            statements.add(statement);
+            return Collections.singletonList(row(statement));
+        });
+
+        List<Map<String, Object>> rows = new ArrayList<>();
+        long scanned = new ParallelScan(Arrays.asList(mockAdapter, mockAdapter), "events", "id", "id", "type")
+                .partitions(4)
+                .ordered(true)
+                .run(rows::add);
+
+        List<String> expected = Arrays.asList(
+                "SELECT id, type FROM events WHERE (id >= 1 AND id < 25)",
+                "SELECT id, type FROM events WHERE (id >= 25 AND id < 50)",
+                "SELECT id, type FROM events WHERE (id >= 50 AND id < 75)",
+                "SELECT id, type FROM events WHERE (id >= 75 AND id <= 100)");
+        assertEquals(4, scanned);
+        assertEquals(new HashSet<>(expected), new HashSet<>(statements));
+        List<Object> delivered = new ArrayList<>();
+        rows.forEach(row -> delivered.add(row.get("statement")));
+        assertEquals(expected, delivered);
+    }
+
+    @Test
+    public void testSlowSinkBoundsTheLoadedPartitions() throws Exception {
+        int[] undelivered = {0, 0};
+        when(mockAdapter.fetch(any(Query.class))).thenAnswer(invocation -> {
+            synchronized (undelivered) {
+                undelivered[1] = Math.max(undelivered[1], ++undelivered[0]);
+            }
+            return Collections.singletonList(row(((Query) invocation.getArgument(0)).getNativeQuery()));
+        });
+
+        long scanned = new ParallelScan(Arrays.asList(mockAdapter, mockAdapter), "events", "id")
+                .partitions(20)
+                .ordered(true)
+                .run(row -> {
+                    try {
+                        Thread.sleep(5);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    synchronized (undelivered) {
+                        undelivered[0]--;
+                    }
+                });
+
+        assertEquals(20, scanned);
+        // Loaded partitions wait for the sink rather than piling up
+        assertTrue(undelivered[1] <= 2 * ParallelScan.PARTITIONS_PER_ADAPTER);
+    }
+
+    @Test
+    public void testFailedPartitionIsRetried() throws Exception {
+        when(mockAdapter.fetch(any(Query.class)))
+                .thenThrow(new SQLException("connection reset"))
+                .thenReturn(Collections.singletonList(row("retried")));
+
+        long scanned = new ParallelScan(Collections.singletonList(mockAdapter), "events", "id")
+                .partitions(1)
+                .run(row -> {
+                });
+
+        assertEquals(1, scanned);
+        verify(mockAdapter, times(2)).fetch(any(Query.class));
+    }
+
+    @Test(expected = SQLException.class)
+    public void testScanFailsOnceRetriesAreExhausted() throws Exception {
+        when(mockAdapter.fetch(any(Query.class))).thenThrow(new SQLException("connection reset"));
+
+        new ParallelScan(Collections.singletonList(mockAdapter), "events", "id")
+                .partitions(2)
+                .maxRetries(1)
+                .run(row -> {
+                });
+    }
+
+    @Test
+    public void testEmptyTableIsNotScanned() throws Exception {
+        when(mockAdapter.execute(any(Query.class))).thenReturn(new HashMap<>());
+
+        long scanned = new ParallelScan(Collections.singletonList(mockAdapter), "events", "id").run(row -> {
+        });
+
+        assertEquals(0, scanned);
+        verify(mockAdapter, never()).fetch(any(Query.class));
+    }
+}
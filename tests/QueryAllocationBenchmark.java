@@ -0,0 +1,56 @@
+import core.clauses.Where;
+import sql.SQLQueryBuilder;
+import sql.queries.SQLInsertQuery;
+import sql.queries.SQLSelectQuery;
+import sql.queries.SQLUpdateQuery;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.IntConsumer;
+
+/**
+ * Measures the bytes allocated per built query, building a fresh query each time versus recycling one query with
+ * {@code reset()}.
+ * <p>
+ * Run with {@code java -cp out:tests QueryAllocationBenchmark [iterations]} on a HotSpot JVM.
+ * </p>
+ */
+public class QueryAllocationBenchmark {
+
+    private static final SQLQueryBuilder BUILDER = new SQLQueryBuilder();
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        Where byId = Where.equal("id", 42);
+        SQLSelectQuery select = BUILDER.select("id", "name");
+        SQLUpdateQuery update = BUILDER.update("users");
+        SQLInsertQuery insert = BUILDER.insert();
+
+        report("select, fresh", iterations, i -> BUILDER.select("id", "name").from("users").where(byId).limit(10).build());
+        report("select, recycled", iterations, i -> select.reset().from("users").where(byId).limit(10).build());
+        report("update, fresh", iterations, i -> BUILDER.update("users").set("score", i).where(byId).build());
+        report("update, recycled", iterations, i -> update.reset().set("score", i).where(byId).build());
+        report("insert, fresh", iterations, i -> BUILDER.insert().into("events").value("type", "click").value("score", i).build());
+        report("insert, recycled", iterations, i -> insert.reset().into("events").value("type", "click").value("score", i).build());
+    }
+
+    private static void report(String name, int iterations, IntConsumer build) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+
+        // Warm up so the JIT has compiled and scalar-replaced what it can
+        for (int i = 0; i < iterations; i++) {
+            build.accept(i);
+        }
+
+        long before = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            build.accept(i);
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+        System.out.printf("%-18s %8.1f bytes/op %8.1f ns/op%n", name, (double) allocated / iterations, (double) elapsed / iterations);
+    }
+}
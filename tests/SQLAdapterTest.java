@@ -1,14 +1,34 @@
+import core.exceptions.AdmissionRejectedException;
 import core.exceptions.ConnectionClosedException;
 import core.exceptions.QueryNotBuiltException;
+import core.exceptions.QueryTimeoutException;
 import core.queries.Query;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import sql.AdmissionController;
+import sql.Deadline;
+import sql.FetchSizePolicy;
+import sql.MaterializedResult;
+import sql.QueryExecution;
 import sql.SQLAdapter;
+import sql.queries.SQLInsertQuery;
 import sql.queries.SQLSelectQuery;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.*;
-import java.util.Map;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
 
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
@@ -122,4 +142,641 @@ public class SQLAdapterTest {
         assertEquals(1, result.size());
         assertEquals(3, result.get("affectedRows"));
     }
+
+    @Test
+    public void testFetchReturnsEveryRow() throws Exception {
+        SQLAdapter adapter = createAdapterWithMockConnection();
+
+        Query mockQuery = mock(SQLSelectQuery.class);
+        when(mockQuery.isBuilt()).thenReturn(true);
+        when(mockQuery.getNativeQuery()).thenReturn("SELECT id FROM users");
+
+        when(mockConnection.isClosed()).thenReturn(false);
+        when(mockStatement.executeQuery("SELECT id FROM users")).thenReturn(mockResultSet);
+
+        when(mockResultSet.next()).thenReturn(true, true, false);
+        when(mockResultSet.getMetaData()).thenReturn(mockMetaData);
+        when(mockMetaData.getColumnCount()).thenReturn(1);
+        when(mockMetaData.getColumnLabel(1)).thenReturn("id");
+        when(mockResultSet.getObject(1)).thenReturn(1, 2);
+
+        List<Map<String, Object>> rows = adapter.fetch(mockQuery);
+        assertEquals(2, rows.size());
+        assertEquals(1, rows.get(0).get("id"));
+        assertEquals(2, rows.get(1).get("id"));
+    }
+
+    @Test
+    public void testPublishReadsRowsOnDemandAndClosesOnCancel() throws Exception {
+        SQLAdapter adapter = createAdapterWithMockConnection();
+
+        SQLSelectQuery mockQuery = mock(SQLSelectQuery.class);
+        when(mockQuery.isBuilt()).thenReturn(true);
+        when(mockQuery.getNativeQuery()).thenReturn("SELECT id FROM users");
+
+        when(mockConnection.isClosed()).thenReturn(false);
+        when(mockConnection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)).thenReturn(mockStatement);
+        when(mockStatement.executeQuery("SELECT id FROM users")).thenReturn(mockResultSet);
+
+        when(mockResultSet.next()).thenReturn(true);
+        when(mockResultSet.getMetaData()).thenReturn(mockMetaData);
+        when(mockMetaData.getColumnCount()).thenReturn(1);
+        when(mockMetaData.getColumnLabel(1)).thenReturn("id");
+        when(mockResultSet.getObject(1)).thenReturn(1, 2, 3);
+
+        List<Map<String, Object>> received = new ArrayList<>();
+        Flow.Subscription[] subscription = new Flow.Subscription[1];
+        adapter.publish(mockQuery).subscribe(new Flow.Subscriber<Map<String, Object>>() {
+            @Override
+            public void onSubscribe(Flow.Subscription s) {
+                subscription[0] = s;
+            }
+
+            @Override
+            public void onNext(Map<String, Object> item) {
+                received.add(item);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                fail(throwable.getMessage());
+            }
+
+            @Override
+            public void onComplete() {
+                fail("The result has more rows.");
+            }
+        });
+
+        verify(mockStatement, never()).executeQuery(anyString());
+        subscription[0].request(2);
+        assertEquals(2, received.size());
+        verify(mockResultSet, times(2)).next();
+        verify(mockStatement).setFetchSize(2);
+
+        subscription[0].cancel();
+        verify(mockResultSet).close();
+        verify(mockStatement).close();
+    }
+
+    @Test
+    public void testExecuteAppliesAdapterQueryTimeout() throws Exception {
+        SQLAdapter adapter = createAdapterWithMockConnection();
+        adapter.setQueryTimeout(Duration.ofMillis(4500));
+
+        Query mockQuery = mock(Query.class);
+        when(mockQuery.isBuilt()).thenReturn(true);
+        when(mockQuery.getNativeQuery()).thenReturn("DELETE FROM users");
+        when(mockConnection.isClosed()).thenReturn(false);
+
+        adapter.execute(mockQuery);
+        verify(mockStatement).setQueryTimeout(5);
+    }
+
+    @Test(expected = QueryTimeoutException.class)
+    public void testExecuteReportsDriverTimeoutDistinctly() throws Exception {
+        SQLAdapter adapter = createAdapterWithMockConnection();
+
+        Query mockQuery = mock(Query.class);
+        when(mockQuery.isBuilt()).thenReturn(true);
+        when(mockQuery.getNativeQuery()).thenReturn("DELETE FROM users");
+        when(mockConnection.isClosed()).thenReturn(false);
+        when(mockStatement.executeUpdate("DELETE FROM users")).thenThrow(new SQLTimeoutException("timeout"));
+
+        adapter.execute(mockQuery);
+    }
+
+    @Test
+    public void testExecuteFailsFastOnceTheDeadlineExpired() throws Exception {
+        SQLAdapter adapter = createAdapterWithMockConnection();
+
+        Query mockQuery = mock(Query.class);
+        when(mockQuery.isBuilt()).thenReturn(true);
+        when(mockConnection.isClosed()).thenReturn(false);
+
+        try (Deadline ignored = Deadline.after(Duration.ZERO)) {
+            adapter.execute(mockQuery);
+            fail("The expired deadline should have rejected the query.");
+        } catch (QueryTimeoutException e) {
+            verify(mockConnection, never()).createStatement();
+        }
+        assertFalse(Deadline.current().isPresent());
+    }
+
+    @Test
+    public void testUpdateByKeyRunsChunksInOneTransaction() throws Exception {
+        SQLAdapter adapter = createAdapterWithMockConnection();
+        PreparedStatement mockPreparedStatement = mock(PreparedStatement.class);
+
+        when(mockConnection.isClosed()).thenReturn(false);
+        when(mockConnection.getAutoCommit()).thenReturn(true);
+        when(mockConnection.prepareStatement(anyString())).thenReturn(mockPreparedStatement);
+        when(mockPreparedStatement.executeUpdate()).thenReturn(2, 1);
+
+        Map<Object, Map<String, Object>> rows = new LinkedHashMap<>();
+        rows.put(1, Collections.singletonMap("score", 10));
+        rows.put(2, Collections.singletonMap("score", 20));
+        rows.put(3, Collections.singletonMap("score", 30));
+
+        int[] affectedRows = adapter.updateByKey("users", "id", rows, 2);
+
+        assertArrayEquals(new int[]{2, 1}, affectedRows);
+        verify(mockConnection).setAutoCommit(false);
+        verify(mockConnection).commit();
+        verify(mockConnection).setAutoCommit(true);
+        verify(mockPreparedStatement).setObject(1, 1);
+        verify(mockPreparedStatement).setObject(2, 10);
+    }
+
+    @Test
+    public void testExecuteInTransactionRollsBackOnFailure() throws Exception {
+        SQLAdapter adapter = createAdapterWithMockConnection();
+        PreparedStatement mockPreparedStatement = mock(PreparedStatement.class);
+
+        when(mockConnection.isClosed()).thenReturn(false);
+        when(mockConnection.getAutoCommit()).thenReturn(true);
+        when(mockConnection.prepareStatement(anyString())).thenReturn(mockPreparedStatement);
+        when(mockPreparedStatement.executeUpdate()).thenThrow(new SQLException("deadlock"));
+
+        try {
+            adapter.executeInTransaction(Collections.singletonList(adapter.getBuilder().update("users").set("score", 1).build()));
+            fail("The failing statement should have been reported.");
+        } catch (SQLException e) {
+            verify(mockConnection).rollback();
+            verify(mockConnection, never()).commit();
+        }
+    }
+
+    @Test
+    public void testExecuteBatchGroupsIdenticalStatements() throws Exception {
+        SQLAdapter adapter = createAdapterWithMockConnection();
+        PreparedStatement mockPreparedStatement = mock(PreparedStatement.class);
+
+        when(mockConnection.isClosed()).thenReturn(false);
+        when(mockConnection.getAutoCommit()).thenReturn(true);
+        when(mockConnection.prepareStatement(anyString())).thenReturn(mockPreparedStatement);
+        when(mockPreparedStatement.executeBatch()).thenReturn(new int[]{1, 1}, new int[]{1});
+
+        int[] affectedRows = adapter.executeBatch(Arrays.asList(
+                adapter.getBuilder().update("users").set("score", 1).build(),
+                adapter.getBuilder().update("users").set("score", 2).build(),
+                adapter.getBuilder().delete("users").build()));
+
+        assertArrayEquals(new int[]{1, 1, 1}, affectedRows);
+        verify(mockConnection).prepareStatement("UPDATE users SET score = ?");
+        verify(mockConnection).prepareStatement("DELETE FROM users");
+        verify(mockPreparedStatement, times(3)).addBatch();
+        verify(mockPreparedStatement, times(2)).executeBatch();
+        verify(mockConnection).commit();
+    }
+
+    @Test
+    public void testInsertReturningKeysAlignsKeysAcrossChunks() throws Exception {
+        SQLAdapter adapter = createAdapterWithMockConnection();
+        PreparedStatement mockPreparedStatement = mock(PreparedStatement.class);
+        ResultSet firstKeys = mock(ResultSet.class);
+        ResultSet lastKeys = mock(ResultSet.class);
+
+        when(mockConnection.isClosed()).thenReturn(false);
+        when(mockConnection.getAutoCommit()).thenReturn(true);
+        when(mockConnection.prepareStatement(anyString(), eq(Statement.RETURN_GENERATED_KEYS))).thenReturn(mockPreparedStatement);
+        when(mockPreparedStatement.executeBatch()).thenReturn(new int[]{2, 2});
+        when(mockPreparedStatement.executeUpdate()).thenReturn(1);
+        when(mockPreparedStatement.getGeneratedKeys()).thenReturn(firstKeys, lastKeys);
+        when(firstKeys.next()).thenReturn(true, true, true, true, false);
+        when(firstKeys.getLong(1)).thenReturn(11L, 12L, 13L, 14L);
+        when(lastKeys.next()).thenReturn(true, false);
+        when(lastKeys.getLong(1)).thenReturn(15L);
+
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            rows.add(Collections.singletonMap("name", "user" + i));
+        }
+        long[] keys = adapter.insertReturningKeys("users", rows, 2);
+
+        assertArrayEquals(new long[]{11, 12, 13, 14, 15}, keys);
+        verify(mockConnection).prepareStatement("INSERT INTO users (name) VALUES (?), (?)", Statement.RETURN_GENERATED_KEYS);
+        verify(mockConnection).prepareStatement("INSERT INTO users (name) VALUES (?)", Statement.RETURN_GENERATED_KEYS);
+        verify(mockPreparedStatement, times(2)).addBatch();
+        verify(mockConnection).commit();
+    }
+
+    @Test
+    public void testInsertReturningKeysRejectsMissingKeys() throws Exception {
+        SQLAdapter adapter = createAdapterWithMockConnection();
+        PreparedStatement mockPreparedStatement = mock(PreparedStatement.class);
+        ResultSet keys = mock(ResultSet.class);
+
+        when(mockConnection.isClosed()).thenReturn(false);
+        when(mockConnection.getAutoCommit()).thenReturn(true);
+        when(mockConnection.prepareStatement(anyString(), eq(Statement.RETURN_GENERATED_KEYS))).thenReturn(mockPreparedStatement);
+        when(mockPreparedStatement.executeUpdate()).thenReturn(2);
+        when(mockPreparedStatement.getGeneratedKeys()).thenReturn(keys);
+        when(keys.next()).thenReturn(true, false);
+        when(keys.getLong(1)).thenReturn(1L);
+
+        try {
+            adapter.insertReturningKeys(adapter.getBuilder().insert().into("users")
+                    .row(Collections.singletonMap("name", "Alice"))
+                    .row(Collections.singletonMap("name", "Bob")));
+            fail("A query that has not been built should be rejected.");
+        } catch (QueryNotBuiltException e) {
+            // Expected
+        }
+        try {
+            adapter.insertReturningKeys((SQLInsertQuery) adapter.getBuilder().insert().into("users")
+                    .row(Collections.singletonMap("name", "Alice"))
+                    .row(Collections.singletonMap("name", "Bob"))
+                    .build());
+            fail("The missing generated key should have been reported.");
+        } catch (SQLException e) {
+            verify(mockConnection).rollback();
+        }
+    }
+
+    @Test
+    public void testListenersAreNotifiedOfEachExecution() throws Exception {
+        SQLAdapter adapter = createAdapterWithMockConnection();
+        PreparedStatement mockPreparedStatement = mock(PreparedStatement.class);
+
+        when(mockConnection.isClosed()).thenReturn(false);
+        when(mockConnection.prepareStatement(anyString())).thenReturn(mockPreparedStatement);
+        when(mockPreparedStatement.executeUpdate()).thenReturn(1).thenThrow(new SQLException("deadlock"));
+
+        List<QueryExecution> executions = new ArrayList<>();
+        adapter.addListener(executions::add);
+        Query query = adapter.getBuilder().update("users").set("score", 1).build();
+        adapter.execute(query);
+        try {
+            adapter.execute(query);
+            fail("The failing statement should have been reported.");
+        } catch (SQLException expected) {
+            // Recorded below
+        }
+
+        assertEquals(2, executions.size());
+        assertEquals("UPDATE users SET score = ?", executions.get(0).getSql());
+        assertEquals(Collections.singletonList(1), executions.get(0).getParameters());
+        assertEquals(Thread.currentThread().getName(), executions.get(0).getThread());
+        assertFalse(executions.get(0).getFailure().isPresent());
+        assertTrue(executions.get(1).getFailure().isPresent());
+    }
+
+    @Test
+    public void testExistsAndCountReadASingleValue() throws Exception {
+        SQLAdapter adapter = createAdapterWithMockConnection();
+        when(mockConnection.isClosed()).thenReturn(false);
+
+        SQLSelectQuery mockQuery = mock(SQLSelectQuery.class);
+        when(mockQuery.buildExists()).thenReturn("SELECT 1 FROM users LIMIT 1");
+        when(mockQuery.buildCount()).thenReturn("SELECT COUNT(*) FROM users");
+
+        ResultSet existsResultSet = mock(ResultSet.class);
+        when(existsResultSet.next()).thenReturn(true);
+        when(mockStatement.executeQuery("SELECT 1 FROM users LIMIT 1")).thenReturn(existsResultSet);
+        when(mockResultSet.next()).thenReturn(true);
+        when(mockResultSet.getLong(1)).thenReturn(42L);
+        when(mockStatement.executeQuery("SELECT COUNT(*) FROM users")).thenReturn(mockResultSet);
+
+        assertTrue(adapter.exists(mockQuery));
+        assertEquals(42L, adapter.count(mockQuery));
+        verify(mockResultSet, never()).getMetaData();
+    }
+
+    @Test
+    public void testResultShapeIsResolvedOncePerQueryShape() throws Exception {
+        SQLAdapter adapter = createAdapterWithMockConnection();
+        when(mockConnection.isClosed()).thenReturn(false);
+
+        Query firstQuery = mock(SQLSelectQuery.class);
+        when(firstQuery.isBuilt()).thenReturn(true);
+        when(firstQuery.getNativeQuery()).thenReturn("SELECT id FROM users WHERE id = 1");
+        Query secondQuery = mock(SQLSelectQuery.class);
+        when(secondQuery.isBuilt()).thenReturn(true);
+        when(secondQuery.getNativeQuery()).thenReturn("SELECT id FROM users WHERE id = 2");
+
+        when(mockStatement.executeQuery(anyString())).thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(true);
+        when(mockResultSet.getMetaData()).thenReturn(mockMetaData);
+        when(mockMetaData.getColumnCount()).thenReturn(1);
+        when(mockMetaData.getColumnType(1)).thenReturn(Types.INTEGER);
+        when(mockMetaData.getColumnLabel(1)).thenReturn("id");
+        when(mockMetaData.getColumnClassName(1)).thenReturn("java.lang.Integer");
+        when(mockResultSet.getInt(1)).thenReturn(1, 2);
+
+        assertEquals(1, adapter.execute(firstQuery).get("id"));
+        assertEquals(2, adapter.execute(secondQuery).get("id"));
+        verify(mockMetaData, times(1)).getColumnLabel(1);
+        verify(mockResultSet, never()).getObject(1);
+    }
+
+    @Test
+    public void testQueriesDifferingByAliasKeepTheirOwnLabels() throws Exception {
+        SQLAdapter adapter = createAdapterWithMockConnection();
+        when(mockConnection.isClosed()).thenReturn(false);
+
+        // Quoted aliases are kept in the fingerprint, unlike string literals
+        Query firstQuery = mock(SQLSelectQuery.class);
+        when(firstQuery.isBuilt()).thenReturn(true);
+        when(firstQuery.getNativeQuery()).thenReturn("SELECT id AS 'user_id' FROM users");
+        Query secondQuery = mock(SQLSelectQuery.class);
+        when(secondQuery.isBuilt()).thenReturn(true);
+        when(secondQuery.getNativeQuery()).thenReturn("SELECT id AS 'owner_id' FROM users");
+
+        when(mockStatement.executeQuery(anyString())).thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(true);
+        when(mockResultSet.getMetaData()).thenReturn(mockMetaData);
+        when(mockMetaData.getColumnCount()).thenReturn(1);
+        when(mockMetaData.getColumnType(1)).thenReturn(Types.INTEGER);
+        when(mockMetaData.getColumnLabel(1)).thenReturn("user_id", "owner_id");
+        when(mockMetaData.getColumnClassName(1)).thenReturn("java.lang.Integer");
+        when(mockResultSet.getInt(1)).thenReturn(1, 2);
+
+        assertEquals(1, adapter.execute(firstQuery).get("user_id"));
+        assertEquals(Collections.singletonMap("owner_id", 2), adapter.execute(secondQuery));
+    }
+
+    @Test
+    public void testStreamsAreBoundAsStreams() throws Exception {
+        SQLAdapter adapter = createAdapterWithMockConnection();
+        PreparedStatement mockPreparedStatement = mock(PreparedStatement.class);
+
+        when(mockConnection.isClosed()).thenReturn(false);
+        when(mockConnection.prepareStatement(anyString())).thenReturn(mockPreparedStatement);
+        when(mockPreparedStatement.executeUpdate()).thenReturn(1);
+
+        InputStream document = new ByteArrayInputStream(new byte[]{1, 2, 3});
+        adapter.execute(adapter.getBuilder().insert().into("documents").value("id", 1).value("content", document).build());
+
+        verify(mockPreparedStatement).setObject(1, 1);
+        verify(mockPreparedStatement).setBinaryStream(2, document);
+    }
+
+    @Test
+    public void testStreamReadsLargeObjectsLazily() throws Exception {
+        SQLAdapter adapter = createAdapterWithMockConnection();
+
+        Query mockQuery = mock(SQLSelectQuery.class);
+        when(mockQuery.isBuilt()).thenReturn(true);
+        when(mockQuery.getNativeQuery()).thenReturn("SELECT id, content FROM documents");
+
+        when(mockConnection.isClosed()).thenReturn(false);
+        when(mockStatement.executeQuery("SELECT id, content FROM documents")).thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(true, false);
+        when(mockResultSet.getMetaData()).thenReturn(mockMetaData);
+        when(mockMetaData.getColumnCount()).thenReturn(2);
+        when(mockMetaData.getColumnLabel(1)).thenReturn("id");
+        when(mockMetaData.getColumnLabel(2)).thenReturn("content");
+        when(mockMetaData.getColumnType(1)).thenReturn(Types.INTEGER);
+        when(mockMetaData.getColumnType(2)).thenReturn(Types.BLOB);
+        when(mockResultSet.getObject(1)).thenReturn(7);
+        when(mockResultSet.getBinaryStream(2)).thenReturn(new ByteArrayInputStream(new byte[]{4, 5, 6, 7}));
+
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        long rows = adapter.stream(mockQuery, row -> {
+            assertEquals(Collections.singletonMap("id", 7), row.getValues());
+            assertTrue(row.isLob("content"));
+            assertEquals(4, row.transferTo("content", Channels.newChannel(content)));
+        });
+
+        assertEquals(1, rows);
+        assertArrayEquals(new byte[]{4, 5, 6, 7}, content.toByteArray());
+        verify(mockResultSet, never()).getObject(2);
+        // Other drivers than MySQL reject a negative fetch size
+        verify(mockStatement, never()).setFetchSize(anyInt());
+    }
+
+    @Test
+    public void testStreamAsksMySQLToStreamRows() throws Exception {
+        SQLAdapter adapter = createAdapterWithMockConnection();
+        DatabaseMetaData databaseMetaData = mock(DatabaseMetaData.class);
+        when(databaseMetaData.getURL()).thenReturn("jdbc:mysql://localhost:3306/shop");
+        when(mockConnection.getMetaData()).thenReturn(databaseMetaData);
+
+        Query mockQuery = mock(SQLSelectQuery.class);
+        when(mockQuery.isBuilt()).thenReturn(true);
+        when(mockQuery.getNativeQuery()).thenReturn("SELECT id FROM documents");
+
+        when(mockConnection.isClosed()).thenReturn(false);
+        when(mockStatement.executeQuery("SELECT id FROM documents")).thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(false);
+        when(mockResultSet.getMetaData()).thenReturn(mockMetaData);
+        when(mockMetaData.getColumnCount()).thenReturn(1);
+        when(mockMetaData.getColumnLabel(1)).thenReturn("id");
+
+        assertEquals(0, adapter.stream(mockQuery, row -> fail()));
+        // Connector/J otherwise reads the whole result before returning it
+        verify(mockStatement).setFetchSize(Integer.MIN_VALUE);
+    }
+
+    @Test
+    public void testFetchSizeFollowsTheMemoryBudget() throws Exception {
+        SQLAdapter adapter = createAdapterWithMockConnection();
+        adapter.setFetchSizePolicy(new FetchSizePolicy(1024 * 1024));
+
+        Query mockQuery = mock(SQLSelectQuery.class);
+        when(mockQuery.isBuilt()).thenReturn(true);
+        when(mockQuery.getNativeQuery()).thenReturn("SELECT name FROM users");
+
+        when(mockConnection.isClosed()).thenReturn(false);
+        when(mockStatement.executeQuery("SELECT name FROM users")).thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(true, false);
+        when(mockResultSet.getFetchSize()).thenReturn(100);
+        when(mockResultSet.getMetaData()).thenReturn(mockMetaData);
+        when(mockMetaData.getColumnCount()).thenReturn(1);
+        when(mockMetaData.getColumnLabel(1)).thenReturn("name");
+        when(mockMetaData.getColumnType(1)).thenReturn(Types.VARCHAR);
+        when(mockMetaData.getPrecision(1)).thenReturn(100);
+        when(mockResultSet.getObject(1)).thenReturn("Alice");
+
+        adapter.fetch(mockQuery);
+
+        // 64 bytes per row, 32 per column and 240 for a VARCHAR(100) fit 3120 rows in 1 MiB
+        verify(mockStatement).setFetchSize(100);
+        verify(mockResultSet).setFetchSize(3120);
+    }
+
+    @Test
+    public void testStreamedRowsKeepTheWidthOfTheirLargeObjects() throws Exception {
+        SQLAdapter adapter = createAdapterWithMockConnection();
+        adapter.setFetchSizePolicy(new FetchSizePolicy(1024 * 1024));
+
+        Query mockQuery = mock(SQLSelectQuery.class);
+        when(mockQuery.isBuilt()).thenReturn(true);
+        when(mockQuery.getNativeQuery()).thenReturn("SELECT id, content FROM documents");
+
+        when(mockConnection.isClosed()).thenReturn(false);
+        when(mockStatement.executeQuery("SELECT id, content FROM documents")).thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(true, false, true, false);
+        when(mockResultSet.getFetchSize()).thenReturn(100);
+        when(mockResultSet.getMetaData()).thenReturn(mockMetaData);
+        when(mockMetaData.getColumnCount()).thenReturn(2);
+        when(mockMetaData.getColumnLabel(1)).thenReturn("id");
+        when(mockMetaData.getColumnLabel(2)).thenReturn("content");
+        when(mockMetaData.getColumnType(1)).thenReturn(Types.INTEGER);
+        when(mockMetaData.getColumnType(2)).thenReturn(Types.BLOB);
+        when(mockResultSet.getObject(1)).thenReturn(7);
+
+        adapter.stream(mockQuery, row -> { });
+        adapter.stream(mockQuery, row -> { });
+
+        // The BLOB is not decoded but still counts with its declared 4128 bytes, so rows stay 4240 bytes wide
+        verify(mockStatement).setFetchSize(100);
+        verify(mockStatement).setFetchSize(247);
+        verify(mockResultSet, times(2)).setFetchSize(247);
+    }
+
+    @Test
+    public void testMaterializeSpillsRowsBeyondTheMemoryBudget() throws Exception {
+        SQLAdapter adapter = createAdapterWithMockConnection();
+        DatabaseMetaData databaseMetaData = mock(DatabaseMetaData.class);
+        when(databaseMetaData.getURL()).thenReturn("jdbc:mysql://localhost:3306/shop");
+        when(mockConnection.getMetaData()).thenReturn(databaseMetaData);
+
+        Query mockQuery = mock(SQLSelectQuery.class);
+        when(mockQuery.isBuilt()).thenReturn(true);
+        when(mockQuery.getNativeQuery()).thenReturn("SELECT id, name FROM users");
+
+        when(mockConnection.isClosed()).thenReturn(false);
+        when(mockStatement.executeQuery("SELECT id, name FROM users")).thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(true, true, true, false);
+        when(mockResultSet.getMetaData()).thenReturn(mockMetaData);
+        when(mockMetaData.getColumnCount()).thenReturn(2);
+        when(mockMetaData.getColumnLabel(1)).thenReturn("id");
+        when(mockMetaData.getColumnLabel(2)).thenReturn("name");
+        when(mockMetaData.getColumnType(1)).thenReturn(Types.INTEGER);
+        when(mockMetaData.getColumnType(2)).thenReturn(Types.VARCHAR);
+        when(mockResultSet.getObject(1)).thenReturn(1, 2, 3);
+        when(mockResultSet.getObject(2)).thenReturn("Alice", null, "Carol");
+
+        Path directory = Files.createTempDirectory("materialized");
+        MaterializedResult result = adapter.materialize(mockQuery, 1, directory);
+        try {
+            assertTrue(result.isSpilled());
+            assertEquals(3, result.size());
+            assertEquals(3, result.get(2).get("id"));
+            assertEquals("Carol", result.get(2).get("name"));
+            assertNull(result.get(1).get("name"));
+
+            List<Object> ids = new ArrayList<>();
+            result.forEach(row -> ids.add(row.get("id")));
+            assertEquals(Arrays.asList(1, 2, 3), ids);
+        } finally {
+            result.close();
+        }
+        try (java.util.stream.Stream<Path> files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+        // Rows are streamed, rather than buffered by the driver before they can be spilled
+        verify(mockStatement).setFetchSize(Integer.MIN_VALUE);
+    }
+
+    @Test
+    public void testExecutionsAreRecordedAsFlightRecorderEvents() throws Exception {
+        SQLAdapter adapter = createAdapterWithMockConnection();
+        PreparedStatement mockPreparedStatement = mock(PreparedStatement.class);
+
+        when(mockConnection.isClosed()).thenReturn(false);
+        when(mockConnection.prepareStatement(anyString())).thenReturn(mockPreparedStatement);
+        when(mockPreparedStatement.executeUpdate()).thenReturn(3);
+
+        Path file = Files.createTempFile("adapter", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("orm.QueryBuild").withThreshold(Duration.ZERO);
+            recording.enable("orm.StatementExecute").withThreshold(Duration.ZERO);
+            recording.start();
+            adapter.execute(adapter.getBuilder().update("users").set("score", 1).build());
+            recording.stop();
+            recording.dump(file);
+        }
+
+        Map<String, RecordedEvent> events = new HashMap<>();
+        for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+            events.put(event.getEventType().getName(), event);
+        }
+        Files.delete(file);
+        assertEquals("UPDATE", events.get("orm.QueryBuild").getString("queryType"));
+        assertEquals("UPDATE users SET score = ?", events.get("orm.StatementExecute").getString("fingerprint"));
+        assertEquals(3, events.get("orm.StatementExecute").getLong("affectedRows"));
+    }
+
+    @Test
+    public void testStatementsBeyondTheAdmissionLimitAreRejected() throws Exception {
+        SQLAdapter adapter = createAdapterWithMockConnection();
+        AdmissionController controller = new AdmissionController(1).queueCapacity(0);
+        adapter.setAdmissionController(controller);
+
+        CountDownLatch executing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(mockConnection.isClosed()).thenReturn(false);
+        when(mockStatement.executeUpdate("DELETE FROM users")).thenAnswer(invocation -> {
+            executing.countDown();
+            release.await();
+            return 1;
+        });
+
+        Query query = adapter.getBuilder().delete("users").build();
+        Thread first = new Thread(() -> {
+            try {
+                adapter.execute(query);
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        first.start();
+        executing.await();
+        try {
+            adapter.execute(query);
+            fail("The statement beyond the limit should have been rejected.");
+        } catch (AdmissionRejectedException expected) {
+            assertEquals(1, controller.getMetrics().getInFlight());
+            assertEquals(1, controller.getMetrics().getRejected());
+        } finally {
+            release.countDown();
+            first.join();
+        }
+        assertEquals(0, controller.getMetrics().getInFlight());
+        assertEquals(1, controller.getMetrics().getAdmitted());
+    }
+
+    @Test
+    public void testAdaptiveLimitIsStableUnderALongTail() throws Exception {
+        SQLAdapter adapter = createAdapterWithMockConnection();
+        AdmissionController controller = new AdmissionController(16).adaptive(4, 64).queueTimeout(Duration.ofSeconds(10));
+        adapter.setAdmissionController(controller);
+
+        // A stationary mix of point queries and ten times slower scans, whatever the concurrency
+        Random random = new Random(42);
+        when(mockConnection.isClosed()).thenReturn(false);
+        when(mockStatement.executeUpdate("DELETE FROM users")).thenAnswer(invocation -> {
+            boolean scan;
+            synchronized (random) {
+                scan = random.nextInt(10) == 0;
+            }
+            Thread.sleep(scan ? 10 : 1);
+            return 1;
+        });
+
+        Query query = adapter.getBuilder().delete("users").build();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            Thread thread = new Thread(() -> {
+                for (int j = 0; j < 50; j++) {
+                    try {
+                        adapter.execute(query);
+                    } catch (SQLException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(800, controller.getMetrics().getAdmitted());
+        assertTrue(controller.getMetrics().getLimit() >= 16);
+    }
 }
@@ -0,0 +1,69 @@
+import core.queries.Query;
+import org.junit.Before;
+import org.junit.Test;
+import sql.SQLAdapter;
+import sql.SQLBatchLoader;
+import sql.SQLQueryBuilder;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class SQLBatchLoaderTest {
+
+    private SQLAdapter mockAdapter;
+
+    @Before
+    public void setUp() {
+        mockAdapter = mock(SQLAdapter.class);
+        when(mockAdapter.getBuilder()).thenReturn(new SQLQueryBuilder());
+    }
+
+    private static Map<String, Object> row(long id, String name) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("id", id);
+        row.put("name", name);
+        return row;
+    }
+
+    @Test
+    public void testLookupsAreBatchedIntoOneInQuery() throws Exception {
+        when(mockAdapter.fetch(any(Query.class))).thenReturn(Arrays.asList(row(1, "Alice"), row(2, "Bob")));
+
+        try (SQLBatchLoader loader = new SQLBatchLoader(mockAdapter, "users", "id", 10, 50, "name")) {
+            CompletableFuture<List<Map<String, Object>>> first = loader.load(1);
+            CompletableFuture<List<Map<String, Object>>> second = loader.load(2);
+            CompletableFuture<List<Map<String, Object>>> missing = loader.load(3);
+
+            assertEquals("Alice", first.get(1, TimeUnit.SECONDS).get(0).get("name"));
+            assertEquals("Bob", second.get(1, TimeUnit.SECONDS).get(0).get("name"));
+            assertTrue(missing.get(1, TimeUnit.SECONDS).isEmpty());
+        }
+
+        verify(mockAdapter, times(1)).fetch(argThat(query ->
+                "SELECT name, id FROM users WHERE id IN (1, 2, 3)".equals(query.getNativeQuery())));
+    }
+
+    @Test
+    public void testFullBatchIsDispatchedWithoutWaitingForTheWindow() throws Exception {
+        when(mockAdapter.fetch(any(Query.class))).thenReturn(Collections.emptyList());
+
+        try (SQLBatchLoader loader = new SQLBatchLoader(mockAdapter, "users", "id", 2, TimeUnit.HOURS.toMillis(1))) {
+            CompletableFuture<List<Map<String, Object>>> first = loader.load(1);
+            CompletableFuture<List<Map<String, Object>>> second = loader.load(2);
+            assertTrue(first.get(1, TimeUnit.SECONDS).isEmpty());
+            assertTrue(second.get(1, TimeUnit.SECONDS).isEmpty());
+        }
+    }
+
+    @Test
+    public void testDuplicateKeysShareTheSameFuture() {
+        try (SQLBatchLoader loader = new SQLBatchLoader(mockAdapter, "users", "id", 10, TimeUnit.HOURS.toMillis(1))) {
+            assertSame(loader.load(7), loader.load(7L));
+        }
+    }
+}
@@ -1,10 +1,18 @@
+import core.clauses.Aggregate;
+import core.clauses.OptimizerHint;
 import core.clauses.OrderBy;
 import core.clauses.Where;
+import core.queries.AbstractUpdateQuery;
 import core.queries.Query;
 import org.junit.Before;
 import org.junit.Test;
 import sql.SQLAdapter;
 import sql.SQLQueryBuilder;
+import sql.queries.SQLInsertQuery;
+import sql.queries.SQLSelectQuery;
+import sql.queries.SQLUpdateQuery;
+
+import java.util.*;
 
 import static org.junit.Assert.*;
 
@@ -126,4 +134,316 @@ public class SQLQueryBuilderTest {
         assertEquals(expected, query.getNativeQuery());
     }
 
+    @Test
+    public void testUpdateBindsSettersAndConditions() {
+        Query query = builder
+                .update("users")
+                .set("name", "Alice")
+                .set("score", 90)
+                .where(Where.equal("id", 7))
+                .build();
+
+        assertEquals("UPDATE users SET name = ?, score = ? WHERE id = ?", query.getNativeQuery());
+        assertEquals(Arrays.asList("Alice", 90, 7), query.getParameters());
+    }
+
+    @Test
+    public void testInsertBindsValues() {
+        Query query = builder
+                .insert()
+                .into("users")
+                .value("name", "Alice")
+                .value("score", 90)
+                .build();
+
+        assertEquals("INSERT INTO users (name, score) VALUES (?, ?)", query.getNativeQuery());
+        assertEquals(Arrays.asList("Alice", 90), query.getParameters());
+    }
+
+    @Test
+    public void testMultiRowInsertDefaultsMissingColumns() {
+        Map<String, Object> bob = new LinkedHashMap<>();
+        bob.put("name", "Bob");
+        Map<String, Object> carol = new LinkedHashMap<>();
+        carol.put("name", "Carol");
+        carol.put("score", 70);
+
+        Query query = builder
+                .insert()
+                .into("users")
+                .value("name", "Alice")
+                .value("score", 90)
+                .row(bob)
+                .row(carol)
+                .build();
+
+        assertEquals("INSERT INTO users (name, score) VALUES (?, ?), (?, DEFAULT), (?, ?)", query.getNativeQuery());
+        assertEquals(Arrays.asList("Alice", 90, "Bob", "Carol", 70), query.getParameters());
+    }
+
+    @Test
+    public void testUpdateByKeyRendersChunkedCaseExpressions() {
+        Map<Object, Map<String, Object>> rows = new LinkedHashMap<>();
+        rows.put(1, Collections.singletonMap("score", 10));
+        rows.put(2, Collections.singletonMap("score", 20));
+        rows.put(3, Collections.singletonMap("name", "Carol"));
+
+        List<SQLUpdateQuery> chunks = builder.updateByKey("users", "id", rows, 2);
+
+        assertEquals(2, chunks.size());
+        assertEquals("UPDATE users SET score = CASE id WHEN ? THEN ? WHEN ? THEN ? END WHERE id IN (?, ?)", chunks.get(0).getNativeQuery());
+        assertEquals(Arrays.asList(1, 10, 2, 20, 1, 2), chunks.get(0).getParameters());
+        assertEquals("UPDATE users SET name = CASE id WHEN ? THEN ? END WHERE id IN (?)", chunks.get(1).getNativeQuery());
+        assertEquals(Arrays.asList(3, "Carol", 3), chunks.get(1).getParameters());
+    }
+
+    @Test
+    public void testInsertInChunksRendersMultiRowInserts() {
+        List<Map<String, Object>> rows = Arrays.asList(
+                Collections.singletonMap("name", "Alice"),
+                Collections.singletonMap("name", "Bob"),
+                Collections.singletonMap("name", "Carol"));
+
+        List<SQLInsertQuery> chunks = builder.insertInChunks("users", rows, 2);
+
+        assertEquals(2, chunks.size());
+        assertEquals("INSERT INTO users (name) VALUES (?), (?)", chunks.get(0).getNativeQuery());
+        assertEquals(Arrays.asList("Alice", "Bob"), chunks.get(0).getParameters());
+        assertEquals("INSERT INTO users (name) VALUES (?)", chunks.get(1).getNativeQuery());
+        assertEquals(Collections.singletonList("Carol"), chunks.get(1).getParameters());
+    }
+
+    @Test
+    public void testKeyedUpdateKeepsUnsetColumns() {
+        Map<String, Object> first = new LinkedHashMap<>();
+        first.put("score", 10);
+        first.put("name", "Alice");
+
+        Query query = builder
+                .update("users")
+                .setByKey("id", 1, first)
+                .setByKey("id", 2, Collections.singletonMap("score", 20))
+                .build();
+
+        assertEquals("UPDATE users SET score = CASE id WHEN ? THEN ? WHEN ? THEN ? END, name = CASE id WHEN ? THEN ? ELSE name END WHERE id IN (?, ?)", query.getNativeQuery());
+    }
+
+    @Test
+    public void testDeleteBindsConditions() {
+        Query query = builder
+                .delete("users")
+                .where(Where.equal("country", "TN"))
+                .build();
+
+        assertEquals("DELETE FROM users WHERE country = ?", query.getNativeQuery());
+        assertEquals(Collections.singletonList("TN"), query.getParameters());
+    }
+
+    @Test
+    public void testDeleteWithOrderByAndLimit() {
+        Query query = builder
+                .delete("events")
+                .where(Where.lessThan("created_at", "2024-01-01"))
+                .orderBy("id")
+                .limit(500)
+                .build();
+
+        assertEquals("DELETE FROM events WHERE created_at < ? ORDER BY id ASC LIMIT 500", query.getNativeQuery());
+    }
+
+    @Test
+    public void testSelectWithIndexHints() {
+        Query query = builder
+                .select("id")
+                .from("orders", "o")
+                .forceIndex("orders", "idx_created_at")
+                .ignoreIndex("orders", "idx_status", "idx_user")
+                .build();
+
+        assertEquals("SELECT id FROM orders AS o FORCE INDEX (idx_created_at) IGNORE INDEX (idx_status, idx_user)", query.getNativeQuery());
+    }
+
+    @Test
+    public void testSelectWithOptimizerHintsAndFlags() {
+        Query query = builder
+                .select("id")
+                .from("orders")
+                .hint(OptimizerHint.maxExecutionTime(1000))
+                .hint(OptimizerHint.semiJoin("FIRSTMATCH"))
+                .straightJoin()
+                .sqlNoCache()
+                .build();
+
+        assertEquals("SELECT /*+ MAX_EXECUTION_TIME(1000) SEMIJOIN(FIRSTMATCH) */ STRAIGHT_JOIN SQL_NO_CACHE id FROM orders", query.getNativeQuery());
+    }
+
+    @Test
+    public void testSelectWithJoins() {
+        Query query = builder
+                .select("u.id", "o.total", "a.city")
+                .from("users", "u")
+                .join("orders", "o", Where.columnEqual("o.user_id", "u.id"))
+                .leftJoin("addresses", "a", Where.columnEqual("a.user_id", "u.id").and(Where.equal("a.main", true)))
+                .where(Where.greaterThan("o.total", 100))
+                .build();
+
+        String expected = "SELECT u.id, o.total, a.city FROM users AS u"
+                + " INNER JOIN orders AS o ON o.user_id = u.id"
+                + " LEFT JOIN addresses AS a ON (a.user_id = u.id AND a.main = true)"
+                + " WHERE o.total > 100";
+        assertEquals(expected, query.getNativeQuery());
+    }
+
+    @Test
+    public void testSelectKeepsTargetsInOrder() {
+        Query query = builder.select("*").from("c").from("a").from("b").build();
+        assertEquals("SELECT * FROM c, a, b", query.getNativeQuery());
+    }
+
+    @Test
+    public void testSelectWithAggregatesGroupByAndHaving() {
+        Query query = builder
+                .select("country_iso")
+                .aggregate(Aggregate.count().as("users"), Aggregate.sum("score").as("total"), Aggregate.countDistinct("city"))
+                .from("users")
+                .where(Where.equal("active", true))
+                .groupBy("country_iso")
+                .having(Where.greaterThan("COUNT(*)", 10))
+                .orderBy("total", OrderBy.OrderDirection.DESC)
+                .build();
+
+        String expected = "SELECT country_iso, COUNT(*) AS users, SUM(score) AS total, COUNT(DISTINCT city)"
+                + " FROM users WHERE active = true GROUP BY country_iso HAVING COUNT(*) > 10 ORDER BY total DESC";
+        assertEquals(expected, query.getNativeQuery());
+    }
+
+    @Test
+    public void testSelectWithOnlyAggregates() {
+        Query query = builder.select().aggregate(Aggregate.min("age"), Aggregate.max("age"), Aggregate.avg("age")).from("users").build();
+        assertEquals("SELECT MIN(age), MAX(age), AVG(age) FROM users", query.getNativeQuery());
+    }
+
+    @Test
+    public void testSelectWithInSubquery() {
+        Query query = builder
+                .select("id", "name")
+                .from("users")
+                .where(Where.in("id", builder.select("user_id").from("orders").where(Where.greaterThan("total", 100))))
+                .where(Where.notIn("id", builder.select("user_id").from("bans")))
+                .build();
+
+        String expected = "SELECT id, name FROM users"
+                + " WHERE id IN (SELECT user_id FROM orders WHERE total > 100)"
+                + " AND id NOT IN (SELECT user_id FROM bans)";
+        assertEquals(expected, query.getNativeQuery());
+    }
+
+    @Test
+    public void testSelectWithExistsSubquery() {
+        Query query = builder
+                .select("u.id")
+                .from("users", "u")
+                .where(Where.exists(builder.select("1").from("orders", "o").where(Where.columnEqual("o.user_id", "u.id"))))
+                .where(Where.notExists(builder.select("1").from("bans", "b").where(Where.columnEqual("b.user_id", "u.id"))))
+                .build();
+
+        String expected = "SELECT u.id FROM users AS u"
+                + " WHERE EXISTS (SELECT 1 FROM orders AS o WHERE o.user_id = u.id)"
+                + " AND NOT EXISTS (SELECT 1 FROM bans AS b WHERE b.user_id = u.id)";
+        assertEquals(expected, query.getNativeQuery());
+    }
+
+    @Test
+    public void testDeleteMergesSubqueryInPlace() {
+        Query query = builder
+                .delete("sessions")
+                .where(Where.equal("expired", true))
+                .where(Where.in("user_id", builder.select("id").from("users").where(Where.equal("active", false))))
+                .build();
+
+        assertEquals("DELETE FROM sessions WHERE expired = ? AND user_id IN (SELECT id FROM users WHERE active = false)", query.getNativeQuery());
+        assertEquals(Collections.singletonList(true), query.getParameters());
+    }
+
+    @Test
+    public void testCountDropsOrderBy() {
+        SQLSelectQuery query = builder
+                .select("id", "name")
+                .from("users")
+                .where(Where.equal("country", "TN"))
+                .orderBy("name");
+
+        assertEquals("SELECT COUNT(*) FROM users WHERE country = 'TN'", query.buildCount());
+    }
+
+    @Test
+    public void testCountOfGroupedOrLimitedQueryUsesDerivedTable() {
+        SQLSelectQuery query = builder
+                .select("country")
+                .from("users")
+                .groupBy("country")
+                .limit(10);
+
+        assertEquals("SELECT COUNT(*) FROM (SELECT country FROM users GROUP BY country LIMIT 10) AS counted", query.buildCount());
+    }
+
+    @Test
+    public void testExistsAndFirst() {
+        SQLSelectQuery query = builder
+                .select("id", "name")
+                .from("users")
+                .where(Where.greaterThan("score", 50))
+                .orderBy("score", OrderBy.OrderDirection.DESC)
+                .limit(20);
+
+        assertEquals("SELECT 1 FROM users WHERE score > 50 LIMIT 1", query.buildExists());
+        assertEquals("SELECT id, name FROM users WHERE score > 50 ORDER BY score DESC LIMIT 1", query.buildFirst());
+        assertEquals("SELECT id, name FROM users WHERE score > 50 ORDER BY score DESC LIMIT 20", query.build().getNativeQuery());
+    }
+
+    @Test
+    public void testResetQueryIsRebuiltFromScratch() {
+        SQLUpdateQuery query = builder.update("users");
+        query.set("score", 1).where(Where.equal("id", 1)).build();
+        String first = query.getNativeQuery();
+
+        query.reset().set("name", "Bob").build();
+
+        assertEquals("UPDATE users SET score = ? WHERE id = ?", first);
+        assertEquals("UPDATE users SET name = ?", query.getNativeQuery());
+        assertEquals(Collections.singletonList("Bob"), query.getParameters());
+    }
+
+    @Test
+    public void testResetUpdateKeepsItsTable() {
+        class TargetedUpdate extends AbstractUpdateQuery<TargetedUpdate> {
+            @Override
+            public TargetedUpdate build() {
+                StringBuilder sql = renderBuffer();
+                sql.append("UPDATE ").append(String.join(", ", targets.keySet())).append(" SET ").append(String.join(", ", setters.keySet()));
+                setNativeQuery(sql);
+                return this;
+            }
+        }
+        TargetedUpdate query = new TargetedUpdate();
+        query.from("users").set("score", 1).build();
+
+        query.reset();
+        query.set("name", "Bob").build();
+
+        assertEquals("UPDATE users SET name", query.getNativeQuery());
+        assertEquals("UPDATE users SET name = ?", builder.update("users").set("score", 1).reset().set("name", "Bob").build().getNativeQuery());
+    }
+
+    @Test
+    public void testResetSelectKeepsItsColumns() {
+        SQLSelectQuery query = builder.select("id", "name");
+        query.from("users").where(Where.equal("id", 1)).orderBy("name").limit(5).build();
+
+        query.reset();
+        assertFalse(query.isBuilt());
+
+        query.from("customers").build();
+        assertEquals("SELECT id, name FROM customers", query.getNativeQuery());
+    }
 }
@@ -0,0 +1,156 @@
+import core.queries.Query;
+import org.junit.Before;
+import org.junit.Test;
+import sql.SQLAdapter;
+import sql.SQLQueryBuilder;
+import sql.Session;
+import sql.queries.SQLSelectQuery;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class SessionTest {
+
+    private SQLAdapter mockAdapter;
+    private List<String> statements;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+        mockAdapter = mock(SQLAdapter.class);
+        statements = new ArrayList<>();
+        when(mockAdapter.getBuilder()).thenReturn(new SQLQueryBuilder());
+        when(mockAdapter.executeBatch(any())).thenAnswer(invocation -> {
+            List<Query> queries = (List<Query>) invocation.getArgument(0);
+            queries.forEach(query -> statements.add(query.getNativeQuery()));
+            return new int[queries.size()];
+        });
+    }
+
+    private static Map<String, Object> row(Object... columns) {
+        Map<String, Object> row = new HashMap<>();
+        for (int i = 0; i < columns.length; i += 2) {
+            row.put((String) columns[i], columns[i + 1]);
+        }
+        return row;
+    }
+
+    @Test
+    public void testFindReturnsTheSameRowWithoutQueryingAgain() throws Exception {
+        when(mockAdapter.first(any(SQLSelectQuery.class))).thenReturn(Optional.of(row("id", 1L, "name", "Alice")));
+
+        try (Session session = new Session(mockAdapter)) {
+            Map<String, Object> first = session.find("users", "id", 1).orElseThrow();
+            Map<String, Object> second = session.find("users", "id", 1L).orElseThrow();
+
+            assertSame(first, second);
+            verify(mockAdapter, times(1)).first(any(SQLSelectQuery.class));
+        }
+    }
+
+    @Test
+    public void testFlushOnlyUpdatesChangedColumns() throws Exception {
+        when(mockAdapter.first(any(SQLSelectQuery.class)))
+                .thenReturn(Optional.of(row("id", 1L, "name", "Alice", "score", 10)))
+                .thenReturn(Optional.of(row("id", 2L, "name", "Bob", "score", 20)));
+
+        try (Session session = new Session(mockAdapter)) {
+            session.find("users", "id", 1).orElseThrow().put("score", 11);
+            session.find("users", "id", 2).orElseThrow().put("score", 21);
+            session.flush();
+
+            assertEquals(Arrays.asList("UPDATE users SET score = ? WHERE id = ?", "UPDATE users SET score = ? WHERE id = ?"), statements);
+
+            statements.clear();
+            session.flush();
+            verify(mockAdapter, times(1)).executeBatch(any());
+        }
+    }
+
+    @Test
+    public void testFlushOrdersInsertsUpdatesAndDeletes() throws Exception {
+        when(mockAdapter.first(any(SQLSelectQuery.class))).thenReturn(Optional.of(row("id", 1L, "name", "Alice")));
+
+        try (Session session = new Session(mockAdapter)) {
+            session.remove("sessions", "id", 7);
+            session.find("users", "id", 1).orElseThrow().put("name", "Alicia");
+            session.persist("users", "id", row("id", 2L, "name", "Bob"));
+            session.flush();
+
+            assertEquals(Arrays.asList(
+                    "INSERT INTO users (id, name) VALUES (?, ?)",
+                    "UPDATE users SET name = ? WHERE id = ?",
+                    "DELETE FROM sessions WHERE id = ?"), statements);
+        }
+    }
+
+    @Test
+    public void testFlushKeepsParentsBeforeTheirChildren() throws Exception {
+        try (Session session = new Session(mockAdapter)) {
+            session.persist("users", "id", row("id", 2L, "name", "Bob"));
+            session.persist("orders", "id", row("id", 20L, "user_id", 2L));
+            session.persist("orders", "id", row("id", 21L, "user_id", 2L));
+            session.persist("users", "id", row("id", 3L));
+            session.persist("orders", "id", row("id", 30L, "user_id", 3L));
+            session.remove("orders", "id", 10);
+            session.remove("users", "id", 1);
+            session.flush();
+
+            assertEquals(Arrays.asList(
+                    "INSERT INTO users (id, name) VALUES (?, ?)",
+                    "INSERT INTO orders (id, user_id) VALUES (?, ?)",
+                    "INSERT INTO orders (id, user_id) VALUES (?, ?)",
+                    "INSERT INTO users (id) VALUES (?)",
+                    "INSERT INTO orders (id, user_id) VALUES (?, ?)",
+                    "DELETE FROM orders WHERE id = ?",
+                    "DELETE FROM users WHERE id = ?"), statements);
+        }
+    }
+
+    @Test
+    public void testPersistingARemovedRowUpdatesIt() throws Exception {
+        when(mockAdapter.first(any(SQLSelectQuery.class))).thenReturn(Optional.of(row("id", 1L, "name", "Alice")));
+
+        try (Session session = new Session(mockAdapter)) {
+            session.find("users", "id", 1).orElseThrow();
+            session.remove("users", "id", 1);
+            Map<String, Object> replacement = session.persist("users", "id", row("id", 1L, "name", "Alicia"));
+            session.flush();
+
+            assertEquals(Collections.singletonList("UPDATE users SET name = ? WHERE id = ?"), statements);
+            // The replacement stays managed once flushed
+            assertSame(replacement, session.find("users", "id", 1).orElseThrow());
+            verify(mockAdapter, times(1)).first(any(SQLSelectQuery.class));
+        }
+    }
+
+    @Test
+    public void testFlushedRemovalsOnlyDetachTheRemovedRows() throws Exception {
+        try (Session session = new Session(mockAdapter)) {
+            session.remove("users", "id", 1);
+            Map<String, Object> replacement = session.persist("users", "id", row("id", 1L, "name", "Bob"));
+            session.remove("users", "id", 2);
+            session.flush();
+
+            assertEquals(Arrays.asList(
+                    "UPDATE users SET name = ? WHERE id = ?",
+                    "DELETE FROM users WHERE id = ?"), statements);
+            assertSame(replacement, session.find("users", "id", 1).orElseThrow());
+            verify(mockAdapter, never()).first(any(SQLSelectQuery.class));
+        }
+    }
+
+    @Test
+    public void testRemovingAPersistedRowCancelsItsInsertion() throws Exception {
+        try (Session session = new Session(mockAdapter)) {
+            session.persist("users", "id", row("id", 2L, "name", "Bob"));
+            session.remove("users", "id", 2);
+
+            assertEquals(0, session.flush().length);
+            verify(mockAdapter, never()).executeBatch(any());
+        }
+    }
+}
@@ -0,0 +1,124 @@
+import core.clauses.Where;
+import core.queries.Query;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import sql.SQLAdapter;
+import sql.SQLQueryBuilder;
+import sql.WorkloadLog;
+import sql.WorkloadRecorder;
+import sql.WorkloadReplayer;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.util.*;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class WorkloadReplayTest {
+
+    private Path log;
+
+    @Before
+    public void setUp() throws Exception {
+        log = Files.createTempFile("workload", ".bin");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(log);
+    }
+
+    private static SQLAdapter createAdapterWithMockConnection() throws Exception {
+        Connection mockConnection = mock(Connection.class);
+        PreparedStatement mockPreparedStatement = mock(PreparedStatement.class);
+        when(mockConnection.prepareStatement(anyString())).thenReturn(mockPreparedStatement);
+        when(mockPreparedStatement.executeUpdate()).thenReturn(1);
+
+        java.lang.reflect.Constructor<SQLAdapter> constructor = SQLAdapter.class.getDeclaredConstructor(Connection.class);
+        constructor.setAccessible(true);
+        return constructor.newInstance(mockConnection);
+    }
+
+    @Test
+    public void testRecordedExecutionsAreReadBack() throws Exception {
+        SQLAdapter adapter = createAdapterWithMockConnection();
+        try (WorkloadRecorder recorder = new WorkloadRecorder(log)) {
+            adapter.addListener(recorder);
+            for (int i = 0; i < 3; i++) {
+                adapter.execute(adapter.getBuilder().update("users").set("name", "user " + i).where(Where.equal("id", i)).build());
+            }
+            assertEquals(3, recorder.getRecordedQueries());
+        }
+
+        WorkloadLog workload = WorkloadLog.read(log);
+        assertEquals(3, workload.getEntries().size());
+        assertEquals(1, workload.getThreads());
+        WorkloadLog.Entry last = workload.getEntries().get(2);
+        assertEquals("UPDATE users SET name = ? WHERE id = ?", last.getSql());
+        assertEquals("UPDATE users SET name = ? WHERE id = ?", last.getFingerprint());
+        assertEquals(Arrays.asList("user 2", 2L), last.getParameters());
+        assertFalse(last.isFailed());
+    }
+
+    @Test
+    public void testReplayReportsEachFingerprint() throws Exception {
+        SQLAdapter adapter = createAdapterWithMockConnection();
+        try (WorkloadRecorder recorder = new WorkloadRecorder(log)) {
+            adapter.addListener(recorder);
+            for (int i = 0; i < 4; i++) {
+                adapter.execute(adapter.getBuilder().delete("sessions").where(Where.equal("id", i)).build());
+            }
+        }
+
+        SQLAdapter mockAdapter = mock(SQLAdapter.class);
+        when(mockAdapter.getBuilder()).thenReturn(new SQLQueryBuilder());
+        when(mockAdapter.execute(any(Query.class))).thenReturn(Collections.singletonMap("affectedRows", 1));
+
+        WorkloadReplayer.Report report = new WorkloadReplayer(WorkloadLog.read(log), () -> mockAdapter)
+                .concurrency(2)
+                .speed(0)
+                .run();
+
+        WorkloadReplayer.Stats stats = report.getStats().get("DELETE FROM sessions WHERE id = ?");
+        assertEquals(4, stats.getCount());
+        assertEquals(0, stats.getErrors());
+        verify(mockAdapter, times(4)).execute(any(Query.class));
+        verify(mockAdapter, times(2)).close();
+    }
+
+    @Test
+    public void testPacedLatencyCountsTheWaitBehindSlowQueries() throws Exception {
+        SQLAdapter adapter = createAdapterWithMockConnection();
+        try (WorkloadRecorder recorder = new WorkloadRecorder(log)) {
+            adapter.addListener(recorder);
+            adapter.execute(adapter.getBuilder().update("users").set("name", "Alice").build());
+            for (int i = 0; i < 3; i++) {
+                adapter.execute(adapter.getBuilder().delete("sessions").where(Where.equal("id", i)).build());
+            }
+        }
+
+        SQLAdapter mockAdapter = mock(SQLAdapter.class);
+        when(mockAdapter.execute(any(Query.class))).thenAnswer(invocation -> {
+            if (invocation.<Query>getArgument(0).getNativeQuery().startsWith("UPDATE")) {
+                Thread.sleep(200);
+            }
+            return Collections.singletonMap("affectedRows", 1);
+        });
+
+        WorkloadReplayer.Report report = new WorkloadReplayer(WorkloadLog.read(log), () -> mockAdapter)
+                .concurrency(1)
+                .speed(1)
+                .run();
+
+        // The deletes were due while the update ran, so they waited for it although they were served quickly
+        WorkloadReplayer.Stats deletes = report.getStats().get("DELETE FROM sessions WHERE id = ?");
+        assertEquals(3, deletes.getCount());
+        assertTrue(deletes.getPercentile(50).toMillis() >= 100);
+        assertTrue(deletes.getServicePercentile(100).toMillis() < 100);
+    }
+}
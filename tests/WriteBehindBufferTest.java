@@ -0,0 +1,107 @@
+import core.queries.Query;
+import org.junit.Before;
+import org.junit.Test;
+import sql.SQLAdapter;
+import sql.SQLQueryBuilder;
+import sql.WriteBehindBuffer;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.*;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class WriteBehindBufferTest {
+
+    private SQLAdapter mockAdapter;
+    private List<String> statements;
+
+    @Before
+    public void setUp() throws Exception {
+        mockAdapter = mock(SQLAdapter.class);
+        statements = Collections.synchronizedList(new ArrayList<>());
+        when(mockAdapter.getBuilder()).thenReturn(new SQLQueryBuilder());
+        when(mockAdapter.execute(any(Query.class))).thenAnswer(invocation -> {
+            statements.add(((Query) invocation.getArgument(0)).getNativeQuery());
+            return Collections.singletonMap("affectedRows", 1);
+        });
+    }
+
+    @Test
+    public void testRowsAreWrittenInBatchesOfAtMostMaxRows() throws Exception {
+        WriteBehindBuffer buffer = new WriteBehindBuffer(mockAdapter, "events", 100, 4, Duration.ofHours(1));
+        for (int i = 0; i < 10; i++) {
+            buffer.add(mockAdapter.getBuilder().insert().into("events").value("id", i));
+        }
+        buffer.close();
+
+        assertEquals(Arrays.asList(
+                "INSERT INTO events (id) VALUES (?), (?), (?), (?)",
+                "INSERT INTO events (id) VALUES (?), (?), (?), (?)",
+                "INSERT INTO events (id) VALUES (?), (?)"), statements);
+        WriteBehindBuffer.Metrics metrics = buffer.getMetrics();
+        assertEquals(10, metrics.getWrittenRows());
+        assertEquals(3, metrics.getBatches());
+        assertEquals(4, metrics.getMaxBatchSize());
+        assertEquals(0, metrics.getQueuedRows());
+    }
+
+    @Test
+    public void testPartialBatchIsWrittenAfterTheFlushInterval() throws Exception {
+        try (WriteBehindBuffer buffer = new WriteBehindBuffer(mockAdapter, "events", 100, 500, Duration.ofMillis(10))) {
+            buffer.add(mockAdapter.getBuilder().insert().into("events").value("id", 1));
+
+            verify(mockAdapter, timeout(1000)).execute(any(Query.class));
+            assertEquals(Collections.singletonList("INSERT INTO events (id) VALUES (?)"), statements);
+        }
+    }
+
+    @Test
+    public void testFailedBatchIsReportedWithItsRows() throws Exception {
+        when(mockAdapter.execute(any(Query.class))).thenThrow(new SQLException("table is full"));
+        List<Map<String, Object>> failed = new ArrayList<>();
+
+        WriteBehindBuffer buffer = new WriteBehindBuffer(mockAdapter, "events", 100, 500, Duration.ofHours(1))
+                .onFailure((rows, e) -> failed.addAll(rows));
+        buffer.add(mockAdapter.getBuilder().insert().into("events").value("id", 1));
+        buffer.close();
+
+        assertEquals(Collections.singletonList(Collections.singletonMap("id", 1)), failed);
+        assertEquals(1, buffer.getMetrics().getFailedRows());
+    }
+
+    @Test
+    public void testFailingHandlerDoesNotStopTheFlusher() throws Exception {
+        when(mockAdapter.execute(any(Query.class))).thenThrow(new SQLException("table is full"));
+
+        WriteBehindBuffer buffer = new WriteBehindBuffer(mockAdapter, "events", 100, 1, Duration.ZERO)
+                .onFailure((rows, e) -> {
+                    throw new IllegalStateException("handler bug");
+                });
+        for (int i = 0; i < 3; i++) {
+            buffer.add(mockAdapter.getBuilder().insert().into("events").value("id", i));
+        }
+        buffer.close();
+
+        WriteBehindBuffer.Metrics metrics = buffer.getMetrics();
+        assertEquals(3, metrics.getFailedRows());
+        assertEquals(3, metrics.getHandlerFailures());
+        assertEquals(0, metrics.getQueuedRows());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testAddAfterCloseIsRejected() throws Exception {
+        WriteBehindBuffer buffer = new WriteBehindBuffer(mockAdapter, "events", 100, 500, Duration.ofMillis(10));
+        buffer.close();
+        buffer.add(mockAdapter.getBuilder().insert().into("events").value("id", 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInsertIntoAnotherTableIsRejected() throws Exception {
+        try (WriteBehindBuffer buffer = new WriteBehindBuffer(mockAdapter, "events", 100, 500, Duration.ofMillis(10))) {
+            buffer.add(mockAdapter.getBuilder().insert().into("users").value("id", 1));
+        }
+    }
+}